@@ -1,7 +1,28 @@
-import { PermissionsAndroid, Platform, NativeModules, Share } from 'react-native';
+import { PermissionsAndroid, Platform, NativeEventEmitter, Share } from 'react-native';
 import AsyncStorage from '@react-native-async-storage/async-storage';
+import SmsModule from '../src/specs/NativeSmsModule';
 
-const { SmsModule } = NativeModules;
+const smsEvents = new NativeEventEmitter(SmsModule);
+
+// First-page size of a chat; prefetched pages must use the same size to be cache hits
+const CHAT_PAGE_SIZE = 50;
+
+// Telephony.Sms.MESSAGE_TYPE_* of the user's own messages, and the provider's delivery status codes
+const TYPE_SENT = 2;
+const TYPE_FAILED = 5;
+const OUTGOING_TYPES = [TYPE_SENT, 4, TYPE_FAILED, 6];
+const STATUS_COMPLETE = 0;
+const STATUS_FAILED = 64;
+
+function outgoingStatus(sms) {
+  if (sms.type === TYPE_FAILED || (sms.type === TYPE_SENT && sms.status === STATUS_FAILED)) {
+    return 'failed';
+  }
+  if (sms.type !== TYPE_SENT) {
+    return 'pending';
+  }
+  return sms.status === STATUS_COMPLETE ? 'delivered' : 'sent';
+}
 
 class SmsController {
 
@@ -21,10 +42,14 @@ class SmsController {
           permissions.push(PermissionsAndroid.PERMISSIONS.POST_NOTIFICATIONS);
         }
 
-        const granted = await PermissionsAndroid.requestMultiple(permissions);
+        // Contacts only add names and photos to conversations, so they don't gate SMS access
+        const granted = await PermissionsAndroid.requestMultiple([
+          ...permissions,
+          PermissionsAndroid.PERMISSIONS.READ_CONTACTS,
+        ]);
 
-        return Object.values(granted).every(
-          permission => permission === PermissionsAndroid.RESULTS.GRANTED
+        return permissions.every(
+          permission => granted[permission] === PermissionsAndroid.RESULTS.GRANTED
         );
       } catch (err) {
         console.warn('Permission error:', err);
@@ -42,19 +67,40 @@ class SmsController {
         throw new Error('SMS permissions denied');
       }
 
-      const messages = await SmsModule.getSmsMessages();
-      return messages.map(msg => ({
-        ...msg,
-        date: parseInt(msg.date),
-        type: parseInt(msg.type),
-        read: parseInt(msg.read)
-      }));
+      const columns = await SmsModule.getSmsMessagesColumnar(0);
+      return this.rowsFromColumns(columns);
     } catch (error) {
       console.error('Error fetching SMS:', error);
       throw error;
     }
   }
 
+  // Fetch SMS messages as parallel columns (ids, dates, types, read flags and indices into
+  // per-batch address/body tables) without materializing one object per row
+  static async fetchSmsColumns(limit = 0) {
+    const hasPermission = await this.requestAllSmsPermissions();
+    if (!hasPermission) {
+      throw new Error('SMS permissions denied');
+    }
+    return SmsModule.getSmsMessagesColumnar(limit);
+  }
+
+  static rowsFromColumns(columns) {
+    const rows = new Array(columns.count);
+    for (let i = 0; i < columns.count; i++) {
+      rows[i] = {
+        id: String(columns.ids[i]),
+        threadId: columns.threadIds[i],
+        address: columns.addresses[columns.addressIndex[i]],
+        body: columns.bodies[columns.bodyIndex[i]],
+        date: columns.dates[i],
+        type: columns.types[i],
+        read: columns.read[i]
+      };
+    }
+    return rows;
+  }
+
   // Send SMS
   static async sendSms(phoneNumber, message) {
     try {
@@ -71,6 +117,33 @@ class SmsController {
     }
   }
 
+  // Queue the same text to many recipients. Resolves with one queue id per recipient once all are
+  // queued; dispatch is paced natively (see setSendRate) and reported through subscribeToSendStatus.
+  static async sendBatch(recipients, message) {
+    try {
+      const hasPermission = await this.requestAllSmsPermissions();
+      if (!hasPermission) {
+        throw new Error('SMS permissions denied');
+      }
+
+      return await SmsModule.sendBatch(recipients, message);
+    } catch (error) {
+      console.error('Error sending SMS batch:', error);
+      throw error;
+    }
+  }
+
+  // Cap outbound dispatch to avoid carrier throttling
+  static async setSendRate(messagesPerMinute) {
+    await SmsModule.setSendRate(messagesPerMinute);
+  }
+
+  // Listener receives { queueId, id, address, state, errorCode } where state is one of
+  // 'sent', 'delivered' or 'failed'. Returns the subscription; call remove() to stop listening.
+  static subscribeToSendStatus(listener) {
+    return smsEvents.addListener('SmsSendStatus', listener);
+  }
+
   // Mark messages as read
   static async markAsRead(address) {
     try {
@@ -82,6 +155,46 @@ class SmsController {
     }
   }
 
+  // Mark every received message in the given threads as read in one native batch
+  static async markThreadsRead(threadIds) {
+    try {
+      return await SmsModule.markThreadsRead(threadIds.map(Number));
+    } catch (error) {
+      console.error('Error marking threads as read:', error);
+      throw error;
+    }
+  }
+
+  // Mark received messages of a thread up to and including messageId as read
+  static async markReadUpTo(threadId, messageId) {
+    try {
+      return await SmsModule.markReadUpTo(Number(threadId), String(messageId));
+    } catch (error) {
+      console.error('Error marking as read:', error);
+      throw error;
+    }
+  }
+
+  // Synchronous reads for render paths. Both only read native memory: the unread total is the
+  // last known value and refreshes in the background after the counts change.
+  static getUnreadCountSync() {
+    try {
+      return SmsModule.getUnreadCountSync();
+    } catch (error) {
+      console.error('Error getting unread count:', error);
+      return 0;
+    }
+  }
+
+  static isDefaultSmsAppSync() {
+    try {
+      return SmsModule.isDefaultSmsAppSync();
+    } catch (error) {
+      console.error('Error checking default SMS app:', error);
+      return false;
+    }
+  }
+
   // Get unread count
   static async getUnreadCount() {
     try {
@@ -93,6 +206,107 @@ class SmsController {
     }
   }
 
+  // Unread counts keyed by thread id, maintained natively
+  static async getUnreadCounts() {
+    try {
+      return await SmsModule.getUnreadCounts();
+    } catch (error) {
+      console.error('Error getting unread counts:', error);
+      return {};
+    }
+  }
+
+  // Receiver ingest counters: queue depth, backpressure events and receive-to-stored latency
+  static async getIngestStats() {
+    try {
+      return await SmsModule.getIngestStats();
+    } catch (error) {
+      console.error('Error getting ingest stats:', error);
+      return null;
+    }
+  }
+
+  // Thread-id cache counters (size, hits, misses, evictions, invalidations, hitRate)
+  static async getThreadCacheStats() {
+    try {
+      return await SmsModule.getThreadCacheStats();
+    } catch (error) {
+      console.error('Error getting thread cache stats:', error);
+      return null;
+    }
+  }
+
+  // Warm the native page cache with the first page of each thread so opening them is a cache hit
+  static async prefetchThreads(threadIds) {
+    try {
+      await SmsModule.prefetchThreads(threadIds.map(Number), CHAT_PAGE_SIZE);
+    } catch (error) {
+      console.error('Error prefetching threads:', error);
+    }
+  }
+
+  // Page cache counters: pages, bytes against maxBytes, hits, misses, evictions, invalidations,
+  // prefetched pages and hit rate
+  static async getPageCacheStats() {
+    try {
+      return await SmsModule.getPageCacheStats();
+    } catch (error) {
+      console.error('Error getting page cache stats:', error);
+      return null;
+    }
+  }
+
+  // Native latency histograms (query, serialize, insert, threadLookup, notify, and the inbox's
+  // firstRenderSnapshot/firstRenderProvider) with count, mean, p50/p95/p99 and max in ms, plus ingested/sent/delivered/sendFailed counters and queue depths.
+  // Nothing is recorded until setPerfStatsEnabled(true).
+  static async getPerfStats() {
+    try {
+      return await SmsModule.getPerfStats();
+    } catch (error) {
+      console.error('Error getting perf stats:', error);
+      return null;
+    }
+  }
+
+  // The same stats as the text block `adb shell dumpsys activity top` prints
+  static async dumpPerfStats() {
+    try {
+      return await SmsModule.dumpPerfStats();
+    } catch (error) {
+      console.error('Error dumping perf stats:', error);
+      return '';
+    }
+  }
+
+  static async setPerfStatsEnabled(enabled) {
+    try {
+      await SmsModule.setPerfStatsEnabled(enabled);
+      return true;
+    } catch (error) {
+      console.error('Error toggling perf stats:', error);
+      return false;
+    }
+  }
+
+  static resetPerfStats() {
+    SmsModule.resetPerfStats();
+  }
+
+  // Time from ChatList mounting to its first conversations, from the 'snapshot' or the 'provider'
+  static recordFirstRender(source, elapsedMs) {
+    SmsModule.recordFirstRender(source, elapsedMs);
+  }
+
+  // Contact cache counters: size, hits, misses, evictions, batched lookups and hit rate
+  static async getContactCacheStats() {
+    try {
+      return await SmsModule.getContactCacheStats();
+    } catch (error) {
+      console.error('Error getting contact cache stats:', error);
+      return null;
+    }
+  }
+
   // Check if app is default SMS app
   static async isDefaultSmsApp() {
     try {
@@ -148,51 +362,65 @@ class SmsController {
     }
   }
 
-  // Fetch formatted chat messages with pagination
-  static async getChatMessages(contactId, page = 1, pageSize = 50) {
-    try {
-      const smsMessages = await this.fetchSmsMessages();
-
-      // Filter and sort all messages for this contact (Oldest to Newest)
-      const allMessages = smsMessages
-        .filter(sms => sms.address === contactId)
-        .sort((a, b) => a.date - b.date);
-
-      // Calculate pagination indices
-      const totalMessages = allMessages.length;
-
-      // We want the last N messages based on the page number.
-      // Page 1: Last 50 messages. (total - 50) to (total)
-      // Page 2: Previous 50. (total - 100) to (total - 50)
-
-      let start = totalMessages - (page * pageSize);
-      let end = totalMessages - ((page - 1) * pageSize);
-
-      // Adjust boundaries
-      if (end > totalMessages) end = totalMessages;
-      if (start < 0) start = 0;
-      if (end < 0) end = 0;
+  // Map a native message row to the shape ChatScreen renders. Outgoing rows are sent (2),
+  // outbox (4), failed (5) or queued (6); a sent row's status is its delivery report.
+  static formatChatMessage(sms) {
+    const outgoing = OUTGOING_TYPES.includes(sms.type);
+    return {
+      id: sms.id,
+      sender: outgoing ? 'me' : sms.address,
+      text: sms.body,
+      time: new Date(sms.date).toLocaleTimeString([], { hour: '2-digit', minute: '2-digit' }),
+      date: sms.date,
+      status: outgoing ? outgoingStatus(sms) : null,
+      reaction: null
+    };
+  }
 
-      // Slice the messages for the current page
-      // Note: slice(start, end) where end is exclusive.
-      // If start >= end (e.g. both 0), we get empty array.
-      const pagedMessages = allMessages.slice(start, end);
+  // Native MMS to a chat item. Ids are prefixed so they never collide with SMS ids; the
+  // picture is the first image part, the text the first text part or the subject.
+  static formatMmsMessage(mms) {
+    const textPart = mms.parts.find(part => part.text && part.contentType && part.contentType.startsWith('text/plain'));
+    const imagePart = mms.parts.find(part => part.uri && part.contentType && part.contentType.startsWith('image/'));
+    let text = textPart ? textPart.text : (mms.subject || '');
+    if (!text && !imagePart) {
+      text = mms.state === 'downloaded' ? '[Attachment]' : '[Multimedia message]';
+    }
+    return {
+      id: 'mms-' + mms.id,
+      mmsId: mms.id,
+      sender: mms.address,
+      text,
+      imageUri: imagePart ? imagePart.uri : null,
+      mmsState: mms.state,
+      time: new Date(mms.date).toLocaleTimeString([], { hour: '2-digit', minute: '2-digit' }),
+      date: mms.date,
+      status: null,
+      reaction: null
+    };
+  }
 
-      // Format messages
-      const formattedMessages = pagedMessages.map((sms) => ({
-        id: sms.id,
-        sender: parseInt(sms.type) === 2 ? 'me' : sms.address,
-        text: sms.body,
-        time: new Date(parseInt(sms.date)).toLocaleTimeString([], { hour: '2-digit', minute: '2-digit' }),
-        date: parseInt(sms.date),
-        status: parseInt(sms.type) === 2 ? (parseInt(sms.read) === 1 ? 'seen' : parseInt(sms.status) === 0 ? 'sent' : 'pending') : null,
-        reaction: null
-      }));
+  // Fetch one page of a conversation. `cursor` is the `nextCursor` of the previous page
+  // (null for the newest page); the native side filters, orders and limits the query.
+  // `contactId` is a thread id, or an address when the thread is not known yet.
+  static async getChatMessages(contactId, cursor = null, pageSize = CHAT_PAGE_SIZE) {
+    try {
+      const threadId = typeof contactId === 'number' ? contactId : 0;
+      const result = await SmsModule.getThreadMessages(
+        threadId,
+        threadId > 0 ? null : String(contactId),
+        cursor ? cursor.date : 0,
+        cursor ? cursor.id : 0,
+        pageSize
+      );
+
+      // Native returns newest first; the chat renders oldest to newest
+      const formattedMessages = result.messages.reverse().map(this.formatChatMessage);
 
       return {
         messages: formattedMessages,
-        hasMore: start > 0,
-        page: page
+        hasMore: result.hasMore,
+        cursor: result.nextCursor
       };
 
     } catch (error) {
@@ -201,65 +429,62 @@ class SmsController {
     }
   }
 
+  // Native conversation summary to a ChatList item. Contact names and photos are resolved
+  // natively in one batch per page.
+  static toConversation(summary) {
+    return {
+      id: summary.address,
+      threadId: summary.threadId,
+      name: summary.name || summary.address,
+      photoUri: summary.photoUri,
+      avatar: (summary.name || summary.address).charAt(0).toUpperCase(),
+      avatarColor: '#2563eb',
+      lastMessage: summary.snippet,
+      time: new Date(summary.date).toLocaleTimeString([], { hour: '2-digit', minute: '2-digit' }),
+      date: summary.date,
+      unread: summary.unreadCount,
+      messageCount: summary.messageCount,
+      category: summary.category
+    };
+  }
 
-  // Fetch formatted chat messages with pagination
-  static async getConversations(page = 1, pageSize = 50) {
+  // The first conversations page as of the last sync, read from a native on-disk snapshot
+  // without touching the SMS provider. Returns { conversations, savedAt } or null.
+  static async getConversationSnapshot() {
     try {
-      const messages = await this.fetchSmsMessages();
-
-      // Group messages by contact
-      const contactsMap = {};
+      const snapshot = await SmsModule.getConversationSnapshot();
+      if (!snapshot) {
+        return null;
+      }
+      return {
+        conversations: snapshot.conversations.map(SmsController.toConversation),
+        savedAt: snapshot.savedAt
+      };
+    } catch (error) {
+      console.error('Error reading conversation snapshot:', error);
+      return null;
+    }
+  }
 
-      messages.forEach(msg => {
-        const address = msg.address;
-        if (!contactsMap[address]) {
-          contactsMap[address] = {
-            id: address,
-            name: address,
-            messages: [],
-            avatar: address.charAt(0).toUpperCase(),
-            // avatarColor logic needs to be moved or duplicated if we want to do it here, 
-            // but for now let's just pass the basic data and let frontend handle color if needed, 
-            // OR keep it consistent. Let's add the util function here or inside the map.
-            // For simplicity, we'll keep color logic in frontend or simple hash here.
-            avatarColor: '#2563eb' // Placeholder or we can move the color logic here.
-          };
-        }
-        contactsMap[address].messages.push(msg);
-      });
+  // Fetch one page of conversation summaries. `cursor` is the `nextCursor` of the previous page
+  // (null for the newest page); grouping, latest message and unread counts are computed natively.
+  // category is 'all' or one of 'personal', 'otp', 'transactional', 'promotional'; it is
+  // resolved natively against the classification index, so paging works the same either way.
+  static async getConversations(cursor = null, pageSize = 50, category = 'all') {
+    try {
+      const result = await SmsModule.getConversationSummaries(
+        cursor ? cursor.date : 0,
+        cursor ? cursor.threadId : 0,
+        pageSize,
+        category
+      );
 
-      // Process each contact to get last message and sort
-      const contactsList = Object.values(contactsMap).map(contact => {
-        const sortedMessages = contact.messages.sort((a, b) => b.date - a.date);
-        const latestMessage = sortedMessages[0];
-
-        // Calculate unread count for this contact
-        const unreadMessages = contact.messages.filter(msg => parseInt(msg.type) === 1 && parseInt(msg.read) === 0);
-
-        return {
-          id: contact.id,
-          name: contact.name,
-          avatar: contact.avatar,
-          avatarColor: contact.avatarColor,
-          lastMessage: latestMessage.body,
-          time: new Date(latestMessage.date).toLocaleTimeString([], { hour: '2-digit', minute: '2-digit' }),
-          date: latestMessage.date, // for sorting
-          unread: unreadMessages.length,
-          messageCount: contact.messages.length
-        };
-      }).sort((a, b) => b.date - a.date); // Sort by latest message date (Newest first)
-
-      // Pagination
-      const totalConversations = contactsList.length;
-      const start = (page - 1) * pageSize;
-      const end = start + pageSize;
-
-      const pagedConversations = contactsList.slice(start, end);
+      const conversations = result.conversations.map(SmsController.toConversation);
 
       return {
-        conversations: pagedConversations,
-        hasMore: end < totalConversations,
-        page: page
+        conversations,
+        hasMore: result.hasMore,
+        cursor: result.nextCursor
       };
 
     } catch (error) {
@@ -268,22 +493,159 @@ class SmsController {
     }
   }
 
-  // Delete SMS
+  // Newest OTP received in the last maxAgeMinutes as { id, threadId, address, code, date }, or null.
+  // Codes are extracted when the message arrives, so this never re-parses message bodies.
+  static async getLatestOtp(maxAgeMinutes = 10) {
+    try {
+      return await SmsModule.getLatestOtp(maxAgeMinutes);
+    } catch (error) {
+      console.error('Error getting latest OTP:', error);
+      return null;
+    }
+  }
+
+  // Full-text search over all message bodies. Every word is matched as a prefix; hits are
+  // ranked by number of matches, then recency.
+  static async searchMessages(query, limit = 50, offset = 0) {
+    try {
+      return await SmsModule.searchMessages(query, limit, offset);
+    } catch (error) {
+      console.error('Error searching messages:', error);
+      return { hits: [], hasMore: false };
+    }
+  }
+
+  // Subscribe to provider changes. The listener receives { inserted, updated, deleted, invalidated }
+  // where inserted/updated are raw rows (same shape as getThreadMessages) and deleted are ids.
+  // Inserted received rows also carry their category and otpCode (null when there is none).
+  // Returns the subscription; call remove() on it to stop listening.
+  static subscribeToChanges(listener) {
+    return smsEvents.addListener('SmsDelta', listener);
+  }
+
+  // Delete SMS. Deletes run natively in the background; the returned job id matches the
+  // 'SmsPurgeProgress' events for it.
   static async deleteMessage(messageId) {
+    return SmsController.deleteMessages([messageId]);
+  }
+
+  static async deleteMessages(messageIds) {
     try {
-      if (SmsModule.deleteSms) {
-        await SmsModule.deleteSms(messageId);
-      } else {
-        console.warn("Delete SMS not implemented in native module");
-        // Assuming success for UI if not critical, or throw error
-      }
-      return true;
+      return await SmsModule.deleteMessages(messageIds.map(String));
+    } catch (error) {
+      console.error('Error deleting messages:', error);
+      throw error;
+    }
+  }
+
+  static async deleteThread(threadId) {
+    try {
+      return await SmsModule.deleteThread(Number(threadId));
     } catch (error) {
-      console.error('Error deleting message:', error);
+      console.error('Error deleting thread:', error);
       throw error;
     }
   }
 
+  // Retention removes received messages classified as OTPs once they are older than
+  // maxAgeDays; it runs at most once a day while enabled.
+  static async setRetentionPolicy({ enabled, maxAgeDays }) {
+    try {
+      await SmsModule.setRetentionPolicy(!!enabled, Number(maxAgeDays));
+    } catch (error) {
+      console.error('Error setting retention policy:', error);
+      throw error;
+    }
+  }
+
+  static async getRetentionPolicy() {
+    try {
+      return await SmsModule.getRetentionPolicy();
+    } catch (error) {
+      console.error('Error getting retention policy:', error);
+      return null;
+    }
+  }
+
+  static async runRetention() {
+    try {
+      return await SmsModule.runRetention();
+    } catch (error) {
+      console.error('Error running retention:', error);
+      throw error;
+    }
+  }
+
+  // Listener receives { jobId, kind, purged, done, error } after every deleted chunk, where kind
+  // is 'messages', 'thread' or 'retention'. Returns the subscription; call remove() to stop listening.
+  static subscribeToPurgeProgress(listener) {
+    return smsEvents.addListener('SmsPurgeProgress', listener);
+  }
+
+  // Write every SMS to a compressed archive file at path, or restore one. Both run natively in
+  // the background and resolve to a job id matching the 'SmsArchiveProgress' events. Calling
+  // again with the same path after an interruption resumes from the last completed chunk.
+  // Importing requires being the default SMS app.
+  static async exportArchive(path) {
+    try {
+      return await SmsModule.exportArchive(String(path));
+    } catch (error) {
+      console.error('Error exporting archive:', error);
+      throw error;
+    }
+  }
+
+  static async importArchive(path) {
+    try {
+      return await SmsModule.importArchive(String(path));
+    } catch (error) {
+      console.error('Error importing archive:', error);
+      throw error;
+    }
+  }
+
+  // Listener receives { jobId, kind, processed, total, done, error } after every chunk, where kind
+  // is 'export' or 'import'. Returns the subscription; call remove() to stop listening.
+  static subscribeToArchiveProgress(listener) {
+    return smsEvents.addListener('SmsArchiveProgress', listener);
+  }
+
+  // MMS stored by the native ingestor, newest first. Attachment parts carry a file uri;
+  // text parts carry their text inline
+  static async getMmsMessages(threadId, limit = 50) {
+    try {
+      return await SmsModule.getMmsMessages(threadId, limit);
+    } catch (error) {
+      console.error('Error getting MMS messages:', error);
+      return [];
+    }
+  }
+
+  // File uri of a thumbnail for an image or video part, made on first request
+  static async getMmsThumbnail(partId, maxSize = 256) {
+    try {
+      return await SmsModule.getMmsThumbnail(partId, maxSize);
+    } catch (error) {
+      console.error('Error getting MMS thumbnail:', error);
+      return null;
+    }
+  }
+
+  static async retryMmsDownload(messageId) {
+    try {
+      await SmsModule.retryMmsDownload(messageId);
+      return true;
+    } catch (error) {
+      console.error('Error retrying MMS download:', error);
+      return false;
+    }
+  }
+
+  // Fires with { id, threadId } once a downloaded MMS has been stored
+  static subscribeToMms(listener) {
+    return smsEvents.addListener('MmsReceived', listener);
+  }
+
   // Star Message (Local Only)
   static async toggleStarMessage(messageId) {
     try {
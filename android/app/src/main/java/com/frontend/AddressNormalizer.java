@@ -0,0 +1,107 @@
+package com.frontend;
+
+import android.content.Context;
+import android.telephony.PhoneNumberUtils;
+import android.telephony.TelephonyManager;
+
+import java.util.Locale;
+
+// Canonical form of an SMS address, used as a cache key: phone numbers become E.164 where the
+// device country allows it, short codes keep their digits, alphanumeric sender IDs are only trimmed
+// since the provider matches them exactly.
+public class AddressNormalizer {
+
+    public static final int KIND_PHONE = 0;
+    public static final int KIND_SHORT_CODE = 1;
+    public static final int KIND_ALPHANUMERIC = 2;
+
+    private static final int MAX_SHORT_CODE_DIGITS = 6;
+
+    private static volatile String countryIso;
+
+    public static String normalize(Context context, String address) {
+        if (address == null) {
+            return "";
+        }
+        String trimmed = address.trim();
+        if (hasLetter(trimmed)) {
+            return trimmed;
+        }
+
+        String digits = digitsOf(trimmed);
+        if (digits.isEmpty()) {
+            return trimmed;
+        }
+        if (trimmed.startsWith("+")) {
+            return "+" + digits;
+        }
+        if (digits.startsWith("00") && digits.length() > MAX_SHORT_CODE_DIGITS + 2) {
+            return "+" + digits.substring(2);
+        }
+        if (digits.length() <= MAX_SHORT_CODE_DIGITS) {
+            return digits;
+        }
+
+        String country = getCountryIso(context);
+        if (country != null) {
+            String e164 = PhoneNumberUtils.formatNumberToE164(digits, country);
+            if (e164 != null) {
+                return e164;
+            }
+        }
+        return digits;
+    }
+
+    public static int kindOf(String address) {
+        if (address == null) {
+            return KIND_PHONE;
+        }
+        String trimmed = address.trim();
+        if (hasLetter(trimmed)) {
+            return KIND_ALPHANUMERIC;
+        }
+        if (!trimmed.startsWith("+") && digitsOf(trimmed).length() <= MAX_SHORT_CODE_DIGITS) {
+            return KIND_SHORT_CODE;
+        }
+        return KIND_PHONE;
+    }
+
+    private static String getCountryIso(Context context) {
+        String country = countryIso;
+        if (country == null) {
+            TelephonyManager telephonyManager = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
+            if (telephonyManager != null) {
+                country = telephonyManager.getSimCountryIso();
+                if (country == null || country.isEmpty()) {
+                    country = telephonyManager.getNetworkCountryIso();
+                }
+            }
+            if (country == null || country.isEmpty()) {
+                return null;
+            }
+            country = country.toUpperCase(Locale.ROOT);
+            countryIso = country;
+        }
+        return country;
+    }
+
+    private static boolean hasLetter(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.isLetter(value.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String digitsOf(String value) {
+        StringBuilder digits = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+}
@@ -0,0 +1,256 @@
+package com.frontend;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.provider.ContactsContract;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Bounded LRU from normalized address to contact name and photo. Addresses missing from the cache
+// are looked up together in one Phone query per chunk instead of one PhoneLookup per address, and
+// misses are cached too so unknown numbers aren't queried again. Contacts changes clear the cache
+// once they settle, since sync adapters report a burst of them.
+public class ContactResolver {
+
+    private static final int MAX_ENTRIES = 1024;
+    // Normalized numbers plus raw addresses bound per query; stays under SQLite's 999 limit
+    private static final int MAX_BIND_ARGS = 500;
+    private static final long CLEAR_DELAY_MS = 1000;
+
+    private static final String[] PHONE_PROJECTION = {
+        ContactsContract.CommonDataKinds.Phone.NORMALIZED_NUMBER,
+        ContactsContract.CommonDataKinds.Phone.NUMBER,
+        ContactsContract.CommonDataKinds.Phone.DISPLAY_NAME,
+        ContactsContract.CommonDataKinds.Phone.PHOTO_THUMBNAIL_URI
+    };
+
+    private static ContactResolver instance;
+
+    public static class Contact {
+        public final String name;
+        public final String photoUri;
+
+        Contact(String name, String photoUri) {
+            this.name = name;
+            this.photoUri = photoUri;
+        }
+    }
+
+    private static final Contact NONE = new Contact(null, null);
+
+    private final Context context;
+    private final Handler handler;
+    private final Map<String, Contact> contacts = new LinkedHashMap<String, Contact>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Contact> eldest) {
+            if (size() > MAX_ENTRIES) {
+                evictions++;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long lookups;
+    // Bumped on every contacts change so a lookup racing with the change doesn't cache stale rows
+    private long generation;
+    private boolean observerRegistered;
+
+    private final Runnable clearRunnable = this::clear;
+
+    public static synchronized ContactResolver getInstance(Context context) {
+        if (instance == null) {
+            instance = new ContactResolver(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ContactResolver(Context context) {
+        this.context = context;
+        HandlerThread thread = new HandlerThread("ContactResolver");
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+    }
+
+    public static class Stats {
+        public int size;
+        public long hits;
+        public long misses;
+        public long evictions;
+        public long lookups;
+    }
+
+    // Contacts keyed by the addresses as given; addresses without a contact are left out
+    public Map<String, Contact> resolve(Collection<String> addresses) {
+        Map<String, Contact> resolved = new HashMap<>();
+        if (!hasPermission()) {
+            return resolved;
+        }
+        ensureObserver();
+
+        Map<String, List<String>> missing = new HashMap<>();
+        long lookupGeneration;
+        synchronized (this) {
+            lookupGeneration = generation;
+            for (String address : addresses) {
+                if (address == null || resolved.containsKey(address)) {
+                    continue;
+                }
+                String key = AddressNormalizer.normalize(context, address);
+                Contact cached = contacts.get(key);
+                if (cached != null) {
+                    hits++;
+                    if (cached != NONE) {
+                        resolved.put(address, cached);
+                    }
+                    continue;
+                }
+                // Short codes and sender IDs are never saved as contacts
+                if (AddressNormalizer.kindOf(address) != AddressNormalizer.KIND_PHONE) {
+                    contacts.put(key, NONE);
+                    continue;
+                }
+                misses++;
+                List<String> originals = missing.get(key);
+                if (originals == null) {
+                    originals = new ArrayList<>(1);
+                    missing.put(key, originals);
+                }
+                originals.add(address);
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return resolved;
+        }
+
+        Map<String, Contact> found = lookup(missing);
+        synchronized (this) {
+            for (Map.Entry<String, List<String>> entry : missing.entrySet()) {
+                Contact contact = found.get(entry.getKey());
+                if (lookupGeneration == generation) {
+                    contacts.put(entry.getKey(), contact != null ? contact : NONE);
+                }
+                if (contact != null) {
+                    for (String address : entry.getValue()) {
+                        resolved.put(address, contact);
+                    }
+                }
+            }
+        }
+        return resolved;
+    }
+
+    public synchronized void clear() {
+        generation++;
+        contacts.clear();
+    }
+
+    public synchronized Stats getStats() {
+        Stats stats = new Stats();
+        stats.size = contacts.size();
+        stats.hits = hits;
+        stats.misses = misses;
+        stats.evictions = evictions;
+        stats.lookups = lookups;
+        return stats;
+    }
+
+    // Matches on the contact's E.164 form first, then on the number exactly as the user saved it.
+    // Results are keyed by the requesting normalized address either way.
+    private Map<String, Contact> lookup(Map<String, List<String>> missing) {
+        List<String> keys = new ArrayList<>(missing.keySet());
+        Map<String, Contact> found = new HashMap<>();
+        int start = 0;
+        while (start < keys.size()) {
+            // Each key binds itself and every raw address it was requested under
+            List<String> chunk = new ArrayList<>();
+            List<String> rawNumbers = new ArrayList<>();
+            Map<String, String> keysByRaw = new HashMap<>();
+            while (start < keys.size()) {
+                String key = keys.get(start);
+                List<String> originals = missing.get(key);
+                if (!chunk.isEmpty() && chunk.size() + rawNumbers.size() + 1 + originals.size() > MAX_BIND_ARGS) {
+                    break;
+                }
+                chunk.add(key);
+                for (String raw : originals) {
+                    rawNumbers.add(raw);
+                    keysByRaw.put(raw, key);
+                }
+                start++;
+            }
+            List<String> args = new ArrayList<>(chunk.size() + rawNumbers.size());
+            args.addAll(chunk);
+            args.addAll(rawNumbers);
+
+            String selection = ContactsContract.CommonDataKinds.Phone.NORMALIZED_NUMBER + " IN (" + SmsRepository.placeholders(chunk.size()) + ")"
+                    + " OR " + ContactsContract.CommonDataKinds.Phone.NUMBER + " IN (" + SmsRepository.placeholders(rawNumbers.size()) + ")";
+            Cursor cursor;
+            try {
+                cursor = context.getContentResolver().query(ContactsContract.CommonDataKinds.Phone.CONTENT_URI, PHONE_PROJECTION,
+                        selection, args.toArray(new String[0]), null);
+            } catch (Exception e) {
+                android.util.Log.e("ContactResolver", "Error looking up contacts", e);
+                continue;
+            }
+            synchronized (this) {
+                lookups++;
+            }
+            if (cursor == null) {
+                continue;
+            }
+            try {
+                while (cursor.moveToNext()) {
+                    String normalized = cursor.getString(0);
+                    // A NUMBER match is filed under the address that asked for it, not the
+                    // contact's own NORMALIZED_NUMBER, which may be formatted differently
+                    String key = normalized != null && missing.containsKey(normalized) ? normalized : keysByRaw.get(cursor.getString(1));
+                    if (key != null && !found.containsKey(key)) {
+                        found.put(key, new Contact(cursor.getString(2), cursor.getString(3)));
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return found;
+    }
+
+    private boolean hasPermission() {
+        return context.checkSelfPermission(Manifest.permission.READ_CONTACTS) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    // Registered on first use because READ_CONTACTS may be granted after the resolver is created
+    private synchronized void ensureObserver() {
+        if (observerRegistered) {
+            return;
+        }
+        context.getContentResolver().registerContentObserver(ContactsContract.Contacts.CONTENT_URI, true, new ContentObserver(handler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                // Lookups already running must not cache what they read, but the clear itself waits
+                // for the burst to end
+                synchronized (ContactResolver.this) {
+                    generation++;
+                }
+                handler.removeCallbacks(clearRunnable);
+                handler.postDelayed(clearRunnable, CLEAR_DELAY_MS);
+            }
+        });
+        observerRegistered = true;
+    }
+}
@@ -0,0 +1,179 @@
+package com.frontend;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// On-disk copy of the newest conversation summaries, written after every first-page sync and read
+// at launch so the inbox can render before the provider has answered. The file is a small
+// versioned binary record list read through a memory-mapped channel; a file with an unknown
+// version or a truncated body is ignored, and the next sync replaces it.
+//
+// Layout (big-endian): magic, version, savedAt, count, then per conversation threadId, date,
+// messageCount, unreadCount, category and the address, name, photoUri and snippet strings as
+// length-prefixed UTF-8 (length -1 for null).
+public class ConversationSnapshot {
+
+    public static final int MAX_CONVERSATIONS = 50;
+
+    private static final String FILE_NAME = "conversation_snapshot.bin";
+    private static final int MAGIC = 0x4E585353; // "NXSS"
+    private static final int VERSION = 1;
+
+    private static ConversationSnapshot instance;
+
+    private final File file;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> new Thread(r, "ConversationSnapshot"));
+
+    public static synchronized ConversationSnapshot getInstance(Context context) {
+        if (instance == null) {
+            instance = new ConversationSnapshot(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ConversationSnapshot(Context context) {
+        this.file = new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    public static class Snapshot {
+        public final long savedAt;
+        public final List<ConversationSummary> summaries;
+
+        Snapshot(long savedAt, List<ConversationSummary> summaries) {
+            this.savedAt = savedAt;
+            this.summaries = summaries;
+        }
+    }
+
+    public void writeAsync(List<ConversationSummary> summaries) {
+        List<ConversationSummary> copy = new ArrayList<>(summaries.subList(0, Math.min(summaries.size(), MAX_CONVERSATIONS)));
+        writer.execute(() -> {
+            try {
+                write(copy);
+            } catch (IOException e) {
+                android.util.Log.e("ConversationSnapshot", "Error writing snapshot", e);
+            }
+        });
+    }
+
+    // Null when there is no usable snapshot
+    public Snapshot read() {
+        if (!file.exists()) {
+            return null;
+        }
+        try (RandomAccessFile input = new RandomAccessFile(file, "r"); FileChannel channel = input.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 20 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            long savedAt = buffer.getLong();
+            int count = buffer.getInt();
+            if (count < 0 || count > MAX_CONVERSATIONS) {
+                return null;
+            }
+            List<ConversationSummary> summaries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                ConversationSummary summary = new ConversationSummary();
+                summary.threadId = buffer.getLong();
+                summary.date = buffer.getLong();
+                summary.messageCount = buffer.getInt();
+                summary.unreadCount = buffer.getInt();
+                summary.category = buffer.get();
+                summary.address = getString(buffer);
+                summary.name = getString(buffer);
+                summary.photoUri = getString(buffer);
+                summary.snippet = getString(buffer);
+                summaries.add(summary);
+            }
+            return new Snapshot(savedAt, summaries);
+        } catch (Exception e) {
+            // BufferUnderflowException and friends mean a truncated or foreign file
+            android.util.Log.w("ConversationSnapshot", "Ignoring unreadable snapshot", e);
+            return null;
+        }
+    }
+
+    public void clear() {
+        writer.execute(() -> {
+            if (file.exists() && !file.delete()) {
+                android.util.Log.w("ConversationSnapshot", "Could not delete snapshot");
+            }
+        });
+    }
+
+    private void write(List<ConversationSummary> summaries) throws IOException {
+        int size = 20;
+        List<byte[][]> strings = new ArrayList<>(summaries.size());
+        for (ConversationSummary summary : summaries) {
+            byte[][] encoded = {
+                encode(summary.address), encode(summary.name), encode(summary.photoUri), encode(summary.snippet)
+            };
+            strings.add(encoded);
+            size += 8 + 8 + 4 + 4 + 1;
+            for (byte[] bytes : encoded) {
+                size += 4 + (bytes != null ? bytes.length : 0);
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(System.currentTimeMillis());
+        buffer.putInt(summaries.size());
+        for (int i = 0; i < summaries.size(); i++) {
+            ConversationSummary summary = summaries.get(i);
+            buffer.putLong(summary.threadId);
+            buffer.putLong(summary.date);
+            buffer.putInt(summary.messageCount);
+            buffer.putInt(summary.unreadCount);
+            buffer.put((byte) summary.category);
+            for (byte[] bytes : strings.get(i)) {
+                if (bytes == null) {
+                    buffer.putInt(-1);
+                } else {
+                    buffer.putInt(bytes.length);
+                    buffer.put(bytes);
+                }
+            }
+        }
+        buffer.flip();
+
+        // Write next to the live file and rename over it so a reader never sees a partial snapshot
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(temp); FileChannel channel = output.getChannel()) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    private static byte[] encode(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
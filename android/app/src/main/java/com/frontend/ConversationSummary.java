@@ -0,0 +1,16 @@
+package com.frontend;
+
+public class ConversationSummary {
+
+    public long threadId;
+    public String address;
+    // Null when the address isn't a saved contact
+    public String name;
+    public String photoUri;
+    public String snippet;
+    public long date;
+    public int messageCount;
+    public int unreadCount;
+    // SmsClassifier.CATEGORY_*
+    public int category;
+}
@@ -2,7 +2,6 @@ package com.frontend;
 
 import android.app.IntentService;
 import android.content.Intent;
-import android.telephony.SmsManager;
 import android.net.Uri;
 
 public class HeadlessSmsSendService extends IntentService {
@@ -22,8 +21,7 @@ public class HeadlessSmsSendService extends IntentService {
                 if (uri != null && message != null) {
                     String phoneNumber = uri.getSchemeSpecificPart();
                     try {
-                        SmsManager smsManager = SmsManager.getDefault();
-                        smsManager.sendTextMessage(phoneNumber, null, message, null, null);
+                        SmsSendQueue.getInstance(this).enqueue(phoneNumber, message);
                     } catch (Exception e) {
                         e.printStackTrace();
                     }
@@ -0,0 +1,20 @@
+package com.frontend;
+
+public class IncomingSms {
+
+    public final String sender;
+    public final String body;
+    public final long timestamp;
+    // SystemClock.elapsedRealtime() when the broadcast reached the receiver
+    public final long receivedAt;
+
+    public long threadId;
+    public long id;
+
+    public IncomingSms(String sender, String body, long timestamp, long receivedAt) {
+        this.sender = sender;
+        this.body = body;
+        this.timestamp = timestamp;
+        this.receivedAt = receivedAt;
+    }
+}
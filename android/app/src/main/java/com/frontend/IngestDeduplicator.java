@@ -0,0 +1,136 @@
+package com.frontend;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+// Time-windowed duplicate filter for the receive path. Fingerprints (64-bit FNV-1a) of whole
+// broadcasts and of reassembled messages go into a fixed-size ring, so memory stays the same
+// however much traffic arrives; the oldest fingerprint is overwritten first and anything older
+// than WINDOW_MS no longer counts. The ring is mirrored slot by slot to a small file so a
+// receiver retry after a process restart is still recognised.
+public class IngestDeduplicator {
+
+    private static final int CAPACITY = 2048;
+    private static final long WINDOW_MS = 24 * 60 * 60 * 1000L;
+    private static final String FILE_NAME = "ingest_dedup.bin";
+    // File layout: int head, then CAPACITY slots of (long fingerprint, long seenAt)
+    private static final int HEADER_BYTES = 4;
+    private static final int SLOT_BYTES = 16;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static IngestDeduplicator instance;
+
+    private final Context context;
+    private final long[] fingerprints = new long[CAPACITY];
+    private final long[] seenAt = new long[CAPACITY];
+    private int head;
+    private RandomAccessFile file;
+
+    public static synchronized IngestDeduplicator getInstance(Context context) {
+        if (instance == null) {
+            instance = new IngestDeduplicator(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private IngestDeduplicator(Context context) {
+        this.context = context;
+        load(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    public synchronized boolean contains(long fingerprint) {
+        long cutoff = System.currentTimeMillis() - WINDOW_MS;
+        for (int i = 0; i < CAPACITY; i++) {
+            if (fingerprints[i] == fingerprint && seenAt[i] >= cutoff) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized void add(long fingerprint) {
+        int slot = head;
+        fingerprints[slot] = fingerprint;
+        seenAt[slot] = System.currentTimeMillis();
+        head = (head + 1) % CAPACITY;
+        persist(slot);
+    }
+
+    // Identifies a broadcast by its raw PDUs; a retried SMS_DELIVER carries the same bytes
+    public static long fingerprint(Object[] pdus) {
+        long hash = FNV_OFFSET;
+        for (Object pdu : pdus) {
+            for (byte b : (byte[]) pdu) {
+                hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+            }
+            hash = (hash ^ 0xff) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    // Identifies a message independently of how it was split into PDUs
+    public long fingerprint(String sender, long timestamp, String body) {
+        long hash = FNV_OFFSET;
+        hash = mix(hash, AddressNormalizer.normalize(context, sender));
+        for (int shift = 0; shift < 64; shift += 8) {
+            hash = (hash ^ ((timestamp >>> shift) & 0xff)) * FNV_PRIME;
+        }
+        return mix(hash, body);
+    }
+
+    private static long mix(long hash, String value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+                hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+            }
+        }
+        // Separator so ("ab", "c") and ("a", "bc") differ
+        return (hash ^ 0xff) * FNV_PRIME;
+    }
+
+    private void load(File path) {
+        try {
+            file = new RandomAccessFile(path, "rw");
+            if (file.length() != HEADER_BYTES + (long) CAPACITY * SLOT_BYTES) {
+                file.setLength(0);
+                file.setLength(HEADER_BYTES + (long) CAPACITY * SLOT_BYTES);
+                return;
+            }
+            byte[] contents = new byte[(int) file.length()];
+            file.readFully(contents);
+            ByteBuffer buffer = ByteBuffer.wrap(contents);
+            head = Math.floorMod(buffer.getInt(), CAPACITY);
+            for (int i = 0; i < CAPACITY; i++) {
+                fingerprints[i] = buffer.getLong();
+                seenAt[i] = buffer.getLong();
+            }
+        } catch (IOException e) {
+            // The in-memory ring still works; only restarts lose their history
+            android.util.Log.e("IngestDeduplicator", "Error loading dedup state", e);
+            file = null;
+        }
+    }
+
+    private void persist(int slot) {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.seek(0);
+            file.writeInt(head);
+            file.seek(HEADER_BYTES + (long) slot * SLOT_BYTES);
+            file.writeLong(fingerprints[slot]);
+            file.writeLong(seenAt[slot]);
+        } catch (IOException e) {
+            android.util.Log.e("IngestDeduplicator", "Error persisting dedup state", e);
+        }
+    }
+}
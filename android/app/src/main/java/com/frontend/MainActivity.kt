@@ -4,6 +4,8 @@ import com.facebook.react.ReactActivity
 import com.facebook.react.ReactActivityDelegate
 import com.facebook.react.defaults.DefaultNewArchitectureEntryPoint.fabricEnabled
 import com.facebook.react.defaults.DefaultReactActivityDelegate
+import java.io.FileDescriptor
+import java.io.PrintWriter
 
 class MainActivity : ReactActivity() {
 
@@ -27,4 +29,10 @@ class MainActivity : ReactActivity() {
    */
   override fun createReactActivityDelegate(): ReactActivityDelegate =
       DefaultReactActivityDelegate(this, mainComponentName, fabricEnabled)
+
+  /** Appends the SMS latency histograms and counters to `adb shell dumpsys activity top`. */
+  override fun dump(prefix: String, fd: FileDescriptor?, writer: PrintWriter, args: Array<out String>?) {
+    super.dump(prefix, fd, writer, args)
+    SmsPerfStats.dump(this, writer)
+  }
 }
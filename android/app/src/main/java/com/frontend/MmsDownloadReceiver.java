@@ -0,0 +1,25 @@
+package com.frontend;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+// Receives the result PendingIntents of SmsManager.downloadMultimediaMessage and of the
+// sendMultimediaMessage calls that answer the MMSC, for MmsIngestor
+public class MmsDownloadReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        long messageId = intent.getLongExtra(MmsIngestor.EXTRA_MESSAGE_ID, -1);
+        if (messageId < 0) {
+            return;
+        }
+        if (MmsIngestor.ACTION_MMS_RESPONSE_SENT.equals(intent.getAction())) {
+            MmsIngestor.getInstance(context).onResponseSent(messageId, getResultCode());
+            return;
+        }
+        // Parsing the downloaded PDU touches disk; the worker finishes the broadcast
+        PendingResult pendingResult = goAsync();
+        MmsIngestor.getInstance(context).onDownloaded(messageId, getResultCode(), pendingResult);
+    }
+}
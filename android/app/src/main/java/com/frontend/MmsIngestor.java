@@ -0,0 +1,575 @@
+package com.frontend;
+
+import android.app.Activity;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.telephony.SmsManager;
+
+import androidx.core.content.FileProvider;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Receives MMS as the default SMS app. A WAP push carries only the m-notification-ind; the message
+// itself is fetched with SmsManager.downloadMultimediaMessage, which writes the retrieve-conf PDU
+// into a cache file we hand out through FileProvider. That file is then stream-parsed by
+// MmsPduParser with attachments going straight to files under filesDir/mms_parts, and only the
+// metadata lands in NexalertDatabase. Like the platform messaging app, the notification is also
+// written to content://mms right away and filled in with the parts once downloaded, so the thread
+// counts the message and other apps see it. The MMSC is told the outcome with an
+// m-notifyresp-ind or m-acknowledge-ind. All work runs on one background thread.
+public class MmsIngestor {
+
+    public static final int STATE_DOWNLOADING = 0;
+    public static final int STATE_DOWNLOADED = 1;
+    public static final int STATE_FAILED = 2;
+
+    static final String ACTION_MMS_DOWNLOADED = "com.frontend.MMS_DOWNLOADED";
+    static final String ACTION_MMS_RESPONSE_SENT = "com.frontend.MMS_RESPONSE_SENT";
+    static final String EXTRA_MESSAGE_ID = "messageId";
+
+    private static final String PDU_DIR = "mms_pdu";
+    private static final String PARTS_DIR = "mms_parts";
+
+    private static final Uri MMS_INBOX_URI = Uri.parse("content://mms/inbox");
+    // PduHeaders values the provider stores as plain integers
+    private static final int PROVIDER_MESSAGE_TYPE_NOTIFICATION_IND = 130;
+    private static final int PROVIDER_MESSAGE_TYPE_RETRIEVE_CONF = 132;
+    private static final int PROVIDER_MMS_VERSION = 18;
+    private static final int PROVIDER_ADDRESS_FROM = 137;
+    private static final int CHARSET_UTF8 = 106;
+
+    private static MmsIngestor instance;
+
+    public interface Listener {
+        void onMmsReceived(long messageId, long threadId);
+    }
+
+    public static class MmsPart {
+        public long id;
+        public String contentType;
+        public String name;
+        public String text;
+        public String path;
+        public long size;
+    }
+
+    public static class MmsMessage {
+        public long id;
+        public long threadId;
+        public String address;
+        public String subject;
+        public long date;
+        public int state;
+        public int read;
+        public final List<MmsPart> parts = new ArrayList<>();
+    }
+
+    private final Context context;
+    private final NexalertDatabase database;
+    private final Handler handler;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public static synchronized MmsIngestor getInstance(Context context) {
+        if (instance == null) {
+            instance = new MmsIngestor(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private MmsIngestor(Context context) {
+        this.context = context;
+        this.database = NexalertDatabase.getInstance(context);
+        HandlerThread thread = new HandlerThread("MmsIngestor");
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public void onPush(byte[] pdu, BroadcastReceiver.PendingResult pendingResult) {
+        handler.post(() -> {
+            try {
+                handlePush(pdu);
+            } catch (Exception e) {
+                android.util.Log.e("MmsIngestor", "Error handling MMS notification", e);
+            } finally {
+                pendingResult.finish();
+            }
+        });
+    }
+
+    public void onDownloaded(long messageId, int resultCode, BroadcastReceiver.PendingResult pendingResult) {
+        handler.post(() -> {
+            try {
+                handleDownloaded(messageId, resultCode);
+            } catch (Exception e) {
+                android.util.Log.e("MmsIngestor", "Error storing downloaded MMS " + messageId, e);
+                setState(messageId, STATE_FAILED);
+            } finally {
+                pendingResult.finish();
+            }
+        });
+    }
+
+    public void onResponseSent(long messageId, int resultCode) {
+        handler.post(() -> {
+            if (resultCode != Activity.RESULT_OK) {
+                android.util.Log.w("MmsIngestor", "MMS response for " + messageId + " failed with " + resultCode);
+            }
+            File responseFile = responseFile(messageId);
+            if (responseFile.exists() && !responseFile.delete()) {
+                android.util.Log.w("MmsIngestor", "Could not delete " + responseFile);
+            }
+        });
+    }
+
+    // Starts the download again for a message whose earlier attempt failed
+    public void retryDownload(long messageId) {
+        handler.post(() -> {
+            Cursor cursor = database.getReadableDatabase().rawQuery(
+                    "SELECT content_location FROM mms_message WHERE _id = ? AND state = ?",
+                    new String[]{String.valueOf(messageId), String.valueOf(STATE_FAILED)});
+            try {
+                if (cursor.moveToFirst()) {
+                    setState(messageId, STATE_DOWNLOADING);
+                    download(messageId, cursor.getString(0));
+                }
+            } finally {
+                cursor.close();
+            }
+        });
+    }
+
+    public List<MmsMessage> getThreadMessages(long threadId, int limit) {
+        SQLiteDatabase db = database.getReadableDatabase();
+        List<MmsMessage> messages = new ArrayList<>();
+        Map<Long, MmsMessage> byId = new HashMap<>();
+        Cursor cursor = db.rawQuery("SELECT _id, thread_id, address, subject, date, state, read FROM mms_message "
+                + "WHERE thread_id = ? ORDER BY date DESC LIMIT ?", new String[]{String.valueOf(threadId), String.valueOf(limit)});
+        try {
+            while (cursor.moveToNext()) {
+                MmsMessage message = new MmsMessage();
+                message.id = cursor.getLong(0);
+                message.threadId = cursor.getLong(1);
+                message.address = cursor.getString(2);
+                message.subject = cursor.getString(3);
+                message.date = cursor.getLong(4);
+                message.state = cursor.getInt(5);
+                message.read = cursor.getInt(6);
+                messages.add(message);
+                byId.put(message.id, message);
+            }
+        } finally {
+            cursor.close();
+        }
+        if (messages.isEmpty()) {
+            return messages;
+        }
+
+        String[] ids = new String[messages.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = String.valueOf(messages.get(i).id);
+        }
+        Cursor parts = db.rawQuery("SELECT _id, message_id, content_type, name, text, path, size FROM mms_part "
+                + "WHERE message_id IN (" + SmsRepository.placeholders(ids.length) + ") ORDER BY message_id, seq", ids);
+        try {
+            while (parts.moveToNext()) {
+                MmsPart part = new MmsPart();
+                part.id = parts.getLong(0);
+                part.contentType = parts.getString(2);
+                part.name = parts.getString(3);
+                part.text = parts.getString(4);
+                part.path = parts.getString(5);
+                part.size = parts.getLong(6);
+                byId.get(parts.getLong(1)).parts.add(part);
+            }
+        } finally {
+            parts.close();
+        }
+        return messages;
+    }
+
+    public MmsPart getPart(long partId) {
+        Cursor cursor = database.getReadableDatabase().rawQuery("SELECT _id, content_type, name, text, path, size FROM mms_part WHERE _id = ?",
+                new String[]{String.valueOf(partId)});
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            MmsPart part = new MmsPart();
+            part.id = cursor.getLong(0);
+            part.contentType = cursor.getString(1);
+            part.name = cursor.getString(2);
+            part.text = cursor.getString(3);
+            part.path = cursor.getString(4);
+            part.size = cursor.getLong(5);
+            return part;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void handlePush(byte[] pdu) throws Exception {
+        MmsPduParser.Notification notification = MmsPduParser.parseNotification(pdu);
+        if (notification.messageType != MmsPduParser.MESSAGE_TYPE_NOTIFICATION_IND
+                || notification.transactionId == null || notification.contentLocation == null) {
+            return;
+        }
+
+        ContentValues values = new ContentValues();
+        values.put("transaction_id", notification.transactionId);
+        values.put("thread_id", notification.from != null ? ThreadIdCache.getInstance(context).getOrCreateThreadId(notification.from) : 0);
+        values.put("address", notification.from);
+        values.put("subject", notification.subject);
+        values.put("content_location", notification.contentLocation);
+        values.put("message_size", notification.messageSize);
+        values.put("state", STATE_DOWNLOADING);
+        long date = System.currentTimeMillis();
+        values.put("date", date);
+        // The transaction id is unique, so a repeated push is ignored here
+        SQLiteDatabase db = database.getWritableDatabase();
+        long messageId = db.insertWithOnConflict("mms_message", null, values, SQLiteDatabase.CONFLICT_IGNORE);
+        if (messageId < 0) {
+            return;
+        }
+
+        long providerId = insertProviderNotification(notification, values.getAsLong("thread_id"), date);
+        if (providerId > 0) {
+            ContentValues providerValues = new ContentValues();
+            providerValues.put("provider_id", providerId);
+            db.update("mms_message", providerValues, "_id = ?", new String[]{String.valueOf(messageId)});
+        }
+        download(messageId, notification.contentLocation);
+    }
+
+    private void download(long messageId, String contentLocation) {
+        try {
+            File pduFile = pduFile(messageId);
+            File directory = pduFile.getParentFile();
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IllegalStateException("Could not create " + directory);
+            }
+            // SmsManager grants the MMS service write access to this uri for the download
+            Uri uri = FileProvider.getUriForFile(context, context.getPackageName() + ".fileprovider", pduFile);
+
+            Intent intent = new Intent(ACTION_MMS_DOWNLOADED, Uri.parse("nexalert://mms/" + messageId), context, MmsDownloadReceiver.class);
+            intent.putExtra(EXTRA_MESSAGE_ID, messageId);
+            // The MMS service adds its result details as fill-in extras
+            int flags = PendingIntent.FLAG_UPDATE_CURRENT;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+                flags |= PendingIntent.FLAG_MUTABLE;
+            }
+            PendingIntent downloadedIntent = PendingIntent.getBroadcast(context, 0, intent, flags);
+            SmsManager.getDefault().downloadMultimediaMessage(context, contentLocation, uri, null, downloadedIntent);
+        } catch (Exception e) {
+            android.util.Log.e("MmsIngestor", "Error starting MMS download " + messageId, e);
+            setState(messageId, STATE_FAILED);
+        }
+    }
+
+    private void handleDownloaded(long messageId, int resultCode) throws Exception {
+        SQLiteDatabase db = database.getWritableDatabase();
+        long threadId;
+        String address;
+        String transactionId;
+        long providerId;
+        Cursor cursor = db.rawQuery("SELECT thread_id, address, transaction_id, provider_id FROM mms_message WHERE _id = ?",
+                new String[]{String.valueOf(messageId)});
+        try {
+            if (!cursor.moveToFirst()) {
+                return;
+            }
+            threadId = cursor.getLong(0);
+            address = cursor.getString(1);
+            transactionId = cursor.getString(2);
+            providerId = cursor.isNull(3) ? -1 : cursor.getLong(3);
+        } finally {
+            cursor.close();
+        }
+
+        File pduFile = pduFile(messageId);
+        if (resultCode != Activity.RESULT_OK || !pduFile.exists()) {
+            android.util.Log.w("MmsIngestor", "MMS download " + messageId + " failed with " + resultCode);
+            setState(messageId, STATE_FAILED);
+            // Deferred keeps the message on the MMSC for a retry
+            sendResponse(messageId, MmsPduParser.encodeNotifyRespInd(transactionId, MmsPduParser.STATUS_DEFERRED));
+            return;
+        }
+
+        MmsPduParser.RetrieveConf conf;
+        File partsDir = new File(new File(context.getFilesDir(), PARTS_DIR), String.valueOf(messageId));
+        try (InputStream input = new FileInputStream(pduFile)) {
+            conf = MmsPduParser.parseRetrieveConf(input, partsDir);
+        } finally {
+            if (!pduFile.delete()) {
+                android.util.Log.w("MmsIngestor", "Could not delete " + pduFile);
+            }
+        }
+
+        long date = conf.date > 0 ? conf.date * 1000 : System.currentTimeMillis();
+        if (conf.from != null) {
+            address = conf.from;
+        }
+        long storedId = storeInProvider(providerId, threadId, address, date, conf);
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            values.put("state", STATE_DOWNLOADED);
+            values.put("date", date);
+            if (conf.subject != null) {
+                values.put("subject", conf.subject);
+            }
+            if (conf.from != null) {
+                values.put("address", conf.from);
+            }
+            if (storedId > 0) {
+                values.put("provider_id", storedId);
+            }
+            db.update("mms_message", values, "_id = ?", new String[]{String.valueOf(messageId)});
+
+            for (int i = 0; i < conf.parts.size(); i++) {
+                MmsPduParser.Part part = conf.parts.get(i);
+                ContentValues partValues = new ContentValues();
+                partValues.put("message_id", messageId);
+                partValues.put("seq", i);
+                partValues.put("content_type", part.contentType);
+                partValues.put("name", part.name);
+                partValues.put("text", part.text);
+                partValues.put("path", part.file != null ? part.file.getAbsolutePath() : null);
+                partValues.put("size", part.size);
+                db.insert("mms_part", null, partValues);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        // A retrieve-conf that carries its own transaction id is acknowledged; otherwise the
+        // notification is answered as retrieved
+        if (conf.transactionId != null) {
+            sendResponse(messageId, MmsPduParser.encodeAcknowledgeInd(conf.transactionId));
+        } else {
+            sendResponse(messageId, MmsPduParser.encodeNotifyRespInd(transactionId, MmsPduParser.STATUS_RETRIEVED));
+        }
+
+        IncomingSms notification = new IncomingSms(address, summaryOf(conf), date, SystemClock.elapsedRealtime());
+        notification.threadId = threadId;
+        SmsNotifier.getInstance(context).notifyIncoming(notification);
+        for (Listener listener : listeners) {
+            listener.onMmsReceived(messageId, threadId);
+        }
+    }
+
+    // The notification row in content://mms, which makes the thread count the message before
+    // the download finishes; returns its id or -1
+    private long insertProviderNotification(MmsPduParser.Notification notification, long threadId, long date) {
+        try {
+            ContentValues values = new ContentValues();
+            values.put("thread_id", threadId);
+            values.put("date", date / 1000);
+            values.put("msg_box", 1); // Telephony.Mms.MESSAGE_BOX_INBOX
+            values.put("read", 0);
+            values.put("seen", 0);
+            values.put("m_type", PROVIDER_MESSAGE_TYPE_NOTIFICATION_IND);
+            values.put("v", PROVIDER_MMS_VERSION);
+            values.put("tr_id", notification.transactionId);
+            values.put("ct_l", notification.contentLocation);
+            values.put("m_size", notification.messageSize);
+            if (notification.subject != null) {
+                values.put("sub", notification.subject);
+                values.put("sub_cs", CHARSET_UTF8);
+            }
+            Uri uri = context.getContentResolver().insert(MMS_INBOX_URI, values);
+            if (uri == null) {
+                return -1;
+            }
+            long providerId = Long.parseLong(uri.getLastPathSegment());
+            insertProviderAddress(providerId, notification.from);
+            return providerId;
+        } catch (Exception e) {
+            android.util.Log.e("MmsIngestor", "Error writing MMS notification to the provider", e);
+            return -1;
+        }
+    }
+
+    // Turns the notification row into the retrieved message and adds its parts, inserting a new
+    // row when there is none. The local copy stays authoritative for this app, so a failure here
+    // is logged and the message is still shown; returns the provider id or -1
+    private long storeInProvider(long providerId, long threadId, String address, long date, MmsPduParser.RetrieveConf conf) {
+        try {
+            ContentValues values = new ContentValues();
+            values.put("thread_id", threadId);
+            values.put("date", date / 1000);
+            if (conf.date > 0) {
+                values.put("date_sent", conf.date);
+            }
+            values.put("m_type", PROVIDER_MESSAGE_TYPE_RETRIEVE_CONF);
+            values.put("ct_t", conf.contentType);
+            values.put("m_id", conf.messageId);
+            values.putNull("ct_l");
+            if (conf.transactionId != null) {
+                values.put("tr_id", conf.transactionId);
+            }
+            if (conf.subject != null) {
+                values.put("sub", conf.subject);
+                values.put("sub_cs", CHARSET_UTF8);
+            }
+
+            if (providerId > 0) {
+                context.getContentResolver().update(Uri.parse("content://mms/" + providerId), values, null, null);
+            } else {
+                values.put("msg_box", 1); // Telephony.Mms.MESSAGE_BOX_INBOX
+                values.put("read", 0);
+                values.put("seen", 0);
+                values.put("v", PROVIDER_MMS_VERSION);
+                Uri uri = context.getContentResolver().insert(MMS_INBOX_URI, values);
+                if (uri == null) {
+                    return -1;
+                }
+                providerId = Long.parseLong(uri.getLastPathSegment());
+                insertProviderAddress(providerId, address);
+            }
+
+            Uri partsUri = Uri.parse("content://mms/" + providerId + "/part");
+            for (int i = 0; i < conf.parts.size(); i++) {
+                MmsPduParser.Part part = conf.parts.get(i);
+                ContentValues partValues = new ContentValues();
+                partValues.put("mid", providerId);
+                partValues.put("seq", i);
+                partValues.put("ct", part.contentType);
+                partValues.put("name", part.name);
+                partValues.put("cl", part.name);
+                if (part.contentId != null) {
+                    partValues.put("cid", "<" + part.contentId + ">");
+                }
+                if (part.text != null) {
+                    partValues.put("chset", CHARSET_UTF8);
+                    partValues.put("text", part.text);
+                }
+                Uri partUri = context.getContentResolver().insert(partsUri, partValues);
+                if (partUri != null && part.file != null) {
+                    copyToProvider(part.file, partUri);
+                }
+            }
+            return providerId;
+        } catch (Exception e) {
+            android.util.Log.e("MmsIngestor", "Error writing MMS " + providerId + " to the provider", e);
+            return providerId;
+        }
+    }
+
+    private void insertProviderAddress(long providerId, String address) {
+        if (address == null) {
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put("msg_id", providerId);
+        values.put("address", address);
+        values.put("type", PROVIDER_ADDRESS_FROM);
+        values.put("charset", CHARSET_UTF8);
+        context.getContentResolver().insert(Uri.parse("content://mms/" + providerId + "/addr"), values);
+    }
+
+    private void copyToProvider(File file, Uri partUri) throws Exception {
+        byte[] buffer = new byte[8192];
+        try (InputStream input = new FileInputStream(file);
+             OutputStream output = context.getContentResolver().openOutputStream(partUri)) {
+            if (output == null) {
+                return;
+            }
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+        }
+    }
+
+    // Hands an m-notifyresp-ind or m-acknowledge-ind to the MMS service; the file is removed
+    // once the service reports back through MmsDownloadReceiver
+    private void sendResponse(long messageId, byte[] pdu) {
+        try {
+            File responseFile = responseFile(messageId);
+            File directory = responseFile.getParentFile();
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IllegalStateException("Could not create " + directory);
+            }
+            try (FileOutputStream output = new FileOutputStream(responseFile)) {
+                output.write(pdu);
+            }
+            Uri uri = FileProvider.getUriForFile(context, context.getPackageName() + ".fileprovider", responseFile);
+
+            Intent intent = new Intent(ACTION_MMS_RESPONSE_SENT, Uri.parse("nexalert://mms-response/" + messageId), context, MmsDownloadReceiver.class);
+            intent.putExtra(EXTRA_MESSAGE_ID, messageId);
+            int flags = PendingIntent.FLAG_UPDATE_CURRENT;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+                flags |= PendingIntent.FLAG_MUTABLE;
+            }
+            PendingIntent sentIntent = PendingIntent.getBroadcast(context, 0, intent, flags);
+            SmsManager.getDefault().sendMultimediaMessage(context, uri, null, null, sentIntent);
+        } catch (Exception e) {
+            android.util.Log.e("MmsIngestor", "Error sending MMS response for " + messageId, e);
+        }
+    }
+
+    private void setState(long messageId, int state) {
+        ContentValues values = new ContentValues();
+        values.put("state", state);
+        database.getWritableDatabase().update("mms_message", values, "_id = ?", new String[]{String.valueOf(messageId)});
+    }
+
+    private File pduFile(long messageId) {
+        return new File(new File(context.getCacheDir(), PDU_DIR), messageId + ".pdu");
+    }
+
+    private File responseFile(long messageId) {
+        return new File(new File(context.getCacheDir(), PDU_DIR), messageId + "_response.pdu");
+    }
+
+    // Notification text: the first text part, else the subject, else the kind of attachment
+    private static String summaryOf(MmsPduParser.RetrieveConf conf) {
+        String attachment = null;
+        for (MmsPduParser.Part part : conf.parts) {
+            if (part.text != null && part.contentType != null && part.contentType.startsWith("text/plain")) {
+                return part.text;
+            }
+            if (attachment == null && part.contentType != null) {
+                if (part.contentType.startsWith("image/")) {
+                    attachment = "[Picture]";
+                } else if (part.contentType.startsWith("video/")) {
+                    attachment = "[Video]";
+                } else if (part.contentType.startsWith("audio/")) {
+                    attachment = "[Audio]";
+                }
+            }
+        }
+        if (conf.subject != null && !conf.subject.isEmpty()) {
+            return conf.subject;
+        }
+        return attachment != null ? attachment : "[Attachment]";
+    }
+}
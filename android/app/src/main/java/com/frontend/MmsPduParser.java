@@ -0,0 +1,604 @@
+package com.frontend;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Streaming parser for the two MMS PDUs a receiving client handles (OMA-MMS-ENC, WSP encoding):
+// the m-notification-ind that arrives by WAP push, and the m-retrieve-conf downloaded afterwards.
+// The retrieve-conf is read from a stream in one pass; attachment bodies are copied to files
+// through a fixed-size buffer as they are read, so a large picture or video never sits in heap.
+// It also encodes the two short replies that tell the MMSC a message was fetched.
+public class MmsPduParser {
+
+    public static final int MESSAGE_TYPE_NOTIFICATION_IND = 0x82;
+    public static final int MESSAGE_TYPE_NOTIFYRESP_IND = 0x83;
+    public static final int MESSAGE_TYPE_RETRIEVE_CONF = 0x84;
+    public static final int MESSAGE_TYPE_ACKNOWLEDGE_IND = 0x85;
+
+    // X-Mms-Status values of an m-notifyresp-ind
+    public static final int STATUS_RETRIEVED = 0x81;
+    public static final int STATUS_DEFERRED = 0x83;
+
+    // Text parts up to this size are kept inline; anything bigger is written out like an attachment
+    private static final int MAX_INLINE_TEXT = 16 * 1024;
+    private static final int MAX_PARTS = 32;
+    private static final int COPY_BUFFER = 8 * 1024;
+
+    private static final int HEADER_BCC = 0x81;
+    private static final int HEADER_CC = 0x82;
+    private static final int HEADER_CONTENT_LOCATION = 0x83;
+    private static final int HEADER_CONTENT_TYPE = 0x84;
+    private static final int HEADER_DATE = 0x85;
+    private static final int HEADER_EXPIRY = 0x88;
+    private static final int HEADER_FROM = 0x89;
+    private static final int HEADER_MESSAGE_ID = 0x8B;
+    private static final int HEADER_MESSAGE_TYPE = 0x8C;
+    private static final int HEADER_MESSAGE_SIZE = 0x8E;
+    private static final int HEADER_MMS_VERSION = 0x8D;
+    private static final int HEADER_REPORT_ALLOWED = 0x91;
+    private static final int HEADER_STATUS = 0x95;
+    private static final int HEADER_SUBJECT = 0x96;
+    private static final int HEADER_TO = 0x97;
+    private static final int HEADER_TRANSACTION_ID = 0x98;
+
+    // Part headers (WSP header field names)
+    private static final int PART_CONTENT_LOCATION = 0x8E;
+    private static final int PART_CONTENT_ID = 0xC0;
+
+    // Content-type parameters (WSP well-known parameter assignments)
+    private static final int PARAM_CHARSET = 0x81;
+    private static final int PARAM_NAME = 0x85;
+    private static final int PARAM_FILENAME = 0x86;
+    private static final int PARAM_NAME_V14 = 0x97;
+    private static final int PARAM_FILENAME_V14 = 0x98;
+
+    private static final int CHARSET_US_ASCII = 3;
+    private static final int CHARSET_ISO_8859_1 = 4;
+    private static final int CHARSET_UTF_8 = 106;
+    private static final int CHARSET_UCS2 = 1000;
+    private static final int CHARSET_UTF_16 = 1015;
+
+    private static final Map<Integer, String> CONTENT_TYPES = new HashMap<>();
+
+    static {
+        CONTENT_TYPES.put(0x00, "*/*");
+        CONTENT_TYPES.put(0x01, "text/*");
+        CONTENT_TYPES.put(0x02, "text/html");
+        CONTENT_TYPES.put(0x03, "text/plain");
+        CONTENT_TYPES.put(0x06, "text/x-vcalendar");
+        CONTENT_TYPES.put(0x07, "text/x-vcard");
+        CONTENT_TYPES.put(0x0C, "multipart/*");
+        CONTENT_TYPES.put(0x0D, "multipart/mixed");
+        CONTENT_TYPES.put(0x0E, "multipart/form-data");
+        CONTENT_TYPES.put(0x0F, "multipart/byteranges");
+        CONTENT_TYPES.put(0x10, "multipart/alternative");
+        CONTENT_TYPES.put(0x11, "application/*");
+        CONTENT_TYPES.put(0x1C, "image/*");
+        CONTENT_TYPES.put(0x1D, "image/gif");
+        CONTENT_TYPES.put(0x1E, "image/jpeg");
+        CONTENT_TYPES.put(0x1F, "image/tiff");
+        CONTENT_TYPES.put(0x20, "image/png");
+        CONTENT_TYPES.put(0x21, "image/vnd.wap.wbmp");
+        CONTENT_TYPES.put(0x22, "application/vnd.wap.multipart.*");
+        CONTENT_TYPES.put(0x23, "application/vnd.wap.multipart.mixed");
+        CONTENT_TYPES.put(0x26, "application/vnd.wap.multipart.alternative");
+        CONTENT_TYPES.put(0x29, "application/xml");
+        CONTENT_TYPES.put(0x2A, "text/xml");
+        CONTENT_TYPES.put(0x33, "application/vnd.wap.multipart.related");
+        CONTENT_TYPES.put(0x3E, "application/vnd.wap.mms-message");
+    }
+
+    public static class Notification {
+        public int messageType;
+        public String transactionId;
+        public String from;
+        public String subject;
+        public String contentLocation;
+        public long messageSize;
+        // Seconds; absolute or relative to now depending on expiryAbsolute
+        public long expiry;
+        public boolean expiryAbsolute;
+    }
+
+    public static class Part {
+        public String contentType;
+        public String name;
+        public String contentId;
+        public String text;
+        public File file;
+        public long size;
+    }
+
+    public static class RetrieveConf {
+        public int messageType;
+        public String transactionId;
+        public String messageId;
+        public String from;
+        public String subject;
+        // Seconds since the epoch
+        public long date;
+        public String contentType;
+        public final List<Part> parts = new ArrayList<>();
+    }
+
+    public static Notification parseNotification(byte[] pdu) throws IOException {
+        PduReader reader = new PduReader(new ByteArrayInputStream(pdu));
+        Notification notification = new Notification();
+        while (!reader.atEnd()) {
+            int field = reader.read();
+            switch (field) {
+                case HEADER_MESSAGE_TYPE:
+                    notification.messageType = reader.read();
+                    break;
+                case HEADER_TRANSACTION_ID:
+                    notification.transactionId = reader.readTextString();
+                    break;
+                case HEADER_FROM:
+                    notification.from = reader.readFrom();
+                    break;
+                case HEADER_SUBJECT:
+                    notification.subject = reader.readEncodedString();
+                    break;
+                case HEADER_CONTENT_LOCATION:
+                    notification.contentLocation = reader.readTextString();
+                    break;
+                case HEADER_MESSAGE_SIZE:
+                    notification.messageSize = reader.readLongInteger();
+                    break;
+                case HEADER_EXPIRY: {
+                    long end = reader.readValueLength() + reader.position;
+                    notification.expiryAbsolute = reader.read() == 0x80;
+                    notification.expiry = reader.readLongInteger();
+                    reader.skipTo(end);
+                    break;
+                }
+                default:
+                    if (field < 0x80) {
+                        // Application header: token name, then text value
+                        reader.readTextStringFrom(field);
+                        reader.readTextString();
+                    } else {
+                        reader.skipValue();
+                    }
+            }
+        }
+        return notification;
+    }
+
+    // Reads a retrieve-conf from the stream, writing attachment bodies into partsDir as it goes
+    public static RetrieveConf parseRetrieveConf(InputStream input, File partsDir) throws IOException {
+        PduReader reader = new PduReader(new BufferedInputStream(input, COPY_BUFFER));
+        RetrieveConf conf = new RetrieveConf();
+
+        // Content-Type is always the last header; the body follows it
+        boolean body = false;
+        while (!body && !reader.atEnd()) {
+            int field = reader.read();
+            switch (field) {
+                case HEADER_MESSAGE_TYPE:
+                    conf.messageType = reader.read();
+                    break;
+                case HEADER_TRANSACTION_ID:
+                    conf.transactionId = reader.readTextString();
+                    break;
+                case HEADER_MESSAGE_ID:
+                    conf.messageId = reader.readTextString();
+                    break;
+                case HEADER_FROM:
+                    conf.from = reader.readFrom();
+                    break;
+                case HEADER_SUBJECT:
+                    conf.subject = reader.readEncodedString();
+                    break;
+                case HEADER_DATE:
+                    conf.date = reader.readLongInteger();
+                    break;
+                case HEADER_CONTENT_TYPE:
+                    conf.contentType = reader.readContentType(null);
+                    body = true;
+                    break;
+                case HEADER_TO:
+                case HEADER_CC:
+                case HEADER_BCC:
+                    reader.readEncodedString();
+                    break;
+                default:
+                    if (field < 0x80) {
+                        reader.readTextStringFrom(field);
+                        reader.readTextString();
+                    } else {
+                        reader.skipValue();
+                    }
+            }
+        }
+        if (!body) {
+            return conf;
+        }
+
+        if (conf.contentType != null && conf.contentType.contains("multipart")) {
+            long count = reader.readUintvar();
+            for (long i = 0; i < count; i++) {
+                Part part = readPart(reader, partsDir, i);
+                if (part != null && conf.parts.size() < MAX_PARTS) {
+                    conf.parts.add(part);
+                } else if (part != null && part.file != null && !part.file.delete()) {
+                    android.util.Log.w("MmsPduParser", "Could not delete dropped part " + part.file);
+                }
+            }
+        } else {
+            // Single-part message: the rest of the stream is the body
+            Part part = new Part();
+            part.contentType = conf.contentType;
+            storePartData(reader, part, partsDir, 0, Long.MAX_VALUE, CHARSET_UTF_8);
+            conf.parts.add(part);
+        }
+        return conf;
+    }
+
+    // m-notifyresp-ind answering a notification; STATUS_DEFERRED keeps the message on the MMSC
+    public static byte[] encodeNotifyRespInd(String transactionId, int status) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(64);
+        writeResponseHeaders(output, MESSAGE_TYPE_NOTIFYRESP_IND, transactionId);
+        output.write(HEADER_STATUS);
+        output.write(status);
+        output.write(HEADER_REPORT_ALLOWED);
+        output.write(0x81); // No
+        return output.toByteArray();
+    }
+
+    // m-acknowledge-ind confirming a retrieve-conf that carried its own transaction id
+    public static byte[] encodeAcknowledgeInd(String transactionId) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(64);
+        writeResponseHeaders(output, MESSAGE_TYPE_ACKNOWLEDGE_IND, transactionId);
+        output.write(HEADER_REPORT_ALLOWED);
+        output.write(0x81); // No
+        return output.toByteArray();
+    }
+
+    private static void writeResponseHeaders(ByteArrayOutputStream output, int messageType, String transactionId) {
+        output.write(HEADER_MESSAGE_TYPE);
+        output.write(messageType);
+        output.write(HEADER_TRANSACTION_ID);
+        byte[] id = transactionId.getBytes(StandardCharsets.US_ASCII);
+        output.write(id, 0, id.length);
+        output.write(0);
+        output.write(HEADER_MMS_VERSION);
+        output.write(0x92); // 1.2
+    }
+
+    private static Part readPart(PduReader reader, File partsDir, long index) throws IOException {
+        long headersLength = reader.readUintvar();
+        long dataLength = reader.readUintvar();
+        long headersEnd = reader.position + headersLength;
+
+        Part part = new Part();
+        Map<Integer, String> params = new HashMap<>();
+        part.contentType = reader.readContentType(params);
+        part.name = params.containsKey(PARAM_NAME) ? params.get(PARAM_NAME) : params.get(PARAM_FILENAME);
+        while (reader.position < headersEnd) {
+            int field = reader.read();
+            if (field == PART_CONTENT_LOCATION) {
+                String location = reader.readTextString();
+                if (part.name == null) {
+                    part.name = location;
+                }
+            } else if (field == PART_CONTENT_ID) {
+                part.contentId = reader.readTextString();
+            } else if (field < 0x80) {
+                reader.readTextStringFrom(field);
+                reader.readTextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.skipTo(headersEnd);
+
+        int charset = params.containsKey(PARAM_CHARSET) ? Integer.parseInt(params.get(PARAM_CHARSET)) : CHARSET_UTF_8;
+        // The SMIL layout isn't rendered; skip it without storing
+        if ("application/smil".equals(part.contentType)) {
+            reader.skip(dataLength);
+            return null;
+        }
+        storePartData(reader, part, partsDir, index, dataLength, charset);
+        return part;
+    }
+
+    private static void storePartData(PduReader reader, Part part, File partsDir, long index, long length, int charset) throws IOException {
+        String type = part.contentType != null ? part.contentType : "";
+        if (type.startsWith("text/") && length <= MAX_INLINE_TEXT) {
+            byte[] bytes = reader.readBytes((int) length);
+            part.text = new String(bytes, charsetOf(charset));
+            part.size = bytes.length;
+            return;
+        }
+
+        if (!partsDir.exists() && !partsDir.mkdirs()) {
+            throw new IOException("Could not create " + partsDir);
+        }
+        part.file = new File(partsDir, index + "_" + safeName(part.name));
+        try (OutputStream output = new FileOutputStream(part.file)) {
+            part.size = reader.copy(output, length);
+        }
+    }
+
+    private static Charset charsetOf(int mibEnum) {
+        switch (mibEnum) {
+            case CHARSET_US_ASCII:
+                return StandardCharsets.US_ASCII;
+            case CHARSET_ISO_8859_1:
+                return StandardCharsets.ISO_8859_1;
+            case CHARSET_UCS2:
+                return StandardCharsets.UTF_16BE;
+            case CHARSET_UTF_16:
+                return StandardCharsets.UTF_16;
+            default:
+                return StandardCharsets.UTF_8;
+        }
+    }
+
+    private static String safeName(String name) {
+        if (name == null || name.isEmpty()) {
+            return "part";
+        }
+        String base = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        return base.length() > 64 ? base.substring(base.length() - 64) : base;
+    }
+
+    // WSP primitives over a forward-only stream with a running byte position
+    private static class PduReader {
+        private final InputStream input;
+        private final byte[] buffer = new byte[COPY_BUFFER];
+        long position;
+
+        PduReader(InputStream input) {
+            this.input = input.markSupported() ? input : new BufferedInputStream(input);
+        }
+
+        boolean atEnd() throws IOException {
+            return peek() < 0;
+        }
+
+        int peek() throws IOException {
+            input.mark(1);
+            int b = input.read();
+            input.reset();
+            return b;
+        }
+
+        int read() throws IOException {
+            int b = input.read();
+            if (b < 0) {
+                throw new EOFException("Truncated MMS PDU");
+            }
+            position++;
+            return b;
+        }
+
+        byte[] readBytes(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                int count = input.read(bytes, offset, length - offset);
+                if (count < 0) {
+                    throw new EOFException("Truncated MMS PDU");
+                }
+                offset += count;
+            }
+            position += length;
+            return bytes;
+        }
+
+        // Copies up to length bytes (or to the end of the stream for Long.MAX_VALUE) through the shared buffer
+        long copy(OutputStream output, long length) throws IOException {
+            long copied = 0;
+            while (copied < length) {
+                int count = input.read(buffer, 0, (int) Math.min(buffer.length, length - copied));
+                if (count < 0) {
+                    if (length == Long.MAX_VALUE) {
+                        break;
+                    }
+                    throw new EOFException("Truncated MMS PDU");
+                }
+                output.write(buffer, 0, count);
+                copied += count;
+            }
+            position += copied;
+            return copied;
+        }
+
+        void skip(long length) throws IOException {
+            long remaining = length;
+            while (remaining > 0) {
+                long count = input.skip(remaining);
+                if (count <= 0) {
+                    if (input.read() < 0) {
+                        throw new EOFException("Truncated MMS PDU");
+                    }
+                    count = 1;
+                }
+                remaining -= count;
+            }
+            position += length;
+        }
+
+        void skipTo(long end) throws IOException {
+            if (end > position) {
+                skip(end - position);
+            }
+        }
+
+        long readUintvar() throws IOException {
+            long value = 0;
+            int b;
+            do {
+                b = read();
+                value = (value << 7) | (b & 0x7F);
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        // Short form (0-30) or length-quote (31) followed by a uintvar
+        long readValueLength() throws IOException {
+            int b = read();
+            return b == 31 ? readUintvar() : b;
+        }
+
+        long readLongInteger() throws IOException {
+            int length = read();
+            long value = 0;
+            for (int i = 0; i < length; i++) {
+                value = (value << 8) | read();
+            }
+            return value;
+        }
+
+        long readIntegerValue() throws IOException {
+            int b = peek();
+            if (b >= 0x80) {
+                return read() & 0x7F;
+            }
+            return readLongInteger();
+        }
+
+        String readTextString() throws IOException {
+            return readTextStringFrom(read());
+        }
+
+        // Reads a null-terminated string whose first byte has already been consumed
+        String readTextStringFrom(int first) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            int b = first;
+            if (b == 127 || b == '"') {
+                b = read();
+            }
+            while (b != 0) {
+                bytes.write(b);
+                b = read();
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        // Text-string, or value-length + charset + text-string
+        String readEncodedString() throws IOException {
+            int b = peek();
+            if (b > 31) {
+                return readTextString();
+            }
+            long end = readValueLength() + position;
+            int charset = (int) readIntegerValue();
+            long remaining = end - position;
+            byte[] bytes = readBytes((int) Math.max(0, remaining));
+            int length = bytes.length;
+            while (length > 0 && bytes[length - 1] == 0) {
+                length--;
+            }
+            int start = length > 0 && (bytes[0] & 0xff) == 127 ? 1 : 0;
+            return new String(bytes, start, length - start, charsetOf(charset));
+        }
+
+        // From: value-length, then address-present-token + encoded string or insert-address-token
+        String readFrom() throws IOException {
+            long end = readValueLength() + position;
+            String from = null;
+            if (read() == 0x80) {
+                from = readEncodedString();
+            }
+            skipTo(end);
+            return stripAddressType(from);
+        }
+
+        // Constrained media type, or value-length + media type + parameters
+        String readContentType(Map<Integer, String> params) throws IOException {
+            int b = peek();
+            if (b >= 0x80) {
+                return contentTypeOf(read() & 0x7F);
+            }
+            if (b > 31) {
+                return readTextString();
+            }
+            long end = readValueLength() + position;
+            String type;
+            if (peek() >= 0x80) {
+                type = contentTypeOf(read() & 0x7F);
+            } else if (peek() > 31) {
+                type = readTextString();
+            } else {
+                type = contentTypeOf((int) readLongInteger());
+            }
+            while (position < end) {
+                int key = peek() >= 0x80 ? read() : -1;
+                if (key < 0) {
+                    // Untyped parameter: token name and text value
+                    readTextString();
+                    readTextString();
+                    continue;
+                }
+                if (key == PARAM_CHARSET) {
+                    long charset = readIntegerValue();
+                    if (params != null) {
+                        params.put(PARAM_CHARSET, String.valueOf(charset));
+                    }
+                } else if (key == PARAM_NAME || key == PARAM_NAME_V14) {
+                    String name = readTextString();
+                    if (params != null) {
+                        params.put(PARAM_NAME, name);
+                    }
+                } else if (key == PARAM_FILENAME || key == PARAM_FILENAME_V14) {
+                    String name = readTextString();
+                    if (params != null) {
+                        params.put(PARAM_FILENAME, name);
+                    }
+                } else {
+                    skipValue();
+                }
+            }
+            skipTo(end);
+            return type;
+        }
+
+        void skipValue() throws IOException {
+            int b = peek();
+            if (b < 0) {
+                return;
+            }
+            if (b <= 30) {
+                read();
+                skip(b);
+            } else if (b == 31) {
+                read();
+                skip(readUintvar());
+            } else if (b < 0x80) {
+                readTextString();
+            } else {
+                read();
+            }
+        }
+    }
+
+    private static String contentTypeOf(int code) {
+        String type = CONTENT_TYPES.get(code);
+        return type != null ? type : "application/octet-stream";
+    }
+
+    // Addresses arrive as "+15551234567/TYPE=PLMN"
+    private static String stripAddressType(String address) {
+        if (address == null) {
+            return null;
+        }
+        int slash = address.indexOf("/TYPE=");
+        return slash >= 0 ? address.substring(0, slash) : address;
+    }
+}
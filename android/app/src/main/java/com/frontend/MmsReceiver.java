@@ -9,8 +9,12 @@ public class MmsReceiver extends BroadcastReceiver {
     @Override
     public void onReceive(Context context, Intent intent) {
         if ("android.provider.Telephony.WAP_PUSH_DELIVER".equals(intent.getAction())) {
-            // Handle MMS messages here if needed
-            android.util.Log.d("MmsReceiver", "MMS received");
+            // The push only carries the m-notification-ind; MmsIngestor downloads the message itself
+            byte[] pdu = intent.getByteArrayExtra("data");
+            if (pdu != null) {
+                PendingResult pendingResult = goAsync();
+                MmsIngestor.getInstance(context).onPush(pdu, pendingResult);
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,116 @@
+package com.frontend;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.ThumbnailUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+
+// Thumbnails for MMS attachments, made on first request and kept as JPEGs under the cache
+// directory. Images are decoded with a bounds pass first and a power-of-two sample size, so a
+// full-resolution photo is never held in memory just to draw a preview.
+public class MmsThumbnailer {
+
+    private static final String THUMBNAIL_DIR = "mms_thumbnails";
+    private static final int JPEG_QUALITY = 80;
+    // MediaStore.Video.Thumbnails.MINI_KIND
+    private static final int VIDEO_MINI_KIND = 1;
+
+    private final File directory;
+
+    public MmsThumbnailer(Context context) {
+        this.directory = new File(context.getCacheDir(), THUMBNAIL_DIR);
+    }
+
+    // Path of a thumbnail no larger than maxSize on either side, or null when the part has no
+    // visual content
+    public String getThumbnail(MmsIngestor.MmsPart part, int maxSize) throws Exception {
+        if (part == null || part.path == null || part.contentType == null) {
+            return null;
+        }
+        File thumbnail = new File(directory, part.id + "_" + maxSize + ".jpg");
+        if (thumbnail.exists()) {
+            return thumbnail.getAbsolutePath();
+        }
+
+        Bitmap bitmap;
+        if (part.contentType.startsWith("image/")) {
+            bitmap = decodeSampled(part.path, maxSize);
+        } else if (part.contentType.startsWith("video/")) {
+            bitmap = ThumbnailUtils.createVideoThumbnail(part.path, VIDEO_MINI_KIND);
+        } else {
+            return null;
+        }
+        if (bitmap == null) {
+            return null;
+        }
+
+        try {
+            Bitmap scaled = scaleDown(bitmap, maxSize);
+            try {
+                if (!directory.exists() && !directory.mkdirs()) {
+                    throw new IllegalStateException("Could not create " + directory);
+                }
+                File temp = new File(directory, thumbnail.getName() + ".tmp");
+                try (FileOutputStream output = new FileOutputStream(temp)) {
+                    scaled.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, output);
+                }
+                if (!temp.renameTo(thumbnail)) {
+                    throw new IllegalStateException("Could not write " + thumbnail);
+                }
+            } finally {
+                if (scaled != bitmap) {
+                    scaled.recycle();
+                }
+            }
+        } finally {
+            bitmap.recycle();
+        }
+        return thumbnail.getAbsolutePath();
+    }
+
+    public void clear() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.delete()) {
+                android.util.Log.w("MmsThumbnailer", "Could not delete " + file);
+            }
+        }
+    }
+
+    private static Bitmap decodeSampled(String path, int maxSize) throws Exception {
+        try (FileInputStream input = new FileInputStream(path)) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFileDescriptor(input.getFD(), null, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+
+            int sampleSize = 1;
+            while (options.outWidth / (sampleSize * 2) >= maxSize && options.outHeight / (sampleSize * 2) >= maxSize) {
+                sampleSize *= 2;
+            }
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = sampleSize;
+            input.getChannel().position(0);
+            return BitmapFactory.decodeFileDescriptor(input.getFD(), null, options);
+        }
+    }
+
+    private static Bitmap scaleDown(Bitmap bitmap, int maxSize) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        if (width <= maxSize && height <= maxSize) {
+            return bitmap;
+        }
+        float scale = Math.min((float) maxSize / width, (float) maxSize / height);
+        return Bitmap.createScaledBitmap(bitmap, Math.max(1, Math.round(width * scale)), Math.max(1, Math.round(height * scale)), true);
+    }
+}
@@ -0,0 +1,124 @@
+package com.frontend;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+// App-private database for data derived from the SMS provider. Everything in here can be rebuilt
+// from the provider, so upgrades may drop and recreate derived tables.
+public class NexalertDatabase extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "nexalert.db";
+    private static final int DATABASE_VERSION = 4;
+
+    private static NexalertDatabase instance;
+
+    public static synchronized NexalertDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = new NexalertDatabase(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private NexalertDatabase(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE index_state (key TEXT PRIMARY KEY, value INTEGER NOT NULL)");
+        // docid is the provider _id; thread_id and date are stored for result rendering only
+        db.execSQL("CREATE VIRTUAL TABLE message_fts USING fts4("
+                + "body, address, thread_id, date, "
+                + "notindexed=thread_id, notindexed=date, tokenize=unicode61)");
+        onUpgrade(db, 1, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            // Durable outbound queue; provider_id is the content://sms row mirroring the message.
+            // parts_sent_mask records which parts the radio accepted, so a retry only resends the
+            // rest, and dispatch_token identifies the attempt the outstanding PendingIntents belong to.
+            db.execSQL("CREATE TABLE outbox ("
+                    + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "address TEXT NOT NULL, "
+                    + "body TEXT NOT NULL, "
+                    + "provider_id INTEGER NOT NULL DEFAULT 0, "
+                    + "thread_id INTEGER NOT NULL DEFAULT 0, "
+                    + "state INTEGER NOT NULL, "
+                    + "attempts INTEGER NOT NULL DEFAULT 0, "
+                    + "next_attempt_at INTEGER NOT NULL DEFAULT 0, "
+                    + "parts_total INTEGER NOT NULL DEFAULT 0, "
+                    + "parts_sent INTEGER NOT NULL DEFAULT 0, "
+                    + "parts_delivered INTEGER NOT NULL DEFAULT 0, "
+                    + "parts_sent_mask INTEGER NOT NULL DEFAULT 0, "
+                    + "dispatch_token INTEGER NOT NULL DEFAULT 0, "
+                    + "error_code INTEGER NOT NULL DEFAULT 0, "
+                    + "created_at INTEGER NOT NULL, "
+                    + "updated_at INTEGER NOT NULL)");
+            db.execSQL("CREATE INDEX outbox_state ON outbox (state, next_attempt_at)");
+        }
+        if (oldVersion < 3) {
+            // Ingest-time classification of received messages; otp_code is set for CATEGORY_OTP only
+            db.execSQL("CREATE TABLE message_category ("
+                    + "message_id INTEGER PRIMARY KEY, "
+                    + "thread_id INTEGER NOT NULL, "
+                    + "address TEXT, "
+                    + "category INTEGER NOT NULL, "
+                    + "otp_code TEXT, "
+                    + "date INTEGER NOT NULL)");
+            db.execSQL("CREATE INDEX message_category_category ON message_category (category, date)");
+            db.execSQL("CREATE INDEX message_category_thread ON message_category (thread_id)");
+            // A conversation takes the category of its latest received message
+            db.execSQL("CREATE TABLE thread_category ("
+                    + "thread_id INTEGER PRIMARY KEY, "
+                    + "category INTEGER NOT NULL, "
+                    + "date INTEGER NOT NULL)");
+            db.execSQL("CREATE INDEX thread_category_category ON thread_category (category, date)");
+        }
+        if (oldVersion < 4) {
+            // Received MMS: one row per m-notification-ind, filled in once the message is downloaded;
+            // provider_id is the row in content://mms that mirrors it
+            db.execSQL("CREATE TABLE mms_message ("
+                    + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "transaction_id TEXT NOT NULL UNIQUE, "
+                    + "thread_id INTEGER NOT NULL DEFAULT 0, "
+                    + "address TEXT, "
+                    + "subject TEXT, "
+                    + "content_location TEXT NOT NULL, "
+                    + "message_size INTEGER NOT NULL DEFAULT 0, "
+                    + "state INTEGER NOT NULL, "
+                    + "date INTEGER NOT NULL, "
+                    + "read INTEGER NOT NULL DEFAULT 0, "
+                    + "provider_id INTEGER)");
+            db.execSQL("CREATE INDEX mms_message_thread ON mms_message (thread_id, date)");
+            // Attachment bodies live in files; only small text parts are stored inline
+            db.execSQL("CREATE TABLE mms_part ("
+                    + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "message_id INTEGER NOT NULL, "
+                    + "seq INTEGER NOT NULL, "
+                    + "content_type TEXT, "
+                    + "name TEXT, "
+                    + "text TEXT, "
+                    + "path TEXT, "
+                    + "size INTEGER NOT NULL DEFAULT 0)");
+            db.execSQL("CREATE INDEX mms_part_message ON mms_part (message_id, seq)");
+        }
+    }
+
+    public long getState(String key, long defaultValue) {
+        Cursor cursor = getReadableDatabase().rawQuery("SELECT value FROM index_state WHERE key = ?", new String[]{key});
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : defaultValue;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void putState(SQLiteDatabase db, String key, long value) {
+        db.execSQL("INSERT OR REPLACE INTO index_state (key, value) VALUES (?, ?)", new Object[]{key, value});
+    }
+}
@@ -0,0 +1,674 @@
+package com.frontend;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.provider.Telephony;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Streams the whole SMS store to and from a compact archive. The archive is a sequence of gzip
+// members, which GZIPInputStream reads back as one stream:
+//
+//   header  magic "NXSA", varint version, varint row count at export time
+//   record  varint length (> 0), then: varint _id, string address, string body, varint date,
+//           varint date_sent, varint type, varint read, varint seen, zigzag status, varint locked
+//   end     varint 0, varint records written
+//
+// Strings are varint (UTF-8 byte length + 1), 0 meaning null. Export reads the provider in _id
+// order CHUNK_SIZE rows at a time and closes a gzip member after every chunk; import restores
+// CHUNK_SIZE records per bulkInsert. Either way memory stays flat whatever the history size. A
+// sidecar file next to the archive records progress after every chunk, so running the same
+// export or import again after an interruption resumes where it stopped. Import skips records
+// whose address, date and body are already in the provider, checked with one query per chunk, so
+// importing an archive twice, or into the phone it came from, does not duplicate messages.
+public class SmsArchiver {
+
+    public static final int KIND_EXPORT = 0;
+    public static final int KIND_IMPORT = 1;
+
+    private static final int CHUNK_SIZE = 500;
+    private static final int MAGIC = 0x4E585341; // "NXSA"
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String EXPORT_PROGRESS_SUFFIX = ".progress";
+    private static final String IMPORT_PROGRESS_SUFFIX = ".import-progress";
+
+    private static final String[] PROJECTION = {"_id", "address", "body", "date", "date_sent", "type", "read", "seen", "status", "locked"};
+
+    private static SmsArchiver instance;
+
+    public interface Listener {
+        void onProgress(long jobId, int kind, long processed, long total, boolean done, String error);
+    }
+
+    private abstract static class Job {
+        final long id;
+        final int kind;
+        final File archive;
+        long processed;
+        long total;
+
+        Job(long id, int kind, File archive) {
+            this.id = id;
+            this.kind = kind;
+            this.archive = archive;
+        }
+
+        abstract void open() throws IOException;
+
+        // Moves the next chunk; returns false once the archive is complete
+        abstract boolean step() throws IOException;
+
+        abstract void close();
+    }
+
+    private final Context context;
+    private final Handler handler;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong nextJobId = new AtomicLong(1);
+
+    // Only touched on the archive thread
+    private final ArrayDeque<Job> pending = new ArrayDeque<>();
+    private Job current;
+
+    private final Runnable stepRunnable = this::runStep;
+
+    public static synchronized SmsArchiver getInstance(Context context) {
+        if (instance == null) {
+            instance = new SmsArchiver(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private SmsArchiver(Context context) {
+        this.context = context;
+        HandlerThread thread = new HandlerThread("SmsArchiver");
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public long exportArchive(String path) {
+        return submit(new ExportJob(nextJobId.getAndIncrement(), new File(path)));
+    }
+
+    public long importArchive(String path) {
+        return submit(new ImportJob(nextJobId.getAndIncrement(), new File(path)));
+    }
+
+    private long submit(Job job) {
+        handler.post(() -> {
+            pending.add(job);
+            if (current == null) {
+                startNext();
+            }
+        });
+        return job.id;
+    }
+
+    private void startNext() {
+        current = pending.poll();
+        if (current == null) {
+            return;
+        }
+        try {
+            current.open();
+            handler.post(stepRunnable);
+        } catch (Exception e) {
+            android.util.Log.e("SmsArchiver", "Error opening archive " + current.archive, e);
+            finish(current, e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+
+    private void runStep() {
+        Job job = current;
+        boolean more;
+        try {
+            more = job.step();
+        } catch (Exception e) {
+            android.util.Log.e("SmsArchiver", "Error processing archive " + job.archive, e);
+            finish(job, e.getMessage() != null ? e.getMessage() : e.toString());
+            return;
+        }
+
+        if (more) {
+            notifyProgress(job, false, null);
+            // Posted rather than looped so other work on this thread can interleave
+            handler.post(stepRunnable);
+            return;
+        }
+        finish(job, null);
+    }
+
+    private void finish(Job job, String error) {
+        job.close();
+        notifyProgress(job, true, error);
+        startNext();
+    }
+
+    private void notifyProgress(Job job, boolean done, String error) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onProgress(job.id, job.kind, job.processed, job.total, done, error);
+            } catch (Exception e) {
+                android.util.Log.e("SmsArchiver", "Archive progress listener failed", e);
+            }
+        }
+    }
+
+    private class ExportJob extends Job {
+        private final File progressFile;
+        private final RecordBuffer record = new RecordBuffer();
+        private FileOutputStream file;
+        private OutputStream output;
+        private long lastId;
+
+        ExportJob(long id, File archive) {
+            super(id, KIND_EXPORT, archive);
+            this.progressFile = new File(archive.getPath() + EXPORT_PROGRESS_SUFFIX);
+        }
+
+        @Override
+        void open() throws IOException {
+            File directory = archive.getAbsoluteFile().getParentFile();
+            if (directory != null && !directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Could not create " + directory);
+            }
+
+            long committed = 0;
+            if (progressFile.exists() && archive.exists()) {
+                try (DataInputStream progress = new DataInputStream(new FileInputStream(progressFile))) {
+                    committed = progress.readLong();
+                    lastId = progress.readLong();
+                    processed = progress.readLong();
+                    total = progress.readLong();
+                } catch (IOException e) {
+                    android.util.Log.w("SmsArchiver", "Unreadable export progress, starting over", e);
+                    committed = 0;
+                }
+                if (committed > archive.length()) {
+                    committed = 0;
+                }
+            }
+            if (committed == 0) {
+                lastId = 0;
+                processed = 0;
+                total = countRows();
+            }
+
+            // Drop anything written after the last committed chunk
+            try (RandomAccessFile truncate = new RandomAccessFile(archive, "rw")) {
+                truncate.setLength(committed);
+            }
+            file = new FileOutputStream(archive, true);
+            output = new NonClosingOutputStream(new BufferedOutputStream(file, BUFFER_SIZE));
+            if (committed == 0) {
+                GZIPOutputStream member = new GZIPOutputStream(output, BUFFER_SIZE);
+                DataOutputStream header = new DataOutputStream(member);
+                header.writeInt(MAGIC);
+                writeVarint(member, VERSION);
+                writeVarint(member, total);
+                commit(member);
+            }
+        }
+
+        @Override
+        boolean step() throws IOException {
+            Cursor cursor = context.getContentResolver().query(SmsRepository.SMS_URI, PROJECTION, "_id > ?",
+                    new String[]{String.valueOf(lastId)}, "_id ASC LIMIT " + CHUNK_SIZE);
+            if (cursor == null) {
+                throw new IOException("SMS provider returned no cursor");
+            }
+
+            int rows = 0;
+            GZIPOutputStream member = new GZIPOutputStream(output, BUFFER_SIZE);
+            try {
+                while (cursor.moveToNext()) {
+                    record.reset();
+                    record.writeVarint(cursor.getLong(0));
+                    record.writeString(cursor.getString(1));
+                    record.writeString(cursor.getString(2));
+                    record.writeVarint(cursor.getLong(3));
+                    record.writeVarint(cursor.isNull(4) ? 0 : cursor.getLong(4));
+                    record.writeVarint(cursor.getInt(5));
+                    record.writeVarint(cursor.getInt(6));
+                    record.writeVarint(cursor.isNull(7) ? 0 : cursor.getInt(7));
+                    record.writeZigzag(cursor.isNull(8) ? -1 : cursor.getInt(8));
+                    record.writeVarint(cursor.isNull(9) ? 0 : cursor.getInt(9));
+                    writeVarint(member, record.size());
+                    record.writeTo(member);
+                    lastId = cursor.getLong(0);
+                    rows++;
+                }
+            } finally {
+                cursor.close();
+            }
+            processed += rows;
+
+            boolean more = rows == CHUNK_SIZE;
+            if (!more) {
+                writeVarint(member, 0);
+                writeVarint(member, processed);
+            }
+            commit(member);
+            if (!more && !progressFile.delete() && progressFile.exists()) {
+                android.util.Log.w("SmsArchiver", "Could not delete " + progressFile);
+            }
+            return more;
+        }
+
+        // Ends the gzip member, forces it to disk and only then records it as committed
+        private void commit(GZIPOutputStream member) throws IOException {
+            // Closing the member ends its deflater; the shared file stays open underneath
+            member.close();
+            file.getFD().sync();
+            writeProgress(progressFile, file.getChannel().position(), lastId, processed, total);
+        }
+
+        @Override
+        void close() {
+            closeQuietly(file);
+        }
+
+        private long countRows() {
+            Cursor cursor = context.getContentResolver().query(SmsRepository.SMS_URI, new String[]{"COUNT(*)"}, null, null, null);
+            if (cursor == null) {
+                return 0;
+            }
+            try {
+                return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    private class ImportJob extends Job {
+        private final File progressFile;
+        private final ContentValues[] chunk = new ContentValues[CHUNK_SIZE];
+        private byte[] recordBytes = new byte[256];
+        private InputStream input;
+        private long recordsRead;
+
+        ImportJob(long id, File archive) {
+            super(id, KIND_IMPORT, archive);
+            this.progressFile = new File(archive.getPath() + IMPORT_PROGRESS_SUFFIX);
+        }
+
+        @Override
+        void open() throws IOException {
+            input = new GZIPInputStream(new BufferedInputStream(new FileInputStream(archive), BUFFER_SIZE), BUFFER_SIZE);
+            if (new DataInputStream(input).readInt() != MAGIC) {
+                throw new IOException("Not a message archive");
+            }
+            long version = readVarint(input);
+            if (version != VERSION) {
+                throw new IOException("Unsupported archive version " + version);
+            }
+            total = readVarint(input);
+
+            if (progressFile.exists()) {
+                try (DataInputStream progress = new DataInputStream(new FileInputStream(progressFile))) {
+                    long imported = progress.readLong();
+                    while (recordsRead < imported && skipRecord()) {
+                        recordsRead++;
+                    }
+                    processed = recordsRead;
+                } catch (IOException e) {
+                    android.util.Log.w("SmsArchiver", "Unreadable import progress, starting over", e);
+                    closeQuietly(input);
+                    if (!progressFile.delete()) {
+                        throw e;
+                    }
+                    recordsRead = 0;
+                    processed = 0;
+                    open();
+                }
+            }
+        }
+
+        @Override
+        boolean step() throws IOException {
+            int count = 0;
+            boolean ended = false;
+            while (count < CHUNK_SIZE) {
+                ContentValues values = readRecord();
+                if (values == null) {
+                    ended = true;
+                    break;
+                }
+                recordsRead++;
+                chunk[count++] = values;
+            }
+
+            count = dropStored(count);
+            if (count > 0) {
+                ContentValues[] batch = count == CHUNK_SIZE ? chunk : Arrays.copyOf(chunk, count);
+                context.getContentResolver().bulkInsert(Telephony.Sms.CONTENT_URI, batch);
+            }
+            Arrays.fill(chunk, null);
+            processed = recordsRead;
+
+            if (!ended) {
+                writeProgress(progressFile, recordsRead, 0, 0, 0);
+                return true;
+            }
+            if (!progressFile.delete() && progressFile.exists()) {
+                android.util.Log.w("SmsArchiver", "Could not delete " + progressFile);
+            }
+            return false;
+        }
+
+        @Override
+        void close() {
+            closeQuietly(input);
+            // Also after a failure, since the chunks before it are already in the provider
+            if (recordsRead > 0) {
+                onImported();
+            }
+        }
+
+        // Null at the end record
+        private ContentValues readRecord() throws IOException {
+            int length = (int) readVarint(input);
+            if (length == 0) {
+                long written = readVarint(input);
+                if (written != recordsRead) {
+                    throw new IOException("Archive ended after " + recordsRead + " of " + written + " records");
+                }
+                return null;
+            }
+            if (recordBytes.length < length) {
+                recordBytes = new byte[Math.max(length, recordBytes.length * 2)];
+            }
+            readFully(input, recordBytes, length);
+
+            RecordReader reader = new RecordReader(recordBytes, length);
+            reader.readVarint(); // source _id; the provider assigns a new one
+            ContentValues values = new ContentValues();
+            values.put(Telephony.Sms.ADDRESS, reader.readString());
+            values.put(Telephony.Sms.BODY, reader.readString());
+            values.put(Telephony.Sms.DATE, reader.readVarint());
+            values.put(Telephony.Sms.DATE_SENT, reader.readVarint());
+            values.put(Telephony.Sms.TYPE, (int) reader.readVarint());
+            values.put(Telephony.Sms.READ, (int) reader.readVarint());
+            values.put(Telephony.Sms.SEEN, (int) reader.readVarint());
+            values.put(Telephony.Sms.STATUS, (int) reader.readZigzag());
+            values.put(Telephony.Sms.LOCKED, (int) reader.readVarint());
+            return values;
+        }
+
+        private boolean skipRecord() throws IOException {
+            int length = (int) readVarint(input);
+            if (length == 0) {
+                return false;
+            }
+            long remaining = length;
+            while (remaining > 0) {
+                long skipped = input.skip(remaining);
+                if (skipped <= 0) {
+                    throw new EOFException("Truncated archive");
+                }
+                remaining -= skipped;
+            }
+            return true;
+        }
+
+        // Compacts the chunk down to the records not already in the provider; returns how many remain
+        private int dropStored(int count) {
+            if (count == 0) {
+                return 0;
+            }
+            Set<String> dates = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                dates.add(String.valueOf(chunk[i].getAsLong(Telephony.Sms.DATE)));
+            }
+            Set<String> stored = new HashSet<>();
+            Cursor cursor = context.getContentResolver().query(SmsRepository.SMS_URI, new String[]{"address", "date", "body"},
+                    "date IN (" + SmsRepository.placeholders(dates.size()) + ")", dates.toArray(new String[0]), null);
+            if (cursor == null) {
+                return count;
+            }
+            try {
+                while (cursor.moveToNext()) {
+                    stored.add(key(cursor.getString(0), cursor.getLong(1), cursor.getString(2)));
+                }
+            } finally {
+                cursor.close();
+            }
+            if (stored.isEmpty()) {
+                return count;
+            }
+
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                ContentValues values = chunk[i];
+                if (!stored.contains(key(values.getAsString(Telephony.Sms.ADDRESS), values.getAsLong(Telephony.Sms.DATE),
+                        values.getAsString(Telephony.Sms.BODY)))) {
+                    chunk[kept++] = values;
+                }
+            }
+            return kept;
+        }
+
+        private String key(String address, long date, String body) {
+            return date + "\u0000" + address + "\u0000" + body;
+        }
+
+        // Restored rows go through the same derived state a backfill builds
+        private void onImported() {
+            UnreadCounter.getInstance(context).invalidate();
+            ThreadPageCache.getInstance(context).clear();
+            SmsSearchIndex.getInstance(context).backfillAsync();
+            SmsCategoryStore.getInstance(context).backfillAsync();
+        }
+    }
+
+    private static void writeProgress(File progressFile, long a, long b, long c, long d) throws IOException {
+        File temp = new File(progressFile.getPath() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp); DataOutputStream progress = new DataOutputStream(file)) {
+            progress.writeLong(a);
+            progress.writeLong(b);
+            progress.writeLong(c);
+            progress.writeLong(d);
+            progress.flush();
+            file.getFD().sync();
+        }
+        if (!temp.renameTo(progressFile)) {
+            throw new IOException("Could not write " + progressFile);
+        }
+    }
+
+    static void writeVarint(OutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    static long readVarint(InputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = input.read();
+            if (b < 0) {
+                throw new EOFException("Truncated archive");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static void readFully(InputStream input, byte[] buffer, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int read = input.read(buffer, offset, length - offset);
+            if (read < 0) {
+                throw new EOFException("Truncated archive");
+            }
+            offset += read;
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            android.util.Log.w("SmsArchiver", "Error closing archive", e);
+        }
+    }
+
+    // One record's payload, reused for every row so export allocates nothing per message
+    private static final class RecordBuffer {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        void reset() {
+            size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                put((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            put((int) value);
+        }
+
+        void writeZigzag(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length + 1L);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+
+        void writeTo(OutputStream output) throws IOException {
+            output.write(bytes, 0, size);
+        }
+
+        private void put(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + extra, bytes.length * 2));
+            }
+        }
+    }
+
+    private static final class RecordReader {
+        private final byte[] bytes;
+        private final int limit;
+        private int position;
+
+        RecordReader(byte[] bytes, int limit) {
+            this.bytes = bytes;
+            this.limit = limit;
+        }
+
+        long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= limit) {
+                    throw new IOException("Malformed record");
+                }
+                int b = bytes[position++] & 0xFF;
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        long readZigzag() throws IOException {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String readString() throws IOException {
+            long length = readVarint();
+            if (length == 0) {
+                return null;
+            }
+            int byteLength = (int) (length - 1);
+            if (position + byteLength > limit) {
+                throw new IOException("Malformed record");
+            }
+            String value = new String(bytes, position, byteLength, StandardCharsets.UTF_8);
+            position += byteLength;
+            return value;
+        }
+    }
+
+    // A gzip member's close() must not close the archive file shared by every member
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream output) {
+            super(output);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package com.frontend;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.provider.Telephony;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Categories of received messages and their conversations, kept in NexalertDatabase. Each message
+// is classified once when it arrives (or by the one-time backfill), so filtering conversations by
+// category and finding the latest OTP are indexed lookups that never re-read message bodies.
+public class SmsCategoryStore {
+
+    private static final String STATE_BACKFILL_MARK = "category_backfill_mark";
+    private static final int BACKFILL_CHUNK = 500;
+
+    private static SmsCategoryStore instance;
+
+    private final Context context;
+    private final NexalertDatabase database;
+    private final SmsClassifier classifier = SmsClassifier.getInstance();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> new Thread(r, "SmsCategoryStore"));
+
+    public static synchronized SmsCategoryStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new SmsCategoryStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private SmsCategoryStore(Context context) {
+        this.context = context;
+        this.database = NexalertDatabase.getInstance(context);
+    }
+
+    public static class Otp {
+        public long messageId;
+        public long threadId;
+        public String address;
+        public String code;
+        public long date;
+    }
+
+    public void recordAsync(long id, long threadId, String address, String body, long date) {
+        SmsRow row = new SmsRow();
+        row.id = id;
+        row.threadId = threadId;
+        row.address = address;
+        row.body = body;
+        row.date = date;
+        row.type = Telephony.Sms.MESSAGE_TYPE_INBOX;
+        List<SmsRow> rows = new ArrayList<>(1);
+        rows.add(row);
+        recordAsync(rows);
+    }
+
+    // Only received messages are classified; replies don't change what a conversation is about
+    public void recordAsync(List<SmsRow> rows) {
+        List<SmsRow> received = new ArrayList<>(rows.size());
+        for (SmsRow row : rows) {
+            if (row.type == Telephony.Sms.MESSAGE_TYPE_INBOX) {
+                received.add(row);
+            }
+        }
+        if (received.isEmpty()) {
+            return;
+        }
+        writer.execute(() -> {
+            try {
+                SQLiteDatabase db = database.getWritableDatabase();
+                db.beginTransaction();
+                Statements statements = new Statements(db);
+                try {
+                    for (SmsRow row : received) {
+                        record(statements, row);
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    statements.close();
+                    db.endTransaction();
+                }
+            } catch (Exception e) {
+                android.util.Log.e("SmsCategoryStore", "Error recording categories", e);
+            }
+        });
+    }
+
+    public void removeAsync(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Long> copy = new ArrayList<>(ids);
+        writer.execute(() -> {
+            try {
+                remove(database.getWritableDatabase(), copy);
+            } catch (Exception e) {
+                android.util.Log.e("SmsCategoryStore", "Error removing categories", e);
+            }
+        });
+    }
+
+    // Drops the categories of messages deleted while nothing was observing the provider, such as
+    // while the JS runtime was down, checking the stored ids against the inbox a chunk at a time
+    public void pruneAsync() {
+        writer.execute(() -> {
+            try {
+                prune();
+            } catch (Exception e) {
+                android.util.Log.e("SmsCategoryStore", "Error pruning categories", e);
+            }
+        });
+    }
+
+    private void prune() {
+        SQLiteDatabase db = database.getWritableDatabase();
+        ContentResolver contentResolver = context.getContentResolver();
+        long afterId = 0;
+        int pruned = 0;
+        while (true) {
+            List<String> ids = new ArrayList<>(BACKFILL_CHUNK);
+            Cursor stored = db.rawQuery("SELECT message_id FROM message_category WHERE message_id > ? ORDER BY message_id LIMIT ?",
+                    new String[]{String.valueOf(afterId), String.valueOf(BACKFILL_CHUNK)});
+            try {
+                while (stored.moveToNext()) {
+                    ids.add(stored.getString(0));
+                }
+            } finally {
+                stored.close();
+            }
+            if (ids.isEmpty()) {
+                break;
+            }
+            afterId = Long.parseLong(ids.get(ids.size() - 1));
+
+            Cursor cursor = contentResolver.query(SmsRepository.INBOX_URI, new String[]{"_id"},
+                    "_id IN (" + SmsRepository.placeholders(ids.size()) + ")", ids.toArray(new String[0]), null);
+            if (cursor == null) {
+                return;
+            }
+            Set<Long> present = new HashSet<>();
+            try {
+                while (cursor.moveToNext()) {
+                    present.add(cursor.getLong(0));
+                }
+            } finally {
+                cursor.close();
+            }
+            List<Long> missing = new ArrayList<>();
+            for (String id : ids) {
+                if (!present.contains(Long.parseLong(id))) {
+                    missing.add(Long.parseLong(id));
+                }
+            }
+            if (!missing.isEmpty()) {
+                remove(db, missing);
+                pruned += missing.size();
+            }
+            if (ids.size() < BACKFILL_CHUNK) {
+                break;
+            }
+        }
+
+        if (pruned > 0) {
+            android.util.Log.d("SmsCategoryStore", "Pruned " + pruned + " deleted messages");
+        }
+    }
+
+    private static void remove(SQLiteDatabase db, List<Long> ids) {
+        db.beginTransaction();
+        try {
+            Set<Long> threadIds = new HashSet<>();
+            for (Long id : ids) {
+                Cursor cursor = db.rawQuery("SELECT thread_id FROM message_category WHERE message_id = ?",
+                        new String[]{String.valueOf(id)});
+                try {
+                    if (cursor.moveToFirst()) {
+                        threadIds.add(cursor.getLong(0));
+                    }
+                } finally {
+                    cursor.close();
+                }
+                db.execSQL("DELETE FROM message_category WHERE message_id = ?", new Object[]{id});
+            }
+            for (Long threadId : threadIds) {
+                refreshThread(db, threadId);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public void removeThreadAsync(long threadId) {
+        writer.execute(() -> {
+            try {
+                SQLiteDatabase db = database.getWritableDatabase();
+                db.execSQL("DELETE FROM message_category WHERE thread_id = ?", new Object[]{threadId});
+                db.execSQL("DELETE FROM thread_category WHERE thread_id = ?", new Object[]{threadId});
+            } catch (Exception e) {
+                android.util.Log.e("SmsCategoryStore", "Error removing thread category", e);
+            }
+        });
+    }
+
+    // Classifies received history in _id order, resuming from the stored mark
+    public void backfillAsync() {
+        writer.execute(() -> {
+            try {
+                backfill();
+            } catch (Exception e) {
+                android.util.Log.e("SmsCategoryStore", "Error backfilling categories", e);
+            }
+        });
+    }
+
+    private void backfill() {
+        ContentResolver contentResolver = context.getContentResolver();
+        SQLiteDatabase db = database.getWritableDatabase();
+        long mark = database.getState(STATE_BACKFILL_MARK, 0);
+        int classified = 0;
+
+        while (true) {
+            Cursor cursor = contentResolver.query(SmsRepository.INBOX_URI, SmsRepository.MESSAGE_PROJECTION,
+                    "_id > ?", new String[]{String.valueOf(mark)}, "_id ASC LIMIT " + BACKFILL_CHUNK);
+            if (cursor == null) {
+                return;
+            }
+
+            int rows = 0;
+            db.beginTransaction();
+            Statements statements = new Statements(db);
+            try {
+                while (cursor.moveToNext()) {
+                    SmsRow row = SmsRow.fromCursor(cursor);
+                    record(statements, row);
+                    mark = row.id;
+                    rows++;
+                }
+                database.putState(db, STATE_BACKFILL_MARK, mark);
+                db.setTransactionSuccessful();
+            } finally {
+                statements.close();
+                db.endTransaction();
+                cursor.close();
+            }
+
+            classified += rows;
+            if (rows < BACKFILL_CHUNK) {
+                break;
+            }
+        }
+
+        if (classified > 0) {
+            android.util.Log.d("SmsCategoryStore", "Classified " + classified + " messages");
+        }
+    }
+
+    public Map<Long, Integer> getThreadCategories(List<Long> threadIds) {
+        Map<Long, Integer> categories = new HashMap<>();
+        if (threadIds.isEmpty()) {
+            return categories;
+        }
+        String[] args = new String[threadIds.size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = String.valueOf(threadIds.get(i));
+        }
+        Cursor cursor = database.getReadableDatabase().rawQuery("SELECT thread_id, category FROM thread_category WHERE thread_id IN ("
+                + SmsRepository.placeholders(args.length) + ")", args);
+        try {
+            while (cursor.moveToNext()) {
+                categories.put(cursor.getLong(0), cursor.getInt(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return categories;
+    }
+
+    public List<Long> getThreadIds(int category) {
+        List<Long> threadIds = new ArrayList<>();
+        Cursor cursor = database.getReadableDatabase().rawQuery("SELECT thread_id FROM thread_category WHERE category = ?",
+                new String[]{String.valueOf(category)});
+        try {
+            while (cursor.moveToNext()) {
+                threadIds.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return threadIds;
+    }
+
+    // Ids of OTP messages received before the cutoff, above afterId in id order
+    public List<Long> getOtpIdsBefore(long cutoff, long afterId, int limit) {
+        List<Long> ids = new ArrayList<>(limit);
+        Cursor cursor = database.getReadableDatabase().rawQuery("SELECT message_id FROM message_category "
+                        + "WHERE category = ? AND date < ? AND message_id > ? ORDER BY message_id LIMIT ?",
+                new String[]{String.valueOf(SmsClassifier.CATEGORY_OTP), String.valueOf(cutoff), String.valueOf(afterId),
+                    String.valueOf(limit)});
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+
+    // Newest OTP received at or after the given time, or null
+    public Otp getLatestOtp(long since) {
+        Cursor cursor = database.getReadableDatabase().rawQuery("SELECT message_id, thread_id, address, otp_code, date "
+                        + "FROM message_category WHERE category = ? AND date >= ? ORDER BY date DESC LIMIT 1",
+                new String[]{String.valueOf(SmsClassifier.CATEGORY_OTP), String.valueOf(since)});
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            Otp otp = new Otp();
+            otp.messageId = cursor.getLong(0);
+            otp.threadId = cursor.getLong(1);
+            otp.address = cursor.getString(2);
+            otp.code = cursor.getString(3);
+            otp.date = cursor.getLong(4);
+            return otp;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void record(Statements statements, SmsRow row) {
+        SmsClassifier.Result result = classifier.classify(row.address, row.body);
+
+        statements.insertMessage.clearBindings();
+        statements.insertMessage.bindLong(1, row.id);
+        statements.insertMessage.bindLong(2, row.threadId);
+        statements.insertMessage.bindString(3, row.address != null ? row.address : "");
+        statements.insertMessage.bindLong(4, result.category);
+        if (result.otpCode != null) {
+            statements.insertMessage.bindString(5, result.otpCode);
+        } else {
+            statements.insertMessage.bindNull(5);
+        }
+        statements.insertMessage.bindLong(6, row.date);
+        statements.insertMessage.executeInsert();
+
+        // Keep the thread's category in step with its newest received message
+        statements.updateThread.clearBindings();
+        statements.updateThread.bindLong(1, result.category);
+        statements.updateThread.bindLong(2, row.date);
+        statements.updateThread.bindLong(3, row.threadId);
+        statements.updateThread.bindLong(4, row.date);
+        if (statements.updateThread.executeUpdateDelete() == 0) {
+            statements.insertThread.clearBindings();
+            statements.insertThread.bindLong(1, row.threadId);
+            statements.insertThread.bindLong(2, result.category);
+            statements.insertThread.bindLong(3, row.date);
+            statements.insertThread.executeInsert();
+        }
+    }
+
+    // After removals a conversation takes the category of its newest remaining received message,
+    // and loses its row when none is left
+    private static void refreshThread(SQLiteDatabase db, long threadId) {
+        Cursor cursor = db.rawQuery("SELECT category, date FROM message_category WHERE thread_id = ? "
+                + "ORDER BY date DESC, message_id DESC LIMIT 1", new String[]{String.valueOf(threadId)});
+        try {
+            if (cursor.moveToFirst()) {
+                db.execSQL("INSERT OR REPLACE INTO thread_category (thread_id, category, date) VALUES (?, ?, ?)",
+                        new Object[]{threadId, cursor.getInt(0), cursor.getLong(1)});
+            } else {
+                db.execSQL("DELETE FROM thread_category WHERE thread_id = ?", new Object[]{threadId});
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static class Statements {
+        final SQLiteStatement insertMessage;
+        final SQLiteStatement updateThread;
+        final SQLiteStatement insertThread;
+
+        Statements(SQLiteDatabase db) {
+            insertMessage = db.compileStatement("INSERT OR REPLACE INTO message_category "
+                    + "(message_id, thread_id, address, category, otp_code, date) VALUES (?, ?, ?, ?, ?, ?)");
+            updateThread = db.compileStatement("UPDATE thread_category SET category = ?, date = ? WHERE thread_id = ? AND date <= ?");
+            // Ignored when the thread already has a newer message
+            insertThread = db.compileStatement("INSERT OR IGNORE INTO thread_category (thread_id, category, date) VALUES (?, ?, ?)");
+        }
+
+        void close() {
+            insertMessage.close();
+            updateThread.close();
+            insertThread.close();
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.frontend;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Watches content://sms and turns provider notifications into small deltas. Inserts are found by
+// reading rows above the highest _id seen so far; notifications that name a row are resolved to an
+// update or a delete. Bursts of notifications are coalesced over a short debounce window.
+// A bare content://sms change names no row, so each flush that sees one compares the provider's
+// row and unread counts with what the known inserts, deletes and this app's own mark-read writes
+// (announced with expectSelfReads) account for; only a difference invalidates the listeners.
+public class SmsChangeObserver extends ContentObserver {
+
+    public interface Listener {
+        void onSmsDelta(SmsDelta delta);
+    }
+
+    private static final long DEBOUNCE_MS = 150;
+    private static final int MAX_BIND_ARGS = 500;
+    // Rows this app marked read whose notification has not been accounted for yet
+    private static final AtomicInteger selfReads = new AtomicInteger();
+
+    private final ContentResolver contentResolver;
+    private final HandlerThread handlerThread;
+    private final Handler handler;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Only touched on the observer thread
+    private final Set<Long> changedIds = new HashSet<>();
+    private int genericChanges;
+    private boolean flushScheduled;
+    private long highWaterMark;
+    // Provider totals as of the last flush
+    private long rowCount;
+    private long unreadCount;
+
+    private final Runnable flushRunnable = this::flush;
+
+    public static SmsChangeObserver create(Context context) {
+        HandlerThread thread = new HandlerThread("SmsChangeObserver");
+        thread.start();
+        return new SmsChangeObserver(context, thread);
+    }
+
+    private SmsChangeObserver(Context context, HandlerThread thread) {
+        super(new Handler(thread.getLooper()));
+        this.contentResolver = context.getContentResolver();
+        this.handlerThread = thread;
+        this.handler = new Handler(thread.getLooper());
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public void start() {
+        handler.post(() -> {
+            highWaterMark = queryMaxId();
+            long[] counts = queryCounts();
+            rowCount = counts[0];
+            unreadCount = counts[1];
+            contentResolver.registerContentObserver(SmsRepository.SMS_URI, true, this);
+        });
+    }
+
+    public void stop() {
+        contentResolver.unregisterContentObserver(this);
+        handler.removeCallbacks(flushRunnable);
+        handlerThread.quitSafely();
+    }
+
+    @Override
+    public void onChange(boolean selfChange) {
+        onChange(selfChange, null);
+    }
+
+    @Override
+    public void onChange(boolean selfChange, Uri uri) {
+        long id = parseRowId(uri);
+        if (id > 0) {
+            changedIds.add(id);
+        } else {
+            genericChanges++;
+        }
+
+        if (!flushScheduled) {
+            flushScheduled = true;
+            handler.postDelayed(flushRunnable, DEBOUNCE_MS);
+        }
+    }
+
+    // Called right after a mark-read write of ours with the number of received rows it changed;
+    // the provider reports that write only as a bare content://sms change
+    public static void expectSelfReads(int rows) {
+        selfReads.addAndGet(rows);
+    }
+
+    private void flush() {
+        flushScheduled = false;
+        SmsDelta delta = new SmsDelta();
+
+        boolean genericChange = genericChanges > 0;
+
+        try {
+            long previousMark = highWaterMark;
+            queryInserted(delta);
+
+            Set<Long> existingIds = new HashSet<>();
+            for (Long id : changedIds) {
+                if (id <= previousMark) {
+                    existingIds.add(id);
+                }
+            }
+            if (!existingIds.isEmpty()) {
+                queryUpdated(existingIds, delta);
+            }
+
+            long[] counts = queryCounts();
+            if (genericChange) {
+                long insertedUnread = 0;
+                for (SmsRow row : delta.inserted) {
+                    if (row.type == 1 && row.read == 0) {
+                        insertedUnread++;
+                    }
+                }
+                int claimed = selfReads.get();
+                boolean explained = counts[0] == rowCount + delta.inserted.size() - delta.deletedIds.size()
+                        && counts[1] == unreadCount + insertedUnread - claimed;
+                if (explained) {
+                    selfReads.addAndGet(-claimed);
+                } else {
+                    // A read-state change or bulk delete made elsewhere; the listener decides how
+                    // much to refresh. The recount absorbs any of our own reads still announced.
+                    selfReads.set(0);
+                    delta.invalidated = true;
+                }
+            }
+            rowCount = counts[0];
+            unreadCount = counts[1];
+        } catch (Exception e) {
+            android.util.Log.e("SmsChangeObserver", "Error resolving SMS changes", e);
+            delta.invalidated = true;
+        } finally {
+            changedIds.clear();
+            genericChanges = 0;
+        }
+
+        if (delta.isEmpty()) {
+            return;
+        }
+        for (Listener listener : listeners) {
+            try {
+                listener.onSmsDelta(delta);
+            } catch (Exception e) {
+                android.util.Log.e("SmsChangeObserver", "SMS delta listener failed", e);
+            }
+        }
+    }
+
+    private void queryInserted(SmsDelta delta) {
+        Cursor cursor = contentResolver.query(SmsRepository.SMS_URI, SmsRepository.MESSAGE_PROJECTION,
+                "_id > ?", new String[]{String.valueOf(highWaterMark)}, "_id ASC");
+        if (cursor == null) {
+            return;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                SmsRow row = SmsRow.fromCursor(cursor);
+                delta.inserted.add(row);
+                if (row.id > highWaterMark) {
+                    highWaterMark = row.id;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void queryUpdated(Set<Long> ids, SmsDelta delta) {
+        List<Long> pending = new ArrayList<>(ids);
+        Set<Long> remaining = new HashSet<>(ids);
+        // Chunked to stay under SQLite's bind-argument limit (999 before 3.32)
+        for (int start = 0; start < pending.size(); start += MAX_BIND_ARGS) {
+            List<Long> chunk = pending.subList(start, Math.min(pending.size(), start + MAX_BIND_ARGS));
+            String[] args = new String[chunk.size()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = String.valueOf(chunk.get(i));
+            }
+            Cursor cursor = contentResolver.query(SmsRepository.SMS_URI, SmsRepository.MESSAGE_PROJECTION,
+                    "_id IN (" + SmsRepository.placeholders(args.length) + ")", args, null);
+            if (cursor == null) {
+                // Unknown rather than deleted
+                remaining.removeAll(chunk);
+                delta.invalidated = true;
+                continue;
+            }
+            try {
+                while (cursor.moveToNext()) {
+                    SmsRow row = SmsRow.fromCursor(cursor);
+                    delta.updated.add(row);
+                    remaining.remove(row.id);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        delta.deletedIds.addAll(remaining);
+    }
+
+    // {all rows, unread received rows}
+    private long[] queryCounts() {
+        Cursor cursor = contentResolver.query(SmsRepository.SMS_URI, new String[]{"COUNT(*)", "SUM(type = 1 AND read = 0)"},
+                null, null, null);
+        if (cursor == null) {
+            return new long[]{-1, -1};
+        }
+        try {
+            return cursor.moveToFirst() ? new long[]{cursor.getLong(0), cursor.getLong(1)} : new long[]{0, 0};
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private long queryMaxId() {
+        Cursor cursor = contentResolver.query(SmsRepository.SMS_URI, new String[]{"_id"}, null, null, "_id DESC LIMIT 1");
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static long parseRowId(Uri uri) {
+        if (uri == null) {
+            return 0;
+        }
+        String segment = uri.getLastPathSegment();
+        if (segment == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(segment);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.frontend;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Rule-based message classifier. All keywords are compiled once into an Aho-Corasick automaton,
+// so a body is scanned in a single pass however many keywords there are. A keyword only counts as
+// a whole word: where it starts or ends with a letter or digit, the neighbouring character must
+// not be one, so "upi" does not fire inside "cupid" nor "otp" inside "hotpot". OTP messages also
+// get their code extracted: the first standalone 4-8 digit run after an OTP keyword.
+public class SmsClassifier {
+
+    public static final int CATEGORY_PERSONAL = 0;
+    public static final int CATEGORY_OTP = 1;
+    public static final int CATEGORY_TRANSACTIONAL = 2;
+    public static final int CATEGORY_PROMOTIONAL = 3;
+
+    public static final String[] CATEGORY_NAMES = {"personal", "otp", "transactional", "promotional"};
+
+    private static final int MIN_CODE_DIGITS = 4;
+    private static final int MAX_CODE_DIGITS = 8;
+
+    private static final String[] OTP_KEYWORDS = {
+        "otp", "one time password", "one-time password", "verification code", "security code",
+        "login code", "auth code", "authentication code", "passcode", "is your code", "code is", "pin is"
+    };
+    private static final String[] TRANSACTIONAL_KEYWORDS = {
+        "debited", "credited", "a/c", "acct", "account no", "balance", "avl bal", "transaction", "txn",
+        "upi", "neft", "imps", "rtgs", "emi", "payment of", "paid to", "received rs", "inr", "rs.",
+        "order", "shipped", "delivered", "out for delivery", "booking", "pnr", "invoice", "bill", "due date"
+    };
+    private static final String[] PROMOTIONAL_KEYWORDS = {
+        "offer", "sale", "discount", "% off", "cashback", "coupon", "deal", "free", "limited time",
+        "hurry", "shop now", "buy now", "click here", "visit", "win", "winner", "exclusive", "subscribe",
+        "t&c", "unsubscribe", "reply stop"
+    };
+
+    private static final SmsClassifier INSTANCE = new SmsClassifier();
+
+    public static class Result {
+        public final int category;
+        public final String otpCode;
+
+        Result(int category, String otpCode) {
+            this.category = category;
+            this.otpCode = otpCode;
+        }
+    }
+
+    private static class Keyword {
+        final int category;
+        final int length;
+        final boolean wordStart;
+        final boolean wordEnd;
+
+        Keyword(String keyword, int category) {
+            this.category = category;
+            this.length = keyword.length();
+            this.wordStart = Character.isLetterOrDigit(keyword.charAt(0));
+            this.wordEnd = Character.isLetterOrDigit(keyword.charAt(keyword.length() - 1));
+        }
+    }
+
+    private static class Node {
+        final Map<Character, Node> next = new HashMap<>();
+        Node fail;
+        // The keywords ending here, including those reachable through fail links
+        final List<Keyword> outputs = new ArrayList<>();
+    }
+
+    private final Node root = new Node();
+
+    public static SmsClassifier getInstance() {
+        return INSTANCE;
+    }
+
+    private SmsClassifier() {
+        add(OTP_KEYWORDS, CATEGORY_OTP);
+        add(TRANSACTIONAL_KEYWORDS, CATEGORY_TRANSACTIONAL);
+        add(PROMOTIONAL_KEYWORDS, CATEGORY_PROMOTIONAL);
+        buildFailLinks();
+    }
+
+    public Result classify(String address, String body) {
+        if (body == null || body.isEmpty()) {
+            return new Result(CATEGORY_PERSONAL, null);
+        }
+        String text = foldCase(body);
+
+        int[] hits = new int[CATEGORY_NAMES.length];
+        int otpKeywordEnd = -1;
+        Node node = root;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            while (node != root && !node.next.containsKey(c)) {
+                node = node.fail;
+            }
+            Node child = node.next.get(c);
+            node = child != null ? child : root;
+            for (Keyword keyword : node.outputs) {
+                if (!isWholeWord(text, i + 1 - keyword.length, i + 1, keyword)) {
+                    continue;
+                }
+                hits[keyword.category]++;
+                if (keyword.category == CATEGORY_OTP && otpKeywordEnd < 0) {
+                    otpKeywordEnd = i + 1;
+                }
+            }
+        }
+
+        if (otpKeywordEnd >= 0) {
+            String code = findCode(text, otpKeywordEnd);
+            if (code == null) {
+                // "123456 is your code" puts the code before the keyword
+                code = findCode(text, 0);
+            }
+            if (code != null) {
+                return new Result(CATEGORY_OTP, code);
+            }
+        }
+
+        boolean automated = AddressNormalizer.kindOf(address) != AddressNormalizer.KIND_PHONE;
+        if (hits[CATEGORY_PROMOTIONAL] > hits[CATEGORY_TRANSACTIONAL]) {
+            return new Result(CATEGORY_PROMOTIONAL, null);
+        }
+        if (hits[CATEGORY_TRANSACTIONAL] > 0 && (automated || hits[CATEGORY_TRANSACTIONAL] > 1)) {
+            return new Result(CATEGORY_TRANSACTIONAL, null);
+        }
+        return new Result(CATEGORY_PERSONAL, null);
+    }
+
+    public static int categoryOf(String name) {
+        for (int i = 0; i < CATEGORY_NAMES.length; i++) {
+            if (CATEGORY_NAMES[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Lower-cases one char at a time, so offsets into the result are offsets into the body;
+    // String.toLowerCase can change the length ("\u0130" becomes two chars)
+    private static String foldCase(String body) {
+        char[] chars = new char[body.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(body.charAt(i));
+        }
+        return new String(chars);
+    }
+
+    private static boolean isWholeWord(String text, int start, int end, Keyword keyword) {
+        if (keyword.wordStart && start > 0 && Character.isLetterOrDigit(text.charAt(start - 1))) {
+            return false;
+        }
+        return !keyword.wordEnd || end == text.length() || !Character.isLetterOrDigit(text.charAt(end));
+    }
+
+    // First run of MIN..MAX digits that isn't part of a word, an amount ("Rs.5000") or a decimal
+    private static String findCode(String body, int from) {
+        int i = from;
+        while (i < body.length()) {
+            if (!Character.isDigit(body.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < body.length() && Character.isDigit(body.charAt(i))) {
+                i++;
+            }
+            int length = i - start;
+            if (length >= MIN_CODE_DIGITS && length <= MAX_CODE_DIGITS
+                    && !attachedBefore(body, start) && !attachedAfter(body, i)) {
+                return body.substring(start, i);
+            }
+        }
+        return null;
+    }
+
+    private static boolean attachedBefore(String body, int start) {
+        if (start == 0) {
+            return false;
+        }
+        char previous = body.charAt(start - 1);
+        if (Character.isLetterOrDigit(previous)) {
+            return true;
+        }
+        return isSeparator(previous) && start > 1 && Character.isLetterOrDigit(body.charAt(start - 2));
+    }
+
+    private static boolean attachedAfter(String body, int end) {
+        if (end == body.length()) {
+            return false;
+        }
+        char next = body.charAt(end);
+        if (Character.isLetterOrDigit(next)) {
+            return true;
+        }
+        return isSeparator(next) && end + 1 < body.length() && Character.isDigit(body.charAt(end + 1));
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '.' || c == ',';
+    }
+
+    private void add(String[] keywords, int category) {
+        for (String keyword : keywords) {
+            Node node = root;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                Node child = node.next.get(c);
+                if (child == null) {
+                    child = new Node();
+                    node.next.put(c, child);
+                }
+                node = child;
+            }
+            node.outputs.add(new Keyword(keyword, category));
+        }
+    }
+
+    private void buildFailLinks() {
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        for (Node child : root.next.values()) {
+            child.fail = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            for (Map.Entry<Character, Node> entry : node.next.entrySet()) {
+                Node child = entry.getValue();
+                Node fail = node.fail;
+                while (fail != root && !fail.next.containsKey(entry.getKey())) {
+                    fail = fail.fail;
+                }
+                Node target = fail.next.get(entry.getKey());
+                child.fail = target != null && target != child ? target : root;
+                child.outputs.addAll(child.fail.outputs);
+                queue.add(child);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.frontend;
+
+import android.database.Cursor;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Encodes a message cursor as parallel typed columns instead of one map per row. Column indices
+// are resolved once, numeric columns are pushed as numbers, and repeated addresses and bodies
+// (short codes, templated alerts) are sent once per batch and referenced by index.
+public class SmsColumnarEncoder {
+
+    private final WritableArray ids = Arguments.createArray();
+    private final WritableArray threadIds = Arguments.createArray();
+    private final WritableArray dates = Arguments.createArray();
+    private final WritableArray types = Arguments.createArray();
+    private final WritableArray readFlags = Arguments.createArray();
+    private final WritableArray addressIndex = Arguments.createArray();
+    private final WritableArray bodyIndex = Arguments.createArray();
+    private final WritableArray addresses = Arguments.createArray();
+    private final WritableArray bodies = Arguments.createArray();
+
+    private final Map<String, Integer> addressTable = new HashMap<>();
+    private final Map<String, Integer> bodyTable = new HashMap<>();
+    private int count;
+
+    public WritableMap encode(Cursor cursor) {
+        return encode(cursor, Integer.MAX_VALUE);
+    }
+
+    // Stops after limit rows, whether or not the provider applied a LIMIT of its own
+    public WritableMap encode(Cursor cursor, int limit) {
+        int idColumn = cursor.getColumnIndexOrThrow("_id");
+        int threadIdColumn = cursor.getColumnIndexOrThrow("thread_id");
+        int addressColumn = cursor.getColumnIndexOrThrow("address");
+        int bodyColumn = cursor.getColumnIndexOrThrow("body");
+        int dateColumn = cursor.getColumnIndexOrThrow("date");
+        int typeColumn = cursor.getColumnIndexOrThrow("type");
+        int readColumn = cursor.getColumnIndexOrThrow("read");
+
+        while (count < limit && cursor.moveToNext()) {
+            ids.pushDouble(cursor.getLong(idColumn));
+            threadIds.pushDouble(cursor.getLong(threadIdColumn));
+            dates.pushDouble(cursor.getLong(dateColumn));
+            types.pushInt(cursor.getInt(typeColumn));
+            readFlags.pushInt(cursor.getInt(readColumn));
+            addressIndex.pushInt(intern(cursor.getString(addressColumn), addressTable, addresses));
+            bodyIndex.pushInt(intern(cursor.getString(bodyColumn), bodyTable, bodies));
+            count++;
+        }
+
+        WritableMap result = Arguments.createMap();
+        result.putInt("count", count);
+        result.putArray("ids", ids);
+        result.putArray("threadIds", threadIds);
+        result.putArray("dates", dates);
+        result.putArray("types", types);
+        result.putArray("read", readFlags);
+        result.putArray("addressIndex", addressIndex);
+        result.putArray("addresses", addresses);
+        result.putArray("bodyIndex", bodyIndex);
+        result.putArray("bodies", bodies);
+        return result;
+    }
+
+    private static int intern(String value, Map<String, Integer> table, WritableArray values) {
+        if (value == null) {
+            value = "";
+        }
+        Integer index = table.get(value);
+        if (index == null) {
+            index = table.size();
+            table.put(value, index);
+            values.pushString(value);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,17 @@
+package com.frontend;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SmsDelta {
+
+    public final List<SmsRow> inserted = new ArrayList<>();
+    public final List<SmsRow> updated = new ArrayList<>();
+    public final List<Long> deletedIds = new ArrayList<>();
+    // Set when the provider reported a change that could not be narrowed down to specific rows
+    public boolean invalidated;
+
+    public boolean isEmpty() {
+        return inserted.isEmpty() && updated.isEmpty() && deletedIds.isEmpty() && !invalidated;
+    }
+}
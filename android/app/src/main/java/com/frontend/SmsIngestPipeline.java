@@ -0,0 +1,320 @@
+package com.frontend;
+
+import android.content.BroadcastReceiver;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Process;
+import android.os.SystemClock;
+import android.provider.Telephony;
+import android.telephony.SmsMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Moves SMS_DELIVER handling off the main thread. The receiver hands over the raw PDUs together
+// with its goAsync() PendingResult; a single worker drains everything queued at that moment, parses
+// it, stores it with one applyBatch and only then finishes the pending broadcasts. When the queue
+// is full the receiver processes its own batch inline instead of waiting for room, so a storm is
+// throttled at its source and nothing is queued beyond QUEUE_CAPACITY.
+// Broadcasts and messages already stored are dropped by IngestDeduplicator before parsing and
+// before storing respectively.
+public class SmsIngestPipeline {
+
+    private static final int QUEUE_CAPACITY = 64;
+    private static final int MAX_DRAIN = 32;
+
+    private static SmsIngestPipeline instance;
+
+    private final Context context;
+    private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread worker;
+    private final IngestDeduplicator deduplicator;
+
+    private final AtomicLong batchesIngested = new AtomicLong();
+    private final AtomicLong messagesIngested = new AtomicLong();
+    private final AtomicLong providerWrites = new AtomicLong();
+    private final AtomicLong backpressureEvents = new AtomicLong();
+    private final AtomicLong duplicatesSuppressed = new AtomicLong();
+    private final AtomicLong maxQueueDepth = new AtomicLong();
+    private final AtomicLong totalLatencyMs = new AtomicLong();
+    private final AtomicLong maxLatencyMs = new AtomicLong();
+
+    public static synchronized SmsIngestPipeline getInstance(Context context) {
+        if (instance == null) {
+            instance = new SmsIngestPipeline(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private SmsIngestPipeline(Context context) {
+        this.context = context;
+        this.deduplicator = IngestDeduplicator.getInstance(context);
+        this.worker = new Thread(this::drainLoop, "SmsIngestPipeline");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public static class Batch {
+        final Object[] pdus;
+        final String format;
+        final long receivedAt;
+        final BroadcastReceiver.PendingResult pendingResult;
+        boolean finished;
+        long fingerprint;
+        boolean duplicate;
+
+        public Batch(Object[] pdus, String format, BroadcastReceiver.PendingResult pendingResult) {
+            this.pdus = pdus;
+            this.format = format;
+            this.receivedAt = SystemClock.elapsedRealtime();
+            this.pendingResult = pendingResult;
+        }
+    }
+
+    public static class Stats {
+        public long batchesIngested;
+        public long messagesIngested;
+        public long providerWrites;
+        public long backpressureEvents;
+        public long duplicatesSuppressed;
+        public int queueDepth;
+        public long maxQueueDepth;
+        public double averageLatencyMs;
+        public long maxLatencyMs;
+    }
+
+    public void submit(Batch batch) {
+        if (queue.offer(batch)) {
+            updateMax(maxQueueDepth, queue.size());
+            return;
+        }
+
+        // The worker is behind; this broadcast is stored by the receiver itself, alongside the
+        // worker rather than after it
+        backpressureEvents.incrementAndGet();
+        process(Collections.singletonList(batch));
+    }
+
+    public Stats getStats() {
+        Stats stats = new Stats();
+        stats.batchesIngested = batchesIngested.get();
+        stats.messagesIngested = messagesIngested.get();
+        stats.providerWrites = providerWrites.get();
+        stats.backpressureEvents = backpressureEvents.get();
+        stats.duplicatesSuppressed = duplicatesSuppressed.get();
+        stats.queueDepth = queue.size();
+        stats.maxQueueDepth = maxQueueDepth.get();
+        stats.averageLatencyMs = stats.messagesIngested > 0 ? (double) totalLatencyMs.get() / stats.messagesIngested : 0;
+        stats.maxLatencyMs = maxLatencyMs.get();
+        return stats;
+    }
+
+    private void drainLoop() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        List<Batch> batches = new ArrayList<>(MAX_DRAIN);
+        while (true) {
+            try {
+                batches.add(queue.take());
+                queue.drainTo(batches, MAX_DRAIN - 1);
+                process(batches);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                android.util.Log.e("SmsIngestPipeline", "Error ingesting SMS batch", e);
+            } finally {
+                batches.clear();
+            }
+        }
+    }
+
+    // Runs on the worker and, under backpressure, on a receiver thread at the same time
+    private void process(List<Batch> batches) {
+        List<IncomingSms> assembled = new ArrayList<>();
+        List<IncomingSms> messages = new ArrayList<>();
+        boolean succeeded = false;
+        try {
+            Set<Long> drained = new HashSet<>();
+            for (Batch batch : batches) {
+                // A retried broadcast, possibly queued next to the original, is dropped unparsed
+                batch.fingerprint = IngestDeduplicator.fingerprint(batch.pdus);
+                if (deduplicator.contains(batch.fingerprint) || !drained.add(batch.fingerprint)) {
+                    batch.duplicate = true;
+                    duplicatesSuppressed.incrementAndGet();
+                    continue;
+                }
+                assembled.addAll(SmsReassembler.assemble(parse(batch), batch.receivedAt));
+            }
+
+            // Catches the same message arriving in differently split or re-encoded broadcasts
+            Set<Long> assembledFingerprints = new HashSet<>();
+            List<Long> messageFingerprints = new ArrayList<>(assembled.size());
+            for (IncomingSms sms : assembled) {
+                long fingerprint = deduplicator.fingerprint(sms.sender, sms.timestamp, sms.body);
+                if (deduplicator.contains(fingerprint) || !assembledFingerprints.add(fingerprint)) {
+                    duplicatesSuppressed.incrementAndGet();
+                    continue;
+                }
+                messages.add(sms);
+                messageFingerprints.add(fingerprint);
+            }
+            if (!messages.isEmpty()) {
+                store(messages);
+                for (Long fingerprint : messageFingerprints) {
+                    deduplicator.add(fingerprint);
+                }
+                SmsNotifier notifier = SmsNotifier.getInstance(context);
+                for (IncomingSms sms : messages) {
+                    notifier.notifyIncoming(sms);
+                }
+            }
+            succeeded = true;
+        } catch (Exception e) {
+            android.util.Log.e("SmsIngestPipeline", "Error processing SMS batch", e);
+        } finally {
+            for (Batch batch : batches) {
+                complete(batch, succeeded);
+            }
+        }
+
+        batchesIngested.addAndGet(batches.size());
+        messagesIngested.addAndGet(messages.size());
+        long now = SystemClock.elapsedRealtime();
+        for (IncomingSms sms : messages) {
+            long latency = now - sms.receivedAt;
+            totalLatencyMs.addAndGet(latency);
+            updateMax(maxLatencyMs, latency);
+        }
+    }
+
+    // Every broadcast is finished, since SMS_DELIVER is never redelivered, but only one whose
+    // messages were stored is remembered, so a network resend of a failed one is not suppressed
+    private void complete(Batch batch, boolean succeeded) {
+        if (succeeded && !batch.duplicate && !batch.finished) {
+            deduplicator.add(batch.fingerprint);
+        }
+        finish(batch);
+    }
+
+    private static void finish(Batch batch) {
+        if (batch.pendingResult != null && !batch.finished) {
+            batch.finished = true;
+            batch.pendingResult.finish();
+        }
+    }
+
+    private static List<SmsReassembler.Segment> parse(Batch batch) {
+        List<SmsReassembler.Segment> segments = new ArrayList<>(batch.pdus.length);
+        for (Object pdu : batch.pdus) {
+            SmsMessage smsMessage;
+            if (batch.format != null) {
+                smsMessage = SmsMessage.createFromPdu((byte[]) pdu, batch.format);
+            } else {
+                smsMessage = SmsMessage.createFromPdu((byte[]) pdu);
+            }
+
+            if (smsMessage != null) {
+                segments.add(new SmsReassembler.Segment(smsMessage.getDisplayOriginatingAddress(), smsMessage.getMessageBody(),
+                        smsMessage.getTimestampMillis(), SmsReassembler.readConcatHeader((byte[]) pdu, batch.format)));
+            }
+        }
+        return segments;
+    }
+
+    private void store(List<IncomingSms> messages) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(messages.size());
+        for (IncomingSms sms : messages) {
+            sms.threadId = ThreadIdCache.getInstance(context).getOrCreateThreadId(sms.sender);
+            operations.add(ContentProviderOperation.newInsert(Telephony.Sms.CONTENT_URI)
+                    .withValues(toContentValues(sms))
+                    .build());
+        }
+
+        long started = SmsPerfStats.start();
+        try {
+            ContentProviderResult[] results = context.getContentResolver().applyBatch(Telephony.Sms.CONTENT_URI.getAuthority(), operations);
+            providerWrites.incrementAndGet();
+            for (int i = 0; i < results.length && i < messages.size(); i++) {
+                if (results[i].uri != null) {
+                    messages.get(i).id = ContentUris.parseId(results[i].uri);
+                }
+            }
+        } catch (Exception e) {
+            // Some providers reject batches; fall back to one insert per message, skipping any
+            // rows the failed batch managed to write before it stopped
+            android.util.Log.w("SmsIngestPipeline", "applyBatch failed, inserting individually", e);
+            for (IncomingSms sms : messages) {
+                if (isStored(sms)) {
+                    continue;
+                }
+                Uri uri = context.getContentResolver().insert(Telephony.Sms.CONTENT_URI, toContentValues(sms));
+                providerWrites.incrementAndGet();
+                if (uri != null) {
+                    sms.id = ContentUris.parseId(uri);
+                }
+            }
+        }
+        SmsPerfStats.record(SmsPerfStats.OP_INSERT, started);
+
+        SmsSearchIndex searchIndex = SmsSearchIndex.getInstance(context);
+        SmsCategoryStore categoryStore = SmsCategoryStore.getInstance(context);
+        UnreadCounter unreadCounter = UnreadCounter.getInstance(context);
+        for (IncomingSms sms : messages) {
+            if (sms.id > 0) {
+                searchIndex.indexAsync(sms.id, sms.threadId, sms.sender, sms.body, sms.timestamp);
+                categoryStore.recordAsync(sms.id, sms.threadId, sms.sender, sms.body, sms.timestamp);
+                unreadCounter.onInserted(sms.id, sms.threadId, Telephony.Sms.MESSAGE_TYPE_INBOX, 0);
+                SmsPerfStats.increment(SmsPerfStats.COUNTER_INGESTED, 1);
+            }
+        }
+    }
+
+    private boolean isStored(IncomingSms sms) {
+        Cursor cursor = context.getContentResolver().query(Telephony.Sms.CONTENT_URI, new String[]{"_id"},
+                "address = ? AND date = ? AND body = ?",
+                new String[]{sms.sender, String.valueOf(sms.timestamp), sms.body}, null);
+        if (cursor == null) {
+            return false;
+        }
+        try {
+            if (cursor.moveToFirst()) {
+                sms.id = cursor.getLong(0);
+                return true;
+            }
+            return false;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static ContentValues toContentValues(IncomingSms sms) {
+        ContentValues values = new ContentValues();
+        values.put(Telephony.Sms.ADDRESS, sms.sender);
+        values.put(Telephony.Sms.BODY, sms.body);
+        values.put(Telephony.Sms.DATE, sms.timestamp);
+        values.put(Telephony.Sms.DATE_SENT, sms.timestamp);
+        values.put(Telephony.Sms.READ, 0);
+        values.put(Telephony.Sms.TYPE, Telephony.Sms.MESSAGE_TYPE_INBOX);
+        values.put(Telephony.Sms.THREAD_ID, sms.threadId);
+        return values;
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+}
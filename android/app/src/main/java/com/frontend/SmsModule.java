@@ -1,34 +1,209 @@
 package com.frontend;
 
 import android.content.ContentResolver;
-import android.content.ContentValues;
+import android.Manifest;
 import android.content.Intent;
+import android.content.pm.PackageManager;
 import android.database.Cursor;
 import android.net.Uri;
 import android.provider.Telephony;
-import android.telephony.SmsManager;
 import android.app.role.RoleManager;
 import android.os.Build;
+import androidx.annotation.Nullable;
+
 import com.facebook.react.bridge.ReactApplicationContext;
-import com.facebook.react.bridge.ReactContextBaseJavaModule;
-import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class SmsModule extends NativeSmsModuleSpec {
 
-public class SmsModule extends ReactContextBaseJavaModule {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
+    private static final String EVENT_SMS_DELTA = "SmsDelta";
+    private static final String EVENT_SMS_SEND_STATUS = "SmsSendStatus";
+    private static final String EVENT_SMS_PURGE_PROGRESS = "SmsPurgeProgress";
+    private static final String EVENT_MMS_RECEIVED = "MmsReceived";
+    private static final String EVENT_SMS_ARCHIVE_PROGRESS = "SmsArchiveProgress";
+    // Indexed by MmsIngestor.STATE_*
+    private static final String[] MMS_STATES = {"downloading", "downloaded", "failed"};
+    // Indexed by SmsPurger.KIND_*
+    private static final String[] PURGE_KINDS = {"messages", "thread", "retention"};
+    // Indexed by SmsArchiver.KIND_*
+    private static final String[] ARCHIVE_KINDS = {"export", "import"};
+    // Indexed by SmsSendQueue.STATE_*
+    private static final String[] SEND_STATES = {"queued", "sending", "sent", "delivered", "failed"};
+
+    private final SmsRepository smsRepository;
+    private SmsChangeObserver changeObserver;
     
     public SmsModule(ReactApplicationContext reactContext) {
         super(reactContext);
+        this.smsRepository = new SmsRepository(reactContext);
+    }
+
+    @Override
+    public void initialize() {
+        super.initialize();
+        SmsSearchIndex searchIndex = SmsSearchIndex.getInstance(getReactApplicationContext());
+        searchIndex.backfillAsync();
+        SmsCategoryStore categoryStore = SmsCategoryStore.getInstance(getReactApplicationContext());
+        categoryStore.backfillAsync();
+        // Nothing observed the provider while the runtime was down: the backfill picks up messages
+        // that arrived in the meantime, the rest is reconciled here
+        categoryStore.pruneAsync();
+        UnreadCounter.getInstance(getReactApplicationContext()).invalidate();
+
+        changeObserver = SmsChangeObserver.create(getReactApplicationContext());
+        changeObserver.addListener(this::emitDelta);
+        changeObserver.addListener(delta -> {
+            searchIndex.indexAsync(delta.inserted);
+            searchIndex.indexAsync(delta.updated);
+            searchIndex.removeAsync(delta.deletedIds);
+            categoryStore.recordAsync(delta.inserted);
+            categoryStore.removeAsync(delta.deletedIds);
+        });
+        changeObserver.addListener(UnreadCounter.getInstance(getReactApplicationContext())::onDelta);
+        changeObserver.addListener(ThreadPageCache.getInstance(getReactApplicationContext())::onDelta);
+        changeObserver.start();
+
+        SmsSendQueue.getInstance(getReactApplicationContext()).addListener(sendStatusListener);
+
+        SmsPurger purger = SmsPurger.getInstance(getReactApplicationContext());
+        purger.addListener(purgeProgressListener);
+        purger.runRetentionIfDue();
+
+        MmsIngestor.getInstance(getReactApplicationContext()).addListener(mmsReceivedListener);
+        SmsArchiver.getInstance(getReactApplicationContext()).addListener(archiveProgressListener);
+    }
+
+    @Override
+    public void invalidate() {
+        if (changeObserver != null) {
+            changeObserver.stop();
+            changeObserver = null;
+        }
+        // Without the observer nothing would invalidate cached pages
+        ThreadPageCache.getInstance(getReactApplicationContext()).clear();
+        SmsSendQueue.getInstance(getReactApplicationContext()).removeListener(sendStatusListener);
+        SmsPurger.getInstance(getReactApplicationContext()).removeListener(purgeProgressListener);
+        MmsIngestor.getInstance(getReactApplicationContext()).removeListener(mmsReceivedListener);
+        SmsArchiver.getInstance(getReactApplicationContext()).removeListener(archiveProgressListener);
+        super.invalidate();
+    }
+
+    private final SmsSendQueue.Listener sendStatusListener = (queueId, address, state, providerId, errorCode) -> {
+        ReactApplicationContext reactContext = getReactApplicationContext();
+        if (!reactContext.hasActiveReactInstance()) {
+            return;
+        }
+        WritableMap event = Arguments.createMap();
+        event.putDouble("queueId", queueId);
+        event.putString("address", address);
+        event.putString("state", SEND_STATES[state]);
+        event.putString("id", String.valueOf(providerId));
+        event.putInt("errorCode", errorCode);
+        reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit(EVENT_SMS_SEND_STATUS, event);
+    };
+
+    private final SmsPurger.Listener purgeProgressListener = (jobId, kind, purged, done, error) -> {
+        ReactApplicationContext reactContext = getReactApplicationContext();
+        if (!reactContext.hasActiveReactInstance()) {
+            return;
+        }
+        WritableMap event = Arguments.createMap();
+        event.putDouble("jobId", jobId);
+        event.putString("kind", PURGE_KINDS[kind]);
+        event.putInt("purged", purged);
+        event.putBoolean("done", done);
+        event.putString("error", error);
+        reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit(EVENT_SMS_PURGE_PROGRESS, event);
+    };
+
+    private final SmsArchiver.Listener archiveProgressListener = (jobId, kind, processed, total, done, error) -> {
+        ReactApplicationContext reactContext = getReactApplicationContext();
+        if (!reactContext.hasActiveReactInstance()) {
+            return;
+        }
+        WritableMap event = Arguments.createMap();
+        event.putDouble("jobId", jobId);
+        event.putString("kind", ARCHIVE_KINDS[kind]);
+        event.putDouble("processed", processed);
+        event.putDouble("total", total);
+        event.putBoolean("done", done);
+        event.putString("error", error);
+        reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit(EVENT_SMS_ARCHIVE_PROGRESS, event);
+    };
+
+    private final MmsIngestor.Listener mmsReceivedListener = (messageId, threadId) -> {
+        ReactApplicationContext reactContext = getReactApplicationContext();
+        if (!reactContext.hasActiveReactInstance()) {
+            return;
+        }
+        WritableMap event = Arguments.createMap();
+        event.putString("id", String.valueOf(messageId));
+        event.putDouble("threadId", threadId);
+        reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit(EVENT_MMS_RECEIVED, event);
+    };
+
+    // Required by NativeEventEmitter; listeners are tracked on the JS side
+    @Override
+    public void addListener(String eventName) {
     }
 
     @Override
-    public String getName() {
-        return "SmsModule";
+    public void removeListeners(double count) {
     }
 
-    @ReactMethod
+    private void emitDelta(SmsDelta delta) {
+        ReactApplicationContext reactContext = getReactApplicationContext();
+        if (!reactContext.hasActiveReactInstance()) {
+            return;
+        }
+
+        long started = SmsPerfStats.start();
+        WritableArray inserted = Arguments.createArray();
+        SmsClassifier classifier = SmsClassifier.getInstance();
+        for (SmsRow row : delta.inserted) {
+            WritableMap rowMap = toWritableMap(row);
+            // Classified here as well, so listeners don't have to wait for the category store's write
+            if (row.type == Telephony.Sms.MESSAGE_TYPE_INBOX) {
+                SmsClassifier.Result result = classifier.classify(row.address, row.body);
+                rowMap.putString("category", SmsClassifier.CATEGORY_NAMES[result.category]);
+                rowMap.putString("otpCode", result.otpCode);
+            }
+            inserted.pushMap(rowMap);
+        }
+        WritableArray updated = Arguments.createArray();
+        for (SmsRow row : delta.updated) {
+            updated.pushMap(toWritableMap(row));
+        }
+        WritableArray deleted = Arguments.createArray();
+        for (Long id : delta.deletedIds) {
+            deleted.pushString(String.valueOf(id));
+        }
+
+        WritableMap event = Arguments.createMap();
+        event.putArray("inserted", inserted);
+        event.putArray("updated", updated);
+        event.putArray("deleted", deleted);
+        event.putBoolean("invalidated", delta.invalidated);
+        SmsPerfStats.record(SmsPerfStats.OP_SERIALIZE, started);
+
+        reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit(EVENT_SMS_DELTA, event);
+    }
+
+    @Override
     public void getSmsMessages(Promise promise) {
         try {
             ContentResolver contentResolver = getReactApplicationContext().getContentResolver();
@@ -39,14 +214,20 @@ public class SmsModule extends ReactContextBaseJavaModule {
             WritableArray smsArray = Arguments.createArray();
             
             if (cursor != null) {
+                int idColumn = cursor.getColumnIndexOrThrow("_id");
+                int addressColumn = cursor.getColumnIndexOrThrow("address");
+                int bodyColumn = cursor.getColumnIndexOrThrow("body");
+                int dateColumn = cursor.getColumnIndexOrThrow("date");
+                int typeColumn = cursor.getColumnIndexOrThrow("type");
+                int readColumn = cursor.getColumnIndexOrThrow("read");
                 while (cursor.moveToNext()) {
                     WritableMap smsMap = Arguments.createMap();
-                    smsMap.putString("id", cursor.getString(cursor.getColumnIndexOrThrow("_id")));
-                    smsMap.putString("address", cursor.getString(cursor.getColumnIndexOrThrow("address")));
-                    smsMap.putString("body", cursor.getString(cursor.getColumnIndexOrThrow("body")));
-                    smsMap.putString("date", cursor.getString(cursor.getColumnIndexOrThrow("date")));
-                    smsMap.putString("type", cursor.getString(cursor.getColumnIndexOrThrow("type")));
-                    smsMap.putString("read", cursor.getString(cursor.getColumnIndexOrThrow("read")));
+                    smsMap.putString("id", cursor.getString(idColumn));
+                    smsMap.putString("address", cursor.getString(addressColumn));
+                    smsMap.putString("body", cursor.getString(bodyColumn));
+                    smsMap.putString("date", cursor.getString(dateColumn));
+                    smsMap.putString("type", cursor.getString(typeColumn));
+                    smsMap.putString("read", cursor.getString(readColumn));
                     smsArray.pushMap(smsMap);
                 }
                 cursor.close();
@@ -57,100 +238,662 @@ public class SmsModule extends ReactContextBaseJavaModule {
             promise.reject("SMS_ERROR", e.getMessage());
         }
     }
+
+    @Override
+    public void getSmsMessagesColumnar(double limit, Promise promise) {
+        try {
+            ContentResolver contentResolver = getReactApplicationContext().getContentResolver();
+            int maxRows = limit > 0 ? (int) limit : Integer.MAX_VALUE;
+
+            Cursor cursor;
+            try {
+                cursor = contentResolver.query(SmsRepository.SMS_URI, SmsRepository.MESSAGE_PROJECTION, null, null,
+                        limit > 0 ? "date DESC LIMIT " + maxRows : "date DESC");
+            } catch (IllegalArgumentException | android.database.sqlite.SQLiteException e) {
+                // Some providers reject a LIMIT in the sort order; the encoder cuts the rows instead
+                cursor = contentResolver.query(SmsRepository.SMS_URI, SmsRepository.MESSAGE_PROJECTION, null, null, "date DESC");
+            }
+            if (cursor == null) {
+                promise.resolve(new SmsColumnarEncoder().encode(new android.database.MatrixCursor(SmsRepository.MESSAGE_PROJECTION)));
+                return;
+            }
+            try {
+                promise.resolve(new SmsColumnarEncoder().encode(cursor, maxRows));
+            } finally {
+                cursor.close();
+            }
+        } catch (Exception e) {
+            promise.reject("SMS_ERROR", e.getMessage());
+        }
+    }
     
-    @ReactMethod
+    @Override
+    public void getThreadMessages(double threadIdValue, @Nullable String address, double beforeDate, double beforeId, double limit,
+            Promise promise) {
+        try {
+            long threadId = (long) threadIdValue;
+            if (threadId <= 0 && address == null) {
+                promise.reject("SMS_ERROR", "A thread id or address is required");
+                return;
+            }
+
+            int pageSize = limit > 0 ? (int) limit : DEFAULT_PAGE_SIZE;
+            // Thread pages are cached; address lookups are only used before a thread id is known
+            SmsRepository.Page page = threadId > 0
+                    ? ThreadPageCache.getInstance(getReactApplicationContext()).getPage(threadId, (long) beforeDate, (long) beforeId, pageSize)
+                    : smsRepository.queryThreadPage(threadId, address, (long) beforeDate, (long) beforeId, pageSize);
+
+            long started = SmsPerfStats.start();
+            WritableArray messages = Arguments.createArray();
+            for (SmsRow row : page.rows) {
+                messages.pushMap(toWritableMap(row));
+            }
+            SmsPerfStats.record(SmsPerfStats.OP_SERIALIZE, started);
+
+            WritableMap result = Arguments.createMap();
+            result.putArray("messages", messages);
+            result.putBoolean("hasMore", page.hasMore);
+
+            SmsRow oldest = page.last();
+            if (oldest != null) {
+                WritableMap nextCursor = Arguments.createMap();
+                nextCursor.putDouble("date", oldest.date);
+                nextCursor.putDouble("id", oldest.id);
+                result.putMap("nextCursor", nextCursor);
+            } else {
+                result.putNull("nextCursor");
+            }
+
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("SMS_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void getConversationSummaries(double beforeDate, double beforeThreadId, double limit, String category, Promise promise) {
+        try {
+            int pageSize = limit > 0 ? (int) limit : DEFAULT_PAGE_SIZE;
+            int categoryFilter = SmsClassifier.categoryOf(category);
+            SmsRepository.SummaryPage page = smsRepository.queryConversationSummaries((long) beforeDate, (long) beforeThreadId, pageSize,
+                    categoryFilter);
+            // The unfiltered first page is what the inbox shows at launch
+            if (beforeDate <= 0 && categoryFilter < 0) {
+                ConversationSnapshot.getInstance(getReactApplicationContext()).writeAsync(page.summaries);
+            }
+
+            long started = SmsPerfStats.start();
+            WritableArray conversations = Arguments.createArray();
+            for (ConversationSummary summary : page.summaries) {
+                conversations.pushMap(toWritableMap(summary));
+            }
+            SmsPerfStats.record(SmsPerfStats.OP_SERIALIZE, started);
+
+            WritableMap result = Arguments.createMap();
+            result.putArray("conversations", conversations);
+            result.putBoolean("hasMore", page.hasMore);
+
+            ConversationSummary oldest = page.last();
+            if (oldest != null) {
+                WritableMap nextCursor = Arguments.createMap();
+                nextCursor.putDouble("date", oldest.date);
+                nextCursor.putDouble("threadId", oldest.threadId);
+                result.putMap("nextCursor", nextCursor);
+            } else {
+                result.putNull("nextCursor");
+            }
+
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("SMS_ERROR", e.getMessage());
+        }
+    }
+
+    // Last synced first page, served before the provider is queried; null if there is none yet
+    @Override
+    public void getConversationSnapshot(Promise promise) {
+        try {
+            if (getReactApplicationContext().checkSelfPermission(Manifest.permission.READ_SMS) != PackageManager.PERMISSION_GRANTED) {
+                // Revoking READ_SMS restarts the process, so this is the first chance to drop the copy
+                ConversationSnapshot.getInstance(getReactApplicationContext()).clear();
+                promise.resolve(null);
+                return;
+            }
+            ConversationSnapshot.Snapshot snapshot = ConversationSnapshot.getInstance(getReactApplicationContext()).read();
+            if (snapshot == null) {
+                promise.resolve(null);
+                return;
+            }
+
+            WritableArray conversations = Arguments.createArray();
+            for (ConversationSummary summary : snapshot.summaries) {
+                conversations.pushMap(toWritableMap(summary));
+            }
+            WritableMap result = Arguments.createMap();
+            result.putArray("conversations", conversations);
+            result.putDouble("savedAt", snapshot.savedAt);
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("SMS_ERROR", e.getMessage());
+        }
+    }
+
+    private static WritableMap toWritableMap(SmsRow row) {
+        WritableMap smsMap = Arguments.createMap();
+        smsMap.putString("id", String.valueOf(row.id));
+        smsMap.putDouble("threadId", row.threadId);
+        smsMap.putString("address", row.address);
+        smsMap.putString("body", row.body);
+        smsMap.putDouble("date", row.date);
+        smsMap.putInt("type", row.type);
+        smsMap.putInt("read", row.read);
+        smsMap.putInt("status", row.status);
+        return smsMap;
+    }
+
+    private static WritableMap toWritableMap(ConversationSummary summary) {
+        WritableMap summaryMap = Arguments.createMap();
+        summaryMap.putDouble("threadId", summary.threadId);
+        summaryMap.putString("address", summary.address);
+        summaryMap.putString("name", summary.name);
+        summaryMap.putString("photoUri", summary.photoUri);
+        summaryMap.putString("snippet", summary.snippet);
+        summaryMap.putDouble("date", summary.date);
+        summaryMap.putInt("messageCount", summary.messageCount);
+        summaryMap.putInt("unreadCount", summary.unreadCount);
+        summaryMap.putString("category", SmsClassifier.CATEGORY_NAMES[summary.category]);
+        return summaryMap;
+    }
+
+    @Override
+    public void getLatestOtp(double maxAgeMinutes, Promise promise) {
+        try {
+            long since = System.currentTimeMillis() - (long) (maxAgeMinutes * 60 * 1000);
+            SmsCategoryStore.Otp otp = SmsCategoryStore.getInstance(getReactApplicationContext()).getLatestOtp(since);
+            if (otp == null) {
+                promise.resolve(null);
+                return;
+            }
+            WritableMap otpMap = Arguments.createMap();
+            otpMap.putString("id", String.valueOf(otp.messageId));
+            otpMap.putDouble("threadId", otp.threadId);
+            otpMap.putString("address", otp.address);
+            otpMap.putString("code", otp.code);
+            otpMap.putDouble("date", otp.date);
+            promise.resolve(otpMap);
+        } catch (Exception e) {
+            promise.reject("SMS_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void searchMessages(String query, double limit, double offset, Promise promise) {
+        try {
+            int pageSize = limit > 0 ? (int) limit : DEFAULT_PAGE_SIZE;
+            List<SmsSearchIndex.Hit> hits = SmsSearchIndex.getInstance(getReactApplicationContext())
+                    .search(query, pageSize + 1, (int) offset);
+
+            WritableArray results = Arguments.createArray();
+            for (int i = 0; i < hits.size() && i < pageSize; i++) {
+                SmsSearchIndex.Hit hit = hits.get(i);
+                WritableMap hitMap = Arguments.createMap();
+                hitMap.putString("id", String.valueOf(hit.id));
+                hitMap.putDouble("threadId", hit.threadId);
+                hitMap.putString("address", hit.address);
+                hitMap.putDouble("date", hit.date);
+                hitMap.putString("snippet", hit.snippet);
+                hitMap.putInt("matches", hit.matches);
+                results.pushMap(hitMap);
+            }
+
+            WritableMap result = Arguments.createMap();
+            result.putArray("hits", results);
+            result.putBoolean("hasMore", hits.size() > pageSize);
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("SEARCH_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void getIngestStats(Promise promise) {
+        try {
+            SmsIngestPipeline.Stats stats = SmsIngestPipeline.getInstance(getReactApplicationContext()).getStats();
+            WritableMap result = Arguments.createMap();
+            result.putDouble("batchesIngested", stats.batchesIngested);
+            result.putDouble("messagesIngested", stats.messagesIngested);
+            result.putDouble("providerWrites", stats.providerWrites);
+            result.putDouble("backpressureEvents", stats.backpressureEvents);
+            result.putDouble("duplicatesSuppressed", stats.duplicatesSuppressed);
+            result.putInt("queueDepth", stats.queueDepth);
+            result.putDouble("maxQueueDepth", stats.maxQueueDepth);
+            result.putDouble("averageLatencyMs", stats.averageLatencyMs);
+            result.putDouble("maxLatencyMs", stats.maxLatencyMs);
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("INGEST_STATS_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void getThreadCacheStats(Promise promise) {
+        try {
+            ThreadIdCache.Stats stats = ThreadIdCache.getInstance(getReactApplicationContext()).getStats();
+            WritableMap result = Arguments.createMap();
+            result.putInt("size", stats.size);
+            result.putDouble("hits", stats.hits);
+            result.putDouble("misses", stats.misses);
+            result.putDouble("evictions", stats.evictions);
+            result.putDouble("invalidations", stats.invalidations);
+            long lookups = stats.hits + stats.misses;
+            result.putDouble("hitRate", lookups > 0 ? (double) stats.hits / lookups : 0);
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("THREAD_CACHE_STATS_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void prefetchThreads(ReadableArray threadIds, double limit, Promise promise) {
+        try {
+            List<Long> ids = new ArrayList<>(threadIds.size());
+            for (int i = 0; i < threadIds.size(); i++) {
+                ids.add((long) threadIds.getDouble(i));
+            }
+            ThreadPageCache.getInstance(getReactApplicationContext()).prefetchAsync(ids, limit > 0 ? (int) limit : DEFAULT_PAGE_SIZE);
+            promise.resolve(null);
+        } catch (Exception e) {
+            promise.reject("SMS_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void getPageCacheStats(Promise promise) {
+        try {
+            ThreadPageCache.Stats stats = ThreadPageCache.getInstance(getReactApplicationContext()).getStats();
+            WritableMap result = Arguments.createMap();
+            result.putInt("pages", stats.pages);
+            result.putDouble("bytes", stats.bytes);
+            result.putDouble("maxBytes", stats.maxBytes);
+            result.putDouble("hits", stats.hits);
+            result.putDouble("misses", stats.misses);
+            result.putDouble("evictions", stats.evictions);
+            result.putDouble("invalidations", stats.invalidations);
+            result.putDouble("prefetched", stats.prefetched);
+            long requests = stats.hits + stats.misses;
+            result.putDouble("hitRate", requests > 0 ? (double) stats.hits / requests : 0);
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("PAGE_CACHE_STATS_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void getPerfStats(Promise promise) {
+        try {
+            SmsPerfStats.Snapshot snapshot = SmsPerfStats.snapshot(getReactApplicationContext());
+            WritableMap histograms = Arguments.createMap();
+            for (SmsPerfStats.Histogram histogram : snapshot.histograms) {
+                WritableMap map = Arguments.createMap();
+                map.putDouble("count", histogram.count);
+                map.putDouble("meanMs", histogram.meanMs);
+                map.putDouble("p50Ms", histogram.p50Ms);
+                map.putDouble("p95Ms", histogram.p95Ms);
+                map.putDouble("p99Ms", histogram.p99Ms);
+                map.putDouble("maxMs", histogram.maxMs);
+                histograms.putMap(histogram.name, map);
+            }
+            WritableMap counters = Arguments.createMap();
+            for (int i = 0; i < SmsPerfStats.COUNTER_NAMES.length; i++) {
+                counters.putDouble(SmsPerfStats.COUNTER_NAMES[i], snapshot.counters[i]);
+            }
+            WritableMap queues = Arguments.createMap();
+            queues.putInt("ingest", snapshot.ingestQueueDepth);
+            queues.putDouble("ingestMax", snapshot.ingestMaxQueueDepth);
+            queues.putInt("send", snapshot.sendQueueDepth);
+
+            WritableMap result = Arguments.createMap();
+            result.putBoolean("enabled", snapshot.enabled);
+            result.putDouble("sinceMs", snapshot.sinceMs);
+            result.putMap("latency", histograms);
+            result.putMap("counters", counters);
+            result.putMap("queues", queues);
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("PERF_STATS_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void dumpPerfStats(Promise promise) {
+        try {
+            StringWriter text = new StringWriter();
+            SmsPerfStats.dump(getReactApplicationContext(), new PrintWriter(text));
+            promise.resolve(text.toString());
+        } catch (Exception e) {
+            promise.reject("PERF_STATS_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void setPerfStatsEnabled(boolean enabled, Promise promise) {
+        try {
+            SmsPerfStats.setEnabled(getReactApplicationContext(), enabled);
+            promise.resolve(null);
+        } catch (Exception e) {
+            promise.reject("PERF_STATS_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void resetPerfStats() {
+        SmsPerfStats.reset();
+    }
+
+    @Override
+    public void recordFirstRender(String source, double elapsedMs) {
+        SmsPerfStats.recordMillis("snapshot".equals(source) ? SmsPerfStats.OP_FIRST_RENDER_SNAPSHOT
+                : SmsPerfStats.OP_FIRST_RENDER_PROVIDER, (long) elapsedMs);
+    }
+
+    @Override
+    public void getMmsMessages(double threadId, double limit, Promise promise) {
+        try {
+            List<MmsIngestor.MmsMessage> messages = MmsIngestor.getInstance(getReactApplicationContext())
+                    .getThreadMessages((long) threadId, limit > 0 ? (int) limit : DEFAULT_PAGE_SIZE);
+            WritableArray result = Arguments.createArray();
+            for (MmsIngestor.MmsMessage message : messages) {
+                WritableMap map = Arguments.createMap();
+                map.putString("id", String.valueOf(message.id));
+                map.putDouble("threadId", message.threadId);
+                map.putString("address", message.address);
+                map.putString("subject", message.subject);
+                map.putDouble("date", message.date);
+                map.putString("state", MMS_STATES[message.state]);
+                map.putBoolean("read", message.read == 1);
+                WritableArray parts = Arguments.createArray();
+                for (MmsIngestor.MmsPart part : message.parts) {
+                    WritableMap partMap = Arguments.createMap();
+                    partMap.putString("id", String.valueOf(part.id));
+                    partMap.putString("contentType", part.contentType);
+                    partMap.putString("name", part.name);
+                    partMap.putString("text", part.text);
+                    partMap.putString("uri", part.path != null ? Uri.fromFile(new File(part.path)).toString() : null);
+                    partMap.putDouble("size", part.size);
+                    parts.pushMap(partMap);
+                }
+                map.putArray("parts", parts);
+                result.pushMap(map);
+            }
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("MMS_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void getMmsThumbnail(String partId, double maxSize, Promise promise) {
+        try {
+            MmsIngestor.MmsPart part = MmsIngestor.getInstance(getReactApplicationContext()).getPart(Long.parseLong(partId));
+            String path = new MmsThumbnailer(getReactApplicationContext()).getThumbnail(part, maxSize > 0 ? (int) maxSize : 256);
+            promise.resolve(path != null ? Uri.fromFile(new File(path)).toString() : null);
+        } catch (Exception e) {
+            promise.reject("MMS_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void retryMmsDownload(String messageId, Promise promise) {
+        try {
+            MmsIngestor.getInstance(getReactApplicationContext()).retryDownload(Long.parseLong(messageId));
+            promise.resolve(null);
+        } catch (Exception e) {
+            promise.reject("MMS_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void getContactCacheStats(Promise promise) {
+        try {
+            ContactResolver.Stats stats = ContactResolver.getInstance(getReactApplicationContext()).getStats();
+            WritableMap result = Arguments.createMap();
+            result.putInt("size", stats.size);
+            result.putDouble("hits", stats.hits);
+            result.putDouble("misses", stats.misses);
+            result.putDouble("evictions", stats.evictions);
+            result.putDouble("lookups", stats.lookups);
+            long requests = stats.hits + stats.misses;
+            result.putDouble("hitRate", requests > 0 ? (double) stats.hits / requests : 0);
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("CONTACT_CACHE_STATS_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
     public void sendSms(String phoneNumber, String message, Promise promise) {
         try {
-            SmsManager smsManager = SmsManager.getDefault();
-            smsManager.sendTextMessage(phoneNumber, null, message, null, null);
-            
-            // Add to sent messages
-            ContentResolver contentResolver = getReactApplicationContext().getContentResolver();
-            ContentValues values = new ContentValues();
-            values.put("address", phoneNumber);
-            values.put("body", message);
-            values.put("date", System.currentTimeMillis());
-            values.put("type", 2); // Sent message
-            values.put("read", 1);
-            
-            Uri uri = Uri.parse("content://sms/sent");
-            contentResolver.insert(uri, values);
-            
-            promise.resolve("SMS sent successfully");
+            // Resolves once the message is durably queued; progress arrives as SmsSendStatus events
+            long queueId = SmsSendQueue.getInstance(getReactApplicationContext()).enqueue(phoneNumber, message);
+            promise.resolve((double) queueId);
+        } catch (Exception e) {
+            promise.reject("SMS_SEND_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void sendBatch(ReadableArray recipients, String message, Promise promise) {
+        try {
+            List<String> addresses = new ArrayList<>(recipients.size());
+            for (int i = 0; i < recipients.size(); i++) {
+                addresses.add(recipients.getString(i));
+            }
+            if (addresses.isEmpty()) {
+                promise.resolve(Arguments.createArray());
+                return;
+            }
+
+            List<Long> queueIds = SmsSendQueue.getInstance(getReactApplicationContext()).enqueueAll(addresses, message);
+            WritableArray result = Arguments.createArray();
+            for (Long queueId : queueIds) {
+                result.pushDouble(queueId);
+            }
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("SMS_SEND_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void setSendRate(double messagesPerMinute, Promise promise) {
+        try {
+            SmsSendQueue.getInstance(getReactApplicationContext()).setMessagesPerMinute((int) messagesPerMinute);
+            promise.resolve(null);
         } catch (Exception e) {
             promise.reject("SMS_SEND_ERROR", e.getMessage());
         }
     }
     
-    @ReactMethod
+    @Override
     public void markAsRead(String address, Promise promise) {
         try {
-            ContentResolver contentResolver = getReactApplicationContext().getContentResolver();
-            Uri uri = Uri.parse("content://sms");
-            
-            ContentValues values = new ContentValues();
-            values.put("read", 1);
-            
-            // Only mark received messages (type=1) as read
-            String selection = "address = ? AND read = 0 AND type = 1";
-            String[] selectionArgs = {address};
-            
-            int updatedRows = contentResolver.update(uri, values, selection, selectionArgs);
+            long threadId = ThreadIdCache.getInstance(getReactApplicationContext()).findThreadId(address);
+            if (threadId <= 0) {
+                promise.resolve("Marked 0 messages as read");
+                return;
+            }
+            List<Long> threadIds = new ArrayList<>(1);
+            threadIds.add(threadId);
+            int updatedRows = UnreadCounter.getInstance(getReactApplicationContext()).markThreadsRead(threadIds);
             promise.resolve("Marked " + updatedRows + " messages as read");
         } catch (Exception e) {
             promise.reject("MARK_READ_ERROR", e.getMessage());
         }
     }
-    
-    @ReactMethod
+
+    @Override
+    public void markThreadsRead(ReadableArray threadIds, Promise promise) {
+        try {
+            List<Long> ids = new ArrayList<>(threadIds.size());
+            for (int i = 0; i < threadIds.size(); i++) {
+                ids.add((long) threadIds.getDouble(i));
+            }
+            promise.resolve(UnreadCounter.getInstance(getReactApplicationContext()).markThreadsRead(ids));
+        } catch (Exception e) {
+            promise.reject("MARK_READ_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void markReadUpTo(double threadId, String messageId, Promise promise) {
+        try {
+            promise.resolve(UnreadCounter.getInstance(getReactApplicationContext())
+                    .markReadUpTo((long) threadId, Long.parseLong(messageId)));
+        } catch (Exception e) {
+            promise.reject("MARK_READ_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void deleteMessages(ReadableArray ids, Promise promise) {
+        try {
+            List<Long> messageIds = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                messageIds.add(Long.parseLong(ids.getString(i)));
+            }
+            promise.resolve((double) SmsPurger.getInstance(getReactApplicationContext()).deleteMessages(messageIds));
+        } catch (Exception e) {
+            promise.reject("DELETE_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void deleteThread(double threadId, Promise promise) {
+        try {
+            promise.resolve((double) SmsPurger.getInstance(getReactApplicationContext()).deleteThread((long) threadId));
+        } catch (Exception e) {
+            promise.reject("DELETE_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void setRetentionPolicy(boolean enabled, double maxAgeDays, Promise promise) {
+        try {
+            SmsPurger purger = SmsPurger.getInstance(getReactApplicationContext());
+            purger.setRetentionPolicy(enabled, (int) maxAgeDays);
+            purger.runRetentionIfDue();
+            promise.resolve(null);
+        } catch (Exception e) {
+            promise.reject("RETENTION_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void getRetentionPolicy(Promise promise) {
+        try {
+            SmsPurger purger = SmsPurger.getInstance(getReactApplicationContext());
+            WritableMap policy = Arguments.createMap();
+            policy.putBoolean("enabled", purger.isRetentionEnabled());
+            policy.putInt("maxAgeDays", purger.getRetentionMaxAgeDays());
+            policy.putDouble("lastRunAt", purger.getLastRetentionRunAt());
+            promise.resolve(policy);
+        } catch (Exception e) {
+            promise.reject("RETENTION_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void runRetention(Promise promise) {
+        try {
+            promise.resolve((double) SmsPurger.getInstance(getReactApplicationContext()).runRetention());
+        } catch (Exception e) {
+            promise.reject("RETENTION_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void exportArchive(String path, Promise promise) {
+        try {
+            promise.resolve((double) SmsArchiver.getInstance(getReactApplicationContext()).exportArchive(path));
+        } catch (Exception e) {
+            promise.reject("ARCHIVE_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void importArchive(String path, Promise promise) {
+        try {
+            // The provider silently drops writes from anything but the default SMS app
+            if (!checkDefaultSmsApp()) {
+                promise.reject("NOT_DEFAULT_SMS_APP", "Restoring messages requires being the default SMS app");
+                return;
+            }
+            promise.resolve((double) SmsArchiver.getInstance(getReactApplicationContext()).importArchive(path));
+        } catch (Exception e) {
+            promise.reject("ARCHIVE_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
     public void getUnreadCount(Promise promise) {
         try {
-            ContentResolver contentResolver = getReactApplicationContext().getContentResolver();
-            Uri uri = Uri.parse("content://sms/inbox");
-            String selection = "read = 0";
-            
-            Cursor cursor = contentResolver.query(uri, new String[]{"COUNT(*) as count"}, selection, null, null);
-            int unreadCount = 0;
-            
-            if (cursor != null) {
-                if (cursor.moveToFirst()) {
-                    unreadCount = cursor.getInt(0);
-                }
-                cursor.close();
+            promise.resolve(UnreadCounter.getInstance(getReactApplicationContext()).getTotal());
+        } catch (Exception e) {
+            promise.reject("UNREAD_COUNT_ERROR", e.getMessage());
+        }
+    }
+
+    @Override
+    public void getUnreadCounts(Promise promise) {
+        try {
+            WritableMap counts = Arguments.createMap();
+            for (Map.Entry<Long, Integer> entry : UnreadCounter.getInstance(getReactApplicationContext()).getCounts().entrySet()) {
+                counts.putInt(String.valueOf(entry.getKey()), entry.getValue());
             }
-            
-            promise.resolve(unreadCount);
+            promise.resolve(counts);
         } catch (Exception e) {
             promise.reject("UNREAD_COUNT_ERROR", e.getMessage());
         }
     }
     
-    @ReactMethod
+    @Override
     public void isDefaultSmsApp(Promise promise) {
         try {
-            String packageName = getReactApplicationContext().getPackageName();
-            boolean isDefault = false;
-            
-            // Check using RoleManager for Android 11+
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
-                RoleManager roleManager = (RoleManager) getReactApplicationContext().getSystemService(getReactApplicationContext().ROLE_SERVICE);
-                if (roleManager != null) {
-                    isDefault = roleManager.isRoleHeld(RoleManager.ROLE_SMS);
-                }
-            } else {
-                // Fallback for older versions
-                String defaultSmsPackage = Telephony.Sms.getDefaultSmsPackage(getReactApplicationContext());
-                isDefault = packageName.equals(defaultSmsPackage);
-            }
-            
-            android.util.Log.d("SmsModule", "Package: " + packageName + ", Is default: " + isDefault);
-            promise.resolve(isDefault);
+            promise.resolve(checkDefaultSmsApp());
         } catch (Exception e) {
             promise.reject("DEFAULT_SMS_CHECK_ERROR", e.getMessage());
         }
     }
+
+    @Override
+    public double getUnreadCountSync() {
+        return UnreadCounter.getInstance(getReactApplicationContext()).getCachedTotal();
+    }
+
+    @Override
+    public boolean isDefaultSmsAppSync() {
+        return checkDefaultSmsApp();
+    }
+
+    private boolean checkDefaultSmsApp() {
+        String packageName = getReactApplicationContext().getPackageName();
+        boolean isDefault = false;
+
+        // Check using RoleManager for Android 11+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            RoleManager roleManager = (RoleManager) getReactApplicationContext().getSystemService(getReactApplicationContext().ROLE_SERVICE);
+            if (roleManager != null) {
+                isDefault = roleManager.isRoleHeld(RoleManager.ROLE_SMS);
+            }
+        } else {
+            // Fallback for older versions
+            String defaultSmsPackage = Telephony.Sms.getDefaultSmsPackage(getReactApplicationContext());
+            isDefault = packageName.equals(defaultSmsPackage);
+        }
+        return isDefault;
+    }
     
-    @ReactMethod
+    @Override
     public void requestDefaultSmsApp(Promise promise) {
         try {
             String packageName = getReactApplicationContext().getPackageName();
@@ -203,7 +946,7 @@ public class SmsModule extends ReactContextBaseJavaModule {
         }
     }
     
-    @ReactMethod
+    @Override
     public void openSmsAppSettings(Promise promise) {
         try {
             if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.KITKAT) {
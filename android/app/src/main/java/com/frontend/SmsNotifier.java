@@ -0,0 +1,207 @@
+package com.frontend;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.Person;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+// Aggregates incoming messages into one MessagingStyle notification per conversation. The first
+// message of a burst alerts immediately; anything else arriving within BURST_WINDOW_MS is folded into
+// a single silent update at the end of the window. Updates across all conversations are spaced at
+// least MIN_UPDATE_INTERVAL_MS apart to stay under the platform's per-app notification rate limit.
+public class SmsNotifier {
+
+    private static final String CHANNEL_ID = "sms_notifications";
+    private static final long BURST_WINDOW_MS = 1000;
+    private static final long MIN_UPDATE_INTERVAL_MS = 250;
+    private static final int MAX_LINES = 6;
+
+    private static SmsNotifier instance;
+
+    private final Context context;
+    private final NotificationManager notificationManager;
+    private final Handler handler;
+    private final Person self;
+
+    // Only touched on the notifier thread
+    private final Map<Long, Conversation> conversations = new HashMap<>();
+    private boolean channelCreated;
+    private long lastUpdateAt = -MIN_UPDATE_INTERVAL_MS;
+
+    private static class Conversation {
+        final long threadId;
+        final String sender;
+        final Deque<IncomingSms> recent = new ArrayDeque<>(MAX_LINES);
+        int unseen;
+        long lastPostedAt = -BURST_WINDOW_MS;
+        boolean updateScheduled;
+        boolean alertPending;
+
+        Conversation(long threadId, String sender) {
+            this.threadId = threadId;
+            this.sender = sender;
+        }
+    }
+
+    public static synchronized SmsNotifier getInstance(Context context) {
+        if (instance == null) {
+            instance = new SmsNotifier(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private SmsNotifier(Context context) {
+        this.context = context;
+        this.notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        HandlerThread thread = new HandlerThread("SmsNotifier");
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+        this.self = new Person.Builder().setName("Me").build();
+    }
+
+    public void notifyIncoming(IncomingSms sms) {
+        handler.post(() -> enqueue(sms));
+    }
+
+    // Called when the user opens or reads a conversation
+    public void cancel(long threadId) {
+        handler.post(() -> {
+            Conversation conversation = conversations.remove(threadId);
+            if (conversation != null) {
+                notificationManager.cancel(notificationId(conversation));
+            }
+        });
+    }
+
+    private void enqueue(IncomingSms sms) {
+        long key = sms.threadId > 0 ? sms.threadId : sms.sender.hashCode();
+        Conversation conversation = conversations.get(key);
+        if (conversation == null) {
+            conversation = new Conversation(sms.threadId, sms.sender);
+            conversations.put(key, conversation);
+        }
+        if (conversation.recent.size() == MAX_LINES) {
+            conversation.recent.removeFirst();
+        }
+        conversation.recent.addLast(sms);
+        conversation.unseen++;
+
+        if (conversation.updateScheduled) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        conversation.alertPending = now - conversation.lastPostedAt >= BURST_WINDOW_MS;
+        long dueAt = conversation.alertPending ? now : conversation.lastPostedAt + BURST_WINDOW_MS;
+        schedule(conversation, dueAt);
+    }
+
+    private void schedule(Conversation conversation, long dueAt) {
+        conversation.updateScheduled = true;
+        long at = Math.max(dueAt, lastUpdateAt + MIN_UPDATE_INTERVAL_MS);
+        // Reserve the slot so the next conversation is spaced after this one
+        lastUpdateAt = Math.max(at, lastUpdateAt);
+        long delay = Math.max(0, at - SystemClock.elapsedRealtime());
+        handler.postDelayed(() -> post(conversation), delay);
+    }
+
+    private void post(Conversation conversation) {
+        conversation.updateScheduled = false;
+        if (conversations.get(conversation.threadId > 0 ? conversation.threadId : conversation.sender.hashCode()) != conversation) {
+            return; // cancelled while waiting
+        }
+        long started = SmsPerfStats.start();
+        try {
+            ensureChannel();
+            notificationManager.notify(notificationId(conversation), build(conversation));
+            conversation.lastPostedAt = SystemClock.elapsedRealtime();
+        } catch (Exception e) {
+            android.util.Log.e("SmsNotifier", "Error showing notification", e);
+        } finally {
+            SmsPerfStats.record(SmsPerfStats.OP_NOTIFY, started);
+        }
+    }
+
+    private Notification build(Conversation conversation) {
+        Person sender = new Person.Builder()
+                .setName(conversation.sender)
+                .setKey(conversation.sender)
+                .build();
+
+        NotificationCompat.MessagingStyle style = new NotificationCompat.MessagingStyle(self)
+                .setConversationTitle(conversation.unseen > 1 ? conversation.unseen + " new messages" : null);
+        for (IncomingSms sms : conversation.recent) {
+            style.addMessage(sms.body, sms.timestamp, sender);
+        }
+
+        IncomingSms latest = conversation.recent.peekLast();
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+            .setSmallIcon(android.R.drawable.ic_dialog_email)
+            .setContentTitle(conversation.sender)
+            .setContentText(latest != null ? latest.body : "")
+            .setStyle(style)
+            .setCategory(NotificationCompat.CATEGORY_MESSAGE)
+            .setPriority(NotificationCompat.PRIORITY_HIGH)
+            .setNumber(conversation.unseen)
+            .setAutoCancel(true)
+            .setContentIntent(contentIntent(conversation))
+            .setOnlyAlertOnce(!conversation.alertPending);
+
+        if (conversation.alertPending) {
+            builder.setVibrate(new long[]{0, 500, 200, 500})
+                .setDefaults(Notification.DEFAULT_SOUND);
+        } else {
+            builder.setSilent(true);
+        }
+        conversation.alertPending = false;
+        return builder.build();
+    }
+
+    private PendingIntent contentIntent(Conversation conversation) {
+        Intent intent = new Intent(context, MainActivity.class);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        intent.putExtra("sender", conversation.sender);
+        intent.putExtra("threadId", conversation.threadId);
+
+        return PendingIntent.getActivity(
+            context,
+            notificationId(conversation),
+            intent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+    }
+
+    private void ensureChannel() {
+        if (channelCreated) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(
+                CHANNEL_ID,
+                "SMS Notifications",
+                NotificationManager.IMPORTANCE_HIGH
+            );
+            channel.setDescription("Notifications for incoming SMS messages");
+            channel.enableVibration(true);
+            channel.setShowBadge(true);
+            notificationManager.createNotificationChannel(channel);
+        }
+        channelCreated = true;
+    }
+
+    private static int notificationId(Conversation conversation) {
+        return conversation.threadId > 0 ? (int) conversation.threadId : conversation.sender.hashCode();
+    }
+}
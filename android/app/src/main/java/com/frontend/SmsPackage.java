@@ -1,25 +1,40 @@
 package com.frontend;
 
-import com.facebook.react.ReactPackage;
+import androidx.annotation.Nullable;
+
+import com.facebook.react.BaseReactPackage;
 import com.facebook.react.bridge.NativeModule;
 import com.facebook.react.bridge.ReactApplicationContext;
-import com.facebook.react.uimanager.ViewManager;
+import com.facebook.react.module.model.ReactModuleInfo;
+import com.facebook.react.module.model.ReactModuleInfoProvider;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
-public class SmsPackage implements ReactPackage {
+public class SmsPackage extends BaseReactPackage {
 
+    @Nullable
     @Override
-    public List<ViewManager> createViewManagers(ReactApplicationContext reactContext) {
-        return Collections.emptyList();
+    public NativeModule getModule(String name, ReactApplicationContext reactContext) {
+        if (SmsModule.NAME.equals(name)) {
+            return new SmsModule(reactContext);
+        }
+        return null;
     }
 
     @Override
-    public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
-        List<NativeModule> modules = new ArrayList<>();
-        modules.add(new SmsModule(reactContext));
-        return modules;
+    public ReactModuleInfoProvider getReactModuleInfoProvider() {
+        return () -> {
+            Map<String, ReactModuleInfo> modules = new HashMap<>();
+            modules.put(SmsModule.NAME, new ReactModuleInfo(
+                    SmsModule.NAME,
+                    SmsModule.class.getName(),
+                    false, // canOverrideExistingModule
+                    false, // needsEagerInit
+                    false, // isCxxModule
+                    BuildConfig.IS_NEW_ARCHITECTURE_ENABLED // isTurboModule
+            ));
+            return modules;
+        };
     }
-}
\ No newline at end of file
+}
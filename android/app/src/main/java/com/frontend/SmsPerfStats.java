@@ -0,0 +1,212 @@
+package com.frontend;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Latency histograms and counters for the native SMS paths. Recording is off unless enabled; while
+// off, start() returns 0 and record()/increment() return at once, so an instrumented path pays one
+// volatile read. Histograms are fixed power-of-two microsecond buckets updated with atomic adds,
+// so recording never allocates or takes a lock. Exposed to JS through getPerfStats and to
+// `adb shell dumpsys activity top` through MainActivity.dump.
+public final class SmsPerfStats {
+
+    public static final int OP_QUERY = 0;
+    public static final int OP_SERIALIZE = 1;
+    public static final int OP_INSERT = 2;
+    public static final int OP_THREAD_LOOKUP = 3;
+    public static final int OP_NOTIFY = 4;
+    // Measured in JS, from ChatList mounting to the first conversations shown from each source
+    public static final int OP_FIRST_RENDER_SNAPSHOT = 5;
+    public static final int OP_FIRST_RENDER_PROVIDER = 6;
+    static final String[] OP_NAMES = {"query", "serialize", "insert", "threadLookup", "notify", "firstRenderSnapshot", "firstRenderProvider"};
+
+    public static final int COUNTER_INGESTED = 0;
+    public static final int COUNTER_SENT = 1;
+    public static final int COUNTER_DELIVERED = 2;
+    public static final int COUNTER_SEND_FAILED = 3;
+    static final String[] COUNTER_NAMES = {"ingested", "sent", "delivered", "sendFailed"};
+
+    private static final String PREFS_NAME = "sms_perf";
+    private static final String KEY_ENABLED = "enabled";
+
+    // Bucket i counts samples below 2^i microseconds; the last bucket is open-ended (8.4 s and up)
+    private static final int BUCKETS = 24;
+
+    private static volatile boolean enabled;
+    private static volatile long sinceElapsed = SystemClock.elapsedRealtime();
+    private static final AtomicLongArray buckets = new AtomicLongArray(OP_NAMES.length * BUCKETS);
+    private static final AtomicLongArray sampleCounts = new AtomicLongArray(OP_NAMES.length);
+    private static final AtomicLongArray totalMicros = new AtomicLongArray(OP_NAMES.length);
+    private static final AtomicLongArray maxMicros = new AtomicLongArray(OP_NAMES.length);
+    private static final AtomicLongArray counters = new AtomicLongArray(COUNTER_NAMES.length);
+
+    public static class Histogram {
+        public String name;
+        public long count;
+        public double meanMs;
+        public double p50Ms;
+        public double p95Ms;
+        public double p99Ms;
+        public double maxMs;
+    }
+
+    public static class Snapshot {
+        public boolean enabled;
+        public long sinceMs;
+        public Histogram[] histograms;
+        public long[] counters;
+        public int ingestQueueDepth;
+        public long ingestMaxQueueDepth;
+        public int sendQueueDepth;
+    }
+
+    private SmsPerfStats() {
+    }
+
+    // Restores the persisted switch; called once from MainApplication
+    public static void init(Context context) {
+        enabled = prefs(context).getBoolean(KEY_ENABLED, false);
+    }
+
+    public static void setEnabled(Context context, boolean value) {
+        if (value && !enabled) {
+            reset();
+        }
+        enabled = value;
+        prefs(context).edit().putBoolean(KEY_ENABLED, value).apply();
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public static void record(int op, long startNanos) {
+        if (startNanos == 0 || !enabled) {
+            return;
+        }
+        recordMicros(op, Math.max(0, (System.nanoTime() - startNanos) / 1000));
+    }
+
+    // For durations measured elsewhere
+    public static void recordMillis(int op, long millis) {
+        if (enabled) {
+            recordMicros(op, Math.max(0, millis) * 1000);
+        }
+    }
+
+    private static void recordMicros(int op, long micros) {
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(op * BUCKETS + bucket);
+        sampleCounts.incrementAndGet(op);
+        totalMicros.addAndGet(op, micros);
+        long max;
+        do {
+            max = maxMicros.get(op);
+        } while (micros > max && !maxMicros.compareAndSet(op, max, micros));
+    }
+
+    public static void increment(int counter, long delta) {
+        if (enabled) {
+            counters.addAndGet(counter, delta);
+        }
+    }
+
+    public static void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        for (int op = 0; op < OP_NAMES.length; op++) {
+            sampleCounts.set(op, 0);
+            totalMicros.set(op, 0);
+            maxMicros.set(op, 0);
+        }
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+        sinceElapsed = SystemClock.elapsedRealtime();
+    }
+
+    // Percentiles are the upper bound of the bucket holding that rank, so they overstate by at
+    // most 2x; the mean and max are exact
+    public static Snapshot snapshot(Context context) {
+        Snapshot snapshot = new Snapshot();
+        snapshot.enabled = enabled;
+        snapshot.sinceMs = SystemClock.elapsedRealtime() - sinceElapsed;
+        snapshot.histograms = new Histogram[OP_NAMES.length];
+        for (int op = 0; op < OP_NAMES.length; op++) {
+            long[] opBuckets = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                opBuckets[i] = buckets.get(op * BUCKETS + i);
+                count += opBuckets[i];
+            }
+            Histogram histogram = new Histogram();
+            histogram.name = OP_NAMES[op];
+            histogram.count = count;
+            histogram.meanMs = count > 0 ? totalMicros.get(op) / 1000.0 / sampleCounts.get(op) : 0;
+            histogram.maxMs = maxMicros.get(op) / 1000.0;
+            histogram.p50Ms = percentile(opBuckets, count, 0.50, histogram.maxMs);
+            histogram.p95Ms = percentile(opBuckets, count, 0.95, histogram.maxMs);
+            histogram.p99Ms = percentile(opBuckets, count, 0.99, histogram.maxMs);
+            snapshot.histograms[op] = histogram;
+        }
+        snapshot.counters = new long[COUNTER_NAMES.length];
+        for (int i = 0; i < COUNTER_NAMES.length; i++) {
+            snapshot.counters[i] = counters.get(i);
+        }
+
+        SmsIngestPipeline.Stats ingest = SmsIngestPipeline.getInstance(context).getStats();
+        snapshot.ingestQueueDepth = ingest.queueDepth;
+        snapshot.ingestMaxQueueDepth = ingest.maxQueueDepth;
+        snapshot.sendQueueDepth = SmsSendQueue.getInstance(context).getPendingCount();
+        return snapshot;
+    }
+
+    public static void dump(Context context, PrintWriter writer) {
+        Snapshot snapshot = snapshot(context);
+        writer.println("SMS perf stats (" + (snapshot.enabled ? "enabled" : "disabled") + ", window "
+                + snapshot.sinceMs / 1000 + "s):");
+        writer.println(String.format(Locale.US, "  %-13s %8s %9s %9s %9s %9s %9s", "op", "count", "mean ms", "p50 ms", "p95 ms",
+                "p99 ms", "max ms"));
+        for (Histogram histogram : snapshot.histograms) {
+            writer.println(String.format(Locale.US, "  %-13s %8d %9.2f %9.2f %9.2f %9.2f %9.2f", histogram.name, histogram.count,
+                    histogram.meanMs, histogram.p50Ms, histogram.p95Ms, histogram.p99Ms, histogram.maxMs));
+        }
+        writer.println("  counters:");
+        for (int i = 0; i < COUNTER_NAMES.length; i++) {
+            writer.println("    " + COUNTER_NAMES[i] + "=" + snapshot.counters[i]);
+        }
+        writer.println("  queues:");
+        writer.println("    ingest=" + snapshot.ingestQueueDepth + " (max " + snapshot.ingestMaxQueueDepth + ")");
+        writer.println("    send=" + snapshot.sendQueueDepth);
+        writer.flush();
+    }
+
+    private static double percentile(long[] opBuckets, long count, double quantile, double maxMs) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += opBuckets[i];
+            if (seen >= rank) {
+                return i == BUCKETS - 1 ? maxMs : Math.min(maxMs, (1L << i) / 1000.0);
+            }
+        }
+        return maxMs;
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
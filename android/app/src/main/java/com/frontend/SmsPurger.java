@@ -0,0 +1,339 @@
+package com.frontend;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.provider.Telephony;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Background deletes. Every job removes at most CHUNK_SIZE rows per provider call and yields the
+// worker thread between chunks, so a large purge never holds the telephony database lock for
+// long. Jobs run one at a time and report progress after every chunk. The retention job deletes
+// received messages that SmsClassifier filed as OTPs once they are older than the configured age;
+// candidates come from the category store's index, so personal history is never scanned.
+// The provider silently ignores deletes from any app but the default SMS app, so jobs fail up
+// front without it, and derived stores only drop the rows a delete actually removed.
+public class SmsPurger {
+
+    public static final int KIND_MESSAGES = 0;
+    public static final int KIND_THREAD = 1;
+    public static final int KIND_RETENTION = 2;
+
+    private static final int CHUNK_SIZE = 200;
+    private static final long CHUNK_PAUSE_MS = 50;
+
+    private static final String PREFS_NAME = "sms_retention";
+    private static final String PREF_ENABLED = "enabled";
+    private static final String PREF_MAX_AGE_DAYS = "max_age_days";
+    private static final String PREF_LAST_RUN_AT = "last_run_at";
+    private static final int DEFAULT_MAX_AGE_DAYS = 30;
+    private static final long RETENTION_INTERVAL_MS = 24 * 60 * 60 * 1000L;
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+    static final String ERROR_NOT_DEFAULT_SMS_APP = "Not the default SMS app";
+
+    private static SmsPurger instance;
+
+    public interface Listener {
+        void onProgress(long jobId, int kind, int purged, boolean done, String error);
+    }
+
+    private abstract static class Job {
+        final long id;
+        final int kind;
+        int purged;
+
+        Job(long id, int kind) {
+            this.id = id;
+            this.kind = kind;
+        }
+
+        // Deletes the next chunk; returns false once there is nothing left to delete
+        abstract boolean step();
+
+        void onFinished() {
+        }
+    }
+
+    private final Context context;
+    private final SharedPreferences preferences;
+    private final Handler handler;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong nextJobId = new AtomicLong(1);
+
+    // Only touched on the purge thread
+    private final ArrayDeque<Job> pending = new ArrayDeque<>();
+    private Job current;
+
+    private final Runnable stepRunnable = this::runStep;
+
+    // Id of the retention job queued or running, 0 when there is none
+    private long retentionJobId;
+
+    public static synchronized SmsPurger getInstance(Context context) {
+        if (instance == null) {
+            instance = new SmsPurger(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private SmsPurger(Context context) {
+        this.context = context;
+        this.preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        HandlerThread thread = new HandlerThread("SmsPurger");
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public long deleteMessages(List<Long> ids) {
+        List<Long> remaining = new ArrayList<>(ids);
+        return submit(new Job(nextJobId.getAndIncrement(), KIND_MESSAGES) {
+            int position;
+
+            @Override
+            boolean step() {
+                int end = Math.min(position + CHUNK_SIZE, remaining.size());
+                purged += deleteIds(remaining.subList(position, end));
+                position = end;
+                return position < remaining.size();
+            }
+        });
+    }
+
+    public long deleteThread(long threadId) {
+        return submit(new Job(nextJobId.getAndIncrement(), KIND_THREAD) {
+            boolean emptied;
+
+            @Override
+            boolean step() {
+                List<Long> ids = new ArrayList<>(CHUNK_SIZE);
+                Cursor cursor = context.getContentResolver().query(SmsRepository.SMS_URI, new String[]{"_id"},
+                        "thread_id = ?", new String[]{String.valueOf(threadId)}, "_id LIMIT " + CHUNK_SIZE);
+                if (cursor != null) {
+                    try {
+                        while (cursor.moveToNext()) {
+                            ids.add(cursor.getLong(0));
+                        }
+                    } finally {
+                        cursor.close();
+                    }
+                }
+                int deleted = deleteIds(ids);
+                purged += deleted;
+                emptied = ids.size() < CHUNK_SIZE && deleted == ids.size();
+                // Stop if the provider refused to delete anything rather than re-reading the same rows
+                return ids.size() == CHUNK_SIZE && deleted > 0;
+            }
+
+            @Override
+            void onFinished() {
+                ThreadIdCache.getInstance(context).invalidateThread(threadId);
+                // A thread the provider only partly emptied keeps the categories of what is left
+                if (emptied) {
+                    SmsCategoryStore.getInstance(context).removeThreadAsync(threadId);
+                }
+                SmsNotifier.getInstance(context).cancel(threadId);
+            }
+        });
+    }
+
+    public void setRetentionPolicy(boolean enabled, int maxAgeDays) {
+        preferences.edit()
+                .putBoolean(PREF_ENABLED, enabled)
+                .putInt(PREF_MAX_AGE_DAYS, Math.max(1, maxAgeDays))
+                .apply();
+    }
+
+    public boolean isRetentionEnabled() {
+        return preferences.getBoolean(PREF_ENABLED, false);
+    }
+
+    public int getRetentionMaxAgeDays() {
+        return preferences.getInt(PREF_MAX_AGE_DAYS, DEFAULT_MAX_AGE_DAYS);
+    }
+
+    public long getLastRetentionRunAt() {
+        return preferences.getLong(PREF_LAST_RUN_AT, 0);
+    }
+
+    // Runs the retention job if it is enabled and hasn't completed in the last day; returns 0 otherwise
+    public synchronized long runRetentionIfDue() {
+        if (!isRetentionEnabled() || System.currentTimeMillis() - getLastRetentionRunAt() < RETENTION_INTERVAL_MS
+                || !isDefaultSmsApp()) {
+            return 0;
+        }
+        return runRetention();
+    }
+
+    // A retention run already queued or running is returned rather than queued twice
+    public synchronized long runRetention() {
+        if (retentionJobId != 0) {
+            return retentionJobId;
+        }
+        long cutoff = System.currentTimeMillis() - getRetentionMaxAgeDays() * DAY_MS;
+        retentionJobId = submit(new Job(nextJobId.getAndIncrement(), KIND_RETENTION) {
+            long lastId;
+
+            @Override
+            boolean step() {
+                List<Long> candidates = SmsCategoryStore.getInstance(context).getOtpIdsBefore(cutoff, lastId, CHUNK_SIZE);
+                if (candidates.isEmpty()) {
+                    return false;
+                }
+                lastId = candidates.get(candidates.size() - 1);
+
+                // The provider has the final say: only received rows that are not locked (locked
+                // messages are ones the user asked to keep)
+                String[] args = new String[candidates.size()];
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = String.valueOf(candidates.get(i));
+                }
+                List<Long> ids = new ArrayList<>(candidates.size());
+                Cursor cursor = context.getContentResolver().query(SmsRepository.SMS_URI, new String[]{"_id"},
+                        "_id IN (" + SmsRepository.placeholders(args.length) + ") AND type = " + Telephony.Sms.MESSAGE_TYPE_INBOX
+                                + " AND locked = 0", args, null);
+                if (cursor != null) {
+                    try {
+                        while (cursor.moveToNext()) {
+                            ids.add(cursor.getLong(0));
+                        }
+                    } finally {
+                        cursor.close();
+                    }
+                }
+                purged += deleteIds(ids);
+                return candidates.size() == CHUNK_SIZE;
+            }
+
+            @Override
+            void onFinished() {
+                preferences.edit().putLong(PREF_LAST_RUN_AT, System.currentTimeMillis()).apply();
+            }
+        });
+        return retentionJobId;
+    }
+
+    private synchronized void onRetentionEnded(long jobId) {
+        if (retentionJobId == jobId) {
+            retentionJobId = 0;
+        }
+    }
+
+    private long submit(Job job) {
+        handler.post(() -> {
+            pending.add(job);
+            if (current == null) {
+                startNext();
+            }
+        });
+        return job.id;
+    }
+
+    private void startNext() {
+        current = pending.poll();
+        if (current != null) {
+            handler.post(stepRunnable);
+        }
+    }
+
+    private void runStep() {
+        Job job = current;
+        boolean more;
+        String error = null;
+        try {
+            if (isDefaultSmsApp()) {
+                more = job.step();
+            } else {
+                error = ERROR_NOT_DEFAULT_SMS_APP;
+                more = false;
+            }
+        } catch (Exception e) {
+            android.util.Log.e("SmsPurger", "Error purging messages", e);
+            error = e.getMessage();
+            more = false;
+        }
+
+        if (more) {
+            notifyProgress(job, false, null);
+            handler.postDelayed(stepRunnable, CHUNK_PAUSE_MS);
+            return;
+        }
+
+        if (error == null) {
+            job.onFinished();
+        }
+        if (job.kind == KIND_RETENTION) {
+            onRetentionEnded(job.id);
+        }
+        if (job.purged > 0) {
+            UnreadCounter.getInstance(context).invalidate();
+            // The snapshot may still show deleted conversations and snippets; the next sync rewrites it
+            ConversationSnapshot.getInstance(context).clear();
+        }
+        notifyProgress(job, true, error);
+        startNext();
+    }
+
+    private int deleteIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String[] args = new String[ids.size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = String.valueOf(ids.get(i));
+        }
+        int deleted = context.getContentResolver().delete(SmsRepository.SMS_URI,
+                "_id IN (" + SmsRepository.placeholders(args.length) + ")", args);
+        if (deleted <= 0) {
+            return 0;
+        }
+
+        List<Long> removed = new ArrayList<>(ids);
+        if (deleted < ids.size()) {
+            // Some rows were kept; only the ones that are gone leave the derived stores
+            Cursor cursor = context.getContentResolver().query(SmsRepository.SMS_URI, new String[]{"_id"},
+                    "_id IN (" + SmsRepository.placeholders(args.length) + ")", args, null);
+            if (cursor == null) {
+                return deleted;
+            }
+            try {
+                while (cursor.moveToNext()) {
+                    removed.remove(Long.valueOf(cursor.getLong(0)));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        SmsSearchIndex.getInstance(context).removeAsync(removed);
+        SmsCategoryStore.getInstance(context).removeAsync(removed);
+        return deleted;
+    }
+
+    private boolean isDefaultSmsApp() {
+        return context.getPackageName().equals(Telephony.Sms.getDefaultSmsPackage(context));
+    }
+
+    private void notifyProgress(Job job, boolean done, String error) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onProgress(job.id, job.kind, job.purged, done, error);
+            } catch (Exception e) {
+                android.util.Log.e("SmsPurger", "Purge progress listener failed", e);
+            }
+        }
+    }
+}
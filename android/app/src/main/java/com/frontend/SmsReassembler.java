@@ -0,0 +1,123 @@
+package com.frontend;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Joins the segments of a concatenated SMS into one logical message before it is stored. The
+// platform reassembles concatenated messages before SMS_DELIVER, so all segments of one intent
+// normally belong to one message; they are grouped by the concatenation reference in the user data
+// header and ordered by sequence number. Nothing is held across broadcasts: a set that is still
+// incomplete is stored with the parts it has, so every broadcast can be finished as soon as it is
+// processed. Stateless and safe to call from any thread.
+public class SmsReassembler {
+
+    private static final int IEI_CONCAT_8BIT = 0x00;
+    private static final int IEI_CONCAT_16BIT = 0x08;
+
+    public static class Segment {
+        final String sender;
+        final String body;
+        final long timestamp;
+        final int ref;
+        final int total;
+        final int seq;
+
+        public Segment(String sender, String body, long timestamp, int[] concat) {
+            this.sender = sender;
+            this.body = body;
+            this.timestamp = timestamp;
+            this.ref = concat != null ? concat[0] : -1;
+            this.total = concat != null ? concat[1] : 1;
+            this.seq = concat != null ? concat[2] : 1;
+        }
+    }
+
+    public static List<IncomingSms> assemble(List<Segment> segments, long receivedAt) {
+        Map<String, List<Segment>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            // A malformed concatenation header cannot be placed in any set, so the segment is
+            // stored on its own
+            String key = isPlaceable(segment) ? segment.sender + "/" + segment.ref : "\u0000" + i;
+            List<Segment> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(key, group);
+            }
+            group.add(segment);
+        }
+
+        List<IncomingSms> messages = new ArrayList<>(groups.size());
+        for (List<Segment> group : groups.values()) {
+            group.sort(Comparator.comparingInt(s -> s.seq));
+            for (int i = group.size() - 1; i > 0; i--) {
+                if (isPlaceable(group.get(i)) && group.get(i).seq == group.get(i - 1).seq) {
+                    group.remove(i);
+                }
+            }
+            Segment first = group.get(0);
+            if (isPlaceable(first) && group.size() < first.total) {
+                android.util.Log.w("SmsReassembler", "Storing incomplete message: " + group.size() + "/" + first.total + " parts");
+            }
+            messages.add(join(group, receivedAt));
+        }
+        return messages;
+    }
+
+    private static boolean isPlaceable(Segment segment) {
+        return segment.ref >= 0 && segment.total >= 1 && segment.seq >= 1 && segment.seq <= segment.total;
+    }
+
+    private static IncomingSms join(List<Segment> segments, long receivedAt) {
+        Segment first = segments.get(0);
+        if (segments.size() == 1) {
+            return new IncomingSms(first.sender, first.body, first.timestamp, receivedAt);
+        }
+        StringBuilder body = new StringBuilder();
+        for (Segment segment : segments) {
+            if (segment.body != null) {
+                body.append(segment.body);
+            }
+        }
+        return new IncomingSms(first.sender, body.toString(), first.timestamp, receivedAt);
+    }
+
+    // Reads the concatenation element {ref, total, seq} from a 3GPP SMS-DELIVER PDU, or null when
+    // the PDU carries none (single-part message, 3GPP2 format, or anything malformed)
+    public static int[] readConcatHeader(byte[] pdu, String format) {
+        if (pdu == null || (format != null && !"3gpp".equals(format))) {
+            return null;
+        }
+        try {
+            int index = 1 + (pdu[0] & 0xff);              // SMSC address
+            int firstOctet = pdu[index++] & 0xff;
+            if ((firstOctet & 0x03) != 0 || (firstOctet & 0x40) == 0) {
+                return null;                              // not SMS-DELIVER, or no user data header
+            }
+            int addressDigits = pdu[index++] & 0xff;
+            index += 1 + (addressDigits + 1) / 2;         // type of address + address
+            index += 1 + 1 + 7 + 1;                       // PID, DCS, SCTS, UDL
+
+            int headerLength = pdu[index++] & 0xff;
+            int headerEnd = index + headerLength;
+            while (index + 1 < headerEnd && headerEnd <= pdu.length) {
+                int iei = pdu[index++] & 0xff;
+                int length = pdu[index++] & 0xff;
+                if (iei == IEI_CONCAT_8BIT && length == 3) {
+                    return new int[]{pdu[index] & 0xff, pdu[index + 1] & 0xff, pdu[index + 2] & 0xff};
+                }
+                if (iei == IEI_CONCAT_16BIT && length == 4) {
+                    int ref = ((pdu[index] & 0xff) << 8) | (pdu[index + 1] & 0xff);
+                    return new int[]{ref, pdu[index + 2] & 0xff, pdu[index + 3] & 0xff};
+                }
+                index += length;
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return null;
+        }
+        return null;
+    }
+}
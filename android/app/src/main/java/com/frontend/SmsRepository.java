@@ -0,0 +1,312 @@
+package com.frontend;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+public class SmsRepository {
+
+    public static final Uri SMS_URI = Uri.parse("content://sms");
+    public static final Uri INBOX_URI = Uri.parse("content://sms/inbox");
+    // "simple" returns the threads table itself: one row per conversation with its cached snippet and counts
+    public static final Uri THREADS_URI = Uri.parse("content://mms-sms/conversations?simple=true");
+    public static final Uri CANONICAL_ADDRESSES_URI = Uri.parse("content://mms-sms/canonical-addresses");
+
+    static final String[] MESSAGE_PROJECTION = {"_id", "thread_id", "address", "body", "date", "type", "read", "status"};
+    static final String[] THREAD_PROJECTION = {"_id", "date", "message_count", "recipient_ids", "snippet"};
+
+    // Longest IN list per provider query, below SQLite's bind-argument limit
+    static final int MAX_IN_ARGS = 500;
+
+    // Newest first, ties broken by the higher thread id, matching the keyset
+    private static final Comparator<ConversationSummary> NEWEST_FIRST = (a, b) -> {
+        if (a.date != b.date) {
+            return a.date > b.date ? -1 : 1;
+        }
+        return Long.compare(b.threadId, a.threadId);
+    };
+
+    private final ContentResolver contentResolver;
+    private final UnreadCounter unreadCounter;
+    private final SmsCategoryStore categoryStore;
+    private final ContactResolver contactResolver;
+
+    public SmsRepository(Context context) {
+        this.contentResolver = context.getContentResolver();
+        this.unreadCounter = UnreadCounter.getInstance(context);
+        this.categoryStore = SmsCategoryStore.getInstance(context);
+        this.contactResolver = ContactResolver.getInstance(context);
+    }
+
+    public static class Page {
+        public final List<SmsRow> rows;
+        public final boolean hasMore;
+
+        Page(List<SmsRow> rows, boolean hasMore) {
+            this.rows = rows;
+            this.hasMore = hasMore;
+        }
+
+        public SmsRow last() {
+            return rows.isEmpty() ? null : rows.get(rows.size() - 1);
+        }
+    }
+
+    // Newest-first page of one conversation. The page boundary is the (date, _id) of the oldest
+    // row already shown, so the provider only ever reads limit + 1 rows regardless of thread size.
+    public Page queryThreadPage(long threadId, String address, long beforeDate, long beforeId, int limit) {
+        StringBuilder selection = new StringBuilder();
+        List<String> args = new ArrayList<>();
+
+        if (threadId > 0) {
+            selection.append("thread_id = ?");
+            args.add(String.valueOf(threadId));
+        } else {
+            selection.append("address = ?");
+            args.add(address);
+        }
+
+        if (beforeDate > 0) {
+            selection.append(" AND (date < ? OR (date = ? AND _id < ?))");
+            args.add(String.valueOf(beforeDate));
+            args.add(String.valueOf(beforeDate));
+            args.add(String.valueOf(beforeId > 0 ? beforeId : Long.MAX_VALUE));
+        }
+
+        // Fetch one extra row to know whether an older page exists
+        String sortOrder = "date DESC, _id DESC LIMIT " + (limit + 1);
+        List<SmsRow> rows = new ArrayList<>(limit);
+        boolean hasMore = false;
+
+        long started = SmsPerfStats.start();
+        Cursor cursor = contentResolver.query(SMS_URI, MESSAGE_PROJECTION, selection.toString(),
+                args.toArray(new String[0]), sortOrder);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    if (rows.size() == limit) {
+                        hasMore = true;
+                        break;
+                    }
+                    rows.add(SmsRow.fromCursor(cursor));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        SmsPerfStats.record(SmsPerfStats.OP_QUERY, started);
+
+        return new Page(rows, hasMore);
+    }
+
+    public static class SummaryPage {
+        public final List<ConversationSummary> summaries;
+        public final boolean hasMore;
+
+        SummaryPage(List<ConversationSummary> summaries, boolean hasMore) {
+            this.summaries = summaries;
+            this.hasMore = hasMore;
+        }
+
+        public ConversationSummary last() {
+            return summaries.isEmpty() ? null : summaries.get(summaries.size() - 1);
+        }
+    }
+
+    // Newest-first page of conversations. The threads table already carries the latest date,
+    // snippet and message count per thread and unread counts are kept by UnreadCounter, so a
+    // page costs three small queries (threads, their addresses, one batched contact lookup for
+    // uncached addresses) no matter how many messages or conversations there are.
+    // A category (SmsClassifier.CATEGORY_*, or -1 for all) restricts the page to threads from the
+    // category store's index.
+    public SummaryPage queryConversationSummaries(long beforeDate, long beforeThreadId, int limit, int category) {
+        long beforeId = beforeThreadId > 0 ? beforeThreadId : Long.MAX_VALUE;
+        String selection = "message_count > 0";
+        String[] selectionArgs = null;
+        if (beforeDate > 0) {
+            selection += " AND (date < ? OR (date = ? AND _id < ?))";
+            selectionArgs = new String[]{String.valueOf(beforeDate), String.valueOf(beforeDate), String.valueOf(beforeId)};
+        }
+
+        // The simple conversation listing is not bound to honour the sort order, or the LIMIT
+        // appended to it, so the page is also ordered, keyset-filtered and cut in Java. The
+        // queue holds the best limit + 1 rows seen, with the one to evict on top.
+        PriorityQueue<ConversationSummary> best = new PriorityQueue<>(limit + 1, Collections.reverseOrder(NEWEST_FIRST));
+        Map<Long, String> recipientIdsByThread = new HashMap<>();
+
+        long started = SmsPerfStats.start();
+        if (category >= 0) {
+            List<Long> threadIds = categoryStore.getThreadIds(category);
+            if (threadIds.isEmpty()) {
+                return new SummaryPage(new ArrayList<>(), false);
+            }
+            // Thread ids are longs from our own table, so they are inlined rather than bound; the
+            // list is still split so no single statement grows with the category
+            for (int start = 0; start < threadIds.size(); start += MAX_IN_ARGS) {
+                StringBuilder ids = new StringBuilder();
+                for (Long threadId : threadIds.subList(start, Math.min(threadIds.size(), start + MAX_IN_ARGS))) {
+                    if (ids.length() > 0) {
+                        ids.append(',');
+                    }
+                    ids.append(threadId);
+                }
+                collectThreads(selection + " AND _id IN (" + ids + ")", selectionArgs, beforeDate, beforeId, limit, best,
+                        recipientIdsByThread);
+            }
+        } else {
+            collectThreads(selection, selectionArgs, beforeDate, beforeId, limit, best, recipientIdsByThread);
+        }
+        SmsPerfStats.record(SmsPerfStats.OP_QUERY, started);
+
+        List<ConversationSummary> summaries = new ArrayList<>(best);
+        Collections.sort(summaries, NEWEST_FIRST);
+        boolean hasMore = summaries.size() > limit;
+        if (hasMore) {
+            recipientIdsByThread.remove(summaries.remove(summaries.size() - 1).threadId);
+        }
+
+        if (summaries.isEmpty()) {
+            return new SummaryPage(summaries, false);
+        }
+
+        Map<Long, String> addresses = queryCanonicalAddresses(recipientIdsByThread.values());
+        Map<Long, Integer> categories = categoryStore.getThreadCategories(new ArrayList<>(recipientIdsByThread.keySet()));
+        for (ConversationSummary summary : summaries) {
+            summary.address = firstAddress(recipientIdsByThread.get(summary.threadId), addresses);
+            summary.unreadCount = unreadCounter.getCount(summary.threadId);
+            Integer threadCategory = categories.get(summary.threadId);
+            summary.category = threadCategory != null ? threadCategory : SmsClassifier.CATEGORY_PERSONAL;
+        }
+
+        List<String> pageAddresses = new ArrayList<>(summaries.size());
+        for (ConversationSummary summary : summaries) {
+            pageAddresses.add(summary.address);
+        }
+        Map<String, ContactResolver.Contact> contacts = contactResolver.resolve(pageAddresses);
+        for (ConversationSummary summary : summaries) {
+            ContactResolver.Contact contact = contacts.get(summary.address);
+            if (contact != null) {
+                summary.name = contact.name;
+                summary.photoUri = contact.photoUri;
+            }
+        }
+
+        return new SummaryPage(summaries, hasMore);
+    }
+
+    // Reads one threads query into the bounded queue. While the cursor comes back in page order
+    // the read stops at the first row that cannot make the page; otherwise every row is weighed.
+    private void collectThreads(String selection, String[] selectionArgs, long beforeDate, long beforeId, int limit,
+            PriorityQueue<ConversationSummary> best, Map<Long, String> recipientIdsByThread) {
+        Cursor cursor = contentResolver.query(THREADS_URI, THREAD_PROJECTION, selection, selectionArgs,
+                "date DESC, _id DESC LIMIT " + (limit + 1));
+        if (cursor == null) {
+            return;
+        }
+        try {
+            ConversationSummary previous = null;
+            boolean ordered = true;
+            while (cursor.moveToNext()) {
+                ConversationSummary summary = new ConversationSummary();
+                summary.threadId = cursor.getLong(0);
+                summary.date = cursor.getLong(1);
+                summary.messageCount = cursor.getInt(2);
+                if (summary.messageCount <= 0 || (beforeDate > 0
+                        && (summary.date > beforeDate || (summary.date == beforeDate && summary.threadId >= beforeId)))) {
+                    continue;
+                }
+                if (previous != null && NEWEST_FIRST.compare(previous, summary) > 0) {
+                    ordered = false;
+                }
+                previous = summary;
+
+                if (best.size() > limit && NEWEST_FIRST.compare(summary, best.peek()) >= 0) {
+                    if (ordered) {
+                        break;
+                    }
+                    continue;
+                }
+                summary.snippet = cursor.getString(4);
+                recipientIdsByThread.put(summary.threadId, cursor.getString(3));
+                best.add(summary);
+                if (best.size() > limit + 1) {
+                    recipientIdsByThread.remove(best.poll().threadId);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private Map<Long, String> queryCanonicalAddresses(Iterable<String> recipientIdLists) {
+        List<String> ids = new ArrayList<>();
+        for (String recipientIds : recipientIdLists) {
+            if (recipientIds == null) {
+                continue;
+            }
+            for (String id : recipientIds.trim().split(" ")) {
+                if (!id.isEmpty()) {
+                    ids.add(id);
+                }
+            }
+        }
+
+        Map<Long, String> addresses = new HashMap<>();
+        if (ids.isEmpty()) {
+            return addresses;
+        }
+
+        for (int start = 0; start < ids.size(); start += MAX_IN_ARGS) {
+            List<String> chunk = ids.subList(start, Math.min(ids.size(), start + MAX_IN_ARGS));
+            Cursor cursor = contentResolver.query(CANONICAL_ADDRESSES_URI, new String[]{"_id", "address"},
+                    "_id IN (" + placeholders(chunk.size()) + ")", chunk.toArray(new String[0]), null);
+            if (cursor == null) {
+                continue;
+            }
+            try {
+                while (cursor.moveToNext()) {
+                    addresses.put(cursor.getLong(0), cursor.getString(1));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return addresses;
+    }
+
+    private static String firstAddress(String recipientIds, Map<Long, String> addresses) {
+        if (recipientIds == null) {
+            return "";
+        }
+        for (String id : recipientIds.trim().split(" ")) {
+            if (id.isEmpty()) {
+                continue;
+            }
+            String address = addresses.get(Long.parseLong(id));
+            if (address != null) {
+                return address;
+            }
+        }
+        return "";
+    }
+
+    static String placeholders(int count) {
+        StringBuilder builder = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append('?');
+        }
+        return builder.toString();
+    }
+}
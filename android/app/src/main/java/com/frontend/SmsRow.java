@@ -0,0 +1,38 @@
+package com.frontend;
+
+import android.database.Cursor;
+
+public class SmsRow {
+
+    // Column order of SmsRepository.MESSAGE_PROJECTION, so rows can be read without name lookups
+    static final int COL_ID = 0;
+    static final int COL_THREAD_ID = 1;
+    static final int COL_ADDRESS = 2;
+    static final int COL_BODY = 3;
+    static final int COL_DATE = 4;
+    static final int COL_TYPE = 5;
+    static final int COL_READ = 6;
+    static final int COL_STATUS = 7;
+
+    public long id;
+    public long threadId;
+    public String address;
+    public String body;
+    public long date;
+    public int type;
+    public int read;
+    public int status;
+
+    public static SmsRow fromCursor(Cursor cursor) {
+        SmsRow row = new SmsRow();
+        row.id = cursor.getLong(COL_ID);
+        row.threadId = cursor.getLong(COL_THREAD_ID);
+        row.address = cursor.getString(COL_ADDRESS);
+        row.body = cursor.getString(COL_BODY);
+        row.date = cursor.getLong(COL_DATE);
+        row.type = cursor.getInt(COL_TYPE);
+        row.read = cursor.getInt(COL_READ);
+        row.status = cursor.isNull(COL_STATUS) ? -1 : cursor.getInt(COL_STATUS);
+        return row;
+    }
+}
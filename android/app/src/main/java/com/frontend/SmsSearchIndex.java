@@ -0,0 +1,239 @@
+package com.frontend;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Full-text index over message bodies kept in NexalertDatabase. Writes go through a single
+// background thread; searches read the index directly and never touch the SMS provider.
+public class SmsSearchIndex {
+
+    static final String STATE_BACKFILL_MARK = "search_backfill_mark";
+    private static final int BACKFILL_CHUNK = 500;
+
+    private static SmsSearchIndex instance;
+
+    private final Context context;
+    private final NexalertDatabase database;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> new Thread(r, "SmsSearchIndex"));
+
+    public static synchronized SmsSearchIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new SmsSearchIndex(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private SmsSearchIndex(Context context) {
+        this.context = context;
+        this.database = NexalertDatabase.getInstance(context);
+    }
+
+    public static class Hit {
+        public long id;
+        public long threadId;
+        public String address;
+        public long date;
+        public String snippet;
+        public int matches;
+    }
+
+    public void indexAsync(long id, long threadId, String address, String body, long date) {
+        writer.execute(() -> {
+            try {
+                SQLiteDatabase db = database.getWritableDatabase();
+                SQLiteStatement statement = compileInsert(db);
+                try {
+                    bindAndInsert(statement, id, threadId, address, body, date);
+                } finally {
+                    statement.close();
+                }
+            } catch (Exception e) {
+                android.util.Log.e("SmsSearchIndex", "Error indexing message", e);
+            }
+        });
+    }
+
+    public void indexAsync(List<SmsRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<SmsRow> copy = new ArrayList<>(rows);
+        writer.execute(() -> {
+            try {
+                SQLiteDatabase db = database.getWritableDatabase();
+                db.beginTransaction();
+                SQLiteStatement statement = compileInsert(db);
+                try {
+                    for (SmsRow row : copy) {
+                        bindAndInsert(statement, row.id, row.threadId, row.address, row.body, row.date);
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    statement.close();
+                    db.endTransaction();
+                }
+            } catch (Exception e) {
+                android.util.Log.e("SmsSearchIndex", "Error indexing messages", e);
+            }
+        });
+    }
+
+    public void removeAsync(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Long> copy = new ArrayList<>(ids);
+        writer.execute(() -> {
+            try {
+                SQLiteDatabase db = database.getWritableDatabase();
+                db.beginTransaction();
+                try {
+                    for (Long id : copy) {
+                        db.execSQL("DELETE FROM message_fts WHERE docid = ?", new Object[]{id});
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            } catch (Exception e) {
+                android.util.Log.e("SmsSearchIndex", "Error removing messages from index", e);
+            }
+        });
+    }
+
+    // Copies provider history into the index in _id order. The mark is only advanced by the
+    // backfill itself, so live inserts above it are simply re-indexed when the backfill reaches them.
+    public void backfillAsync() {
+        writer.execute(() -> {
+            try {
+                backfill();
+            } catch (Exception e) {
+                android.util.Log.e("SmsSearchIndex", "Error backfilling search index", e);
+            }
+        });
+    }
+
+    private void backfill() {
+        ContentResolver contentResolver = context.getContentResolver();
+        SQLiteDatabase db = database.getWritableDatabase();
+        long mark = database.getState(STATE_BACKFILL_MARK, 0);
+        int indexed = 0;
+
+        while (true) {
+            Cursor cursor = contentResolver.query(SmsRepository.SMS_URI, SmsRepository.MESSAGE_PROJECTION,
+                    "_id > ?", new String[]{String.valueOf(mark)}, "_id ASC LIMIT " + BACKFILL_CHUNK);
+            if (cursor == null) {
+                return;
+            }
+
+            int rows = 0;
+            db.beginTransaction();
+            SQLiteStatement statement = compileInsert(db);
+            try {
+                while (cursor.moveToNext()) {
+                    SmsRow row = SmsRow.fromCursor(cursor);
+                    bindAndInsert(statement, row.id, row.threadId, row.address, row.body, row.date);
+                    mark = row.id;
+                    rows++;
+                }
+                database.putState(db, STATE_BACKFILL_MARK, mark);
+                db.setTransactionSuccessful();
+            } finally {
+                statement.close();
+                db.endTransaction();
+                cursor.close();
+            }
+
+            indexed += rows;
+            if (rows < BACKFILL_CHUNK) {
+                break;
+            }
+        }
+
+        if (indexed > 0) {
+            android.util.Log.d("SmsSearchIndex", "Backfilled " + indexed + " messages");
+        }
+    }
+
+    public List<Hit> search(String query, int limit, int offset) {
+        List<Hit> hits = new ArrayList<>();
+        String match = toMatchExpression(query);
+        if (match == null) {
+            return hits;
+        }
+
+        // offsets() yields four integers per matched term occurrence, so its word count / 4 is the
+        // number of occurrences; rank on that, then recency. The page is picked by docid in the
+        // subquery, so snippet() and the outer offsets() only run for the rows returned.
+        String matches = "(length(offsets(message_fts)) - length(replace(offsets(message_fts), ' ', '')) + 1) / 4";
+        String sql = "SELECT docid, thread_id, address, date, "
+                + "snippet(message_fts, '', '', '...', 0, 12), " + matches + " AS matches "
+                + "FROM message_fts WHERE message_fts MATCH ? AND docid IN ("
+                + "SELECT docid FROM message_fts WHERE message_fts MATCH ? "
+                + "ORDER BY " + matches + " DESC, date DESC LIMIT ? OFFSET ?) "
+                + "ORDER BY matches DESC, date DESC";
+
+        Cursor cursor = database.getReadableDatabase().rawQuery(sql,
+                new String[]{match, match, String.valueOf(limit), String.valueOf(offset)});
+        try {
+            while (cursor.moveToNext()) {
+                Hit hit = new Hit();
+                hit.id = cursor.getLong(0);
+                hit.threadId = cursor.getLong(1);
+                hit.address = cursor.getString(2);
+                hit.date = cursor.getLong(3);
+                hit.snippet = cursor.getString(4);
+                hit.matches = cursor.getInt(5);
+                hits.add(hit);
+            }
+        } finally {
+            cursor.close();
+        }
+        return hits;
+    }
+
+    // Every token of the user's input becomes a prefix term; FTS ANDs them together
+    static String toMatchExpression(String query) {
+        if (query == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= query.length(); i++) {
+            char c = i < query.length() ? query.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                token.append(Character.toLowerCase(c));
+            } else if (token.length() > 0) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(token).append('*');
+                token.setLength(0);
+            }
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
+    private static SQLiteStatement compileInsert(SQLiteDatabase db) {
+        return db.compileStatement(
+                "INSERT OR REPLACE INTO message_fts (docid, body, address, thread_id, date) VALUES (?, ?, ?, ?, ?)");
+    }
+
+    private static void bindAndInsert(SQLiteStatement statement, long id, long threadId, String address, String body, long date) {
+        statement.clearBindings();
+        statement.bindLong(1, id);
+        statement.bindString(2, body != null ? body : "");
+        statement.bindString(3, address != null ? address : "");
+        statement.bindLong(4, threadId);
+        statement.bindLong(5, date);
+        statement.executeInsert();
+    }
+}
@@ -0,0 +1,489 @@
+package com.frontend;
+
+import android.app.Activity;
+import android.app.PendingIntent;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.provider.Telephony;
+import android.telephony.SmsManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Durable outbound SMS queue. Messages are written to the outbox table and to content://sms/outbox
+// first, then a single worker thread dispatches them with sendMultipartTextMessage, paced to the
+// configured messages-per-minute. Sent and delivery reports arrive through SmsStatusReceiver and
+// move both rows forward; failed sends are retried with exponential backoff. A retry only resends
+// the parts the radio has not accepted yet, and every dispatch carries a token so late callbacks
+// from an earlier attempt are ignored.
+public class SmsSendQueue {
+
+    public static final int STATE_QUEUED = 0;
+    public static final int STATE_SENDING = 1;
+    public static final int STATE_SENT = 2;
+    public static final int STATE_DELIVERED = 3;
+    public static final int STATE_FAILED = 4;
+
+    static final String ACTION_SMS_SENT = "com.frontend.SMS_SENT";
+    static final String ACTION_SMS_DELIVERED = "com.frontend.SMS_DELIVERED";
+    static final String EXTRA_QUEUE_ID = "queueId";
+    static final String EXTRA_PART = "part";
+    static final String EXTRA_DISPATCH_TOKEN = "dispatchToken";
+
+    private static final String PREFS_NAME = "sms_send_queue";
+    private static final String PREF_MESSAGES_PER_MINUTE = "messages_per_minute";
+    private static final int DEFAULT_MESSAGES_PER_MINUTE = 20;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BASE_BACKOFF_MS = 5000;
+    private static final long MAX_BACKOFF_MS = 10 * 60 * 1000;
+    // A message still marked as sending after this long lost its callbacks to a process death
+    private static final long STALE_SENDING_MS = 2 * 60 * 1000;
+    // Parts tracked individually in parts_sent_mask; longer messages are resent whole
+    private static final int MAX_TRACKED_PARTS = 63;
+
+    private static SmsSendQueue instance;
+
+    public interface Listener {
+        void onStatusChanged(long queueId, String address, int state, long providerId, int errorCode);
+    }
+
+    private final Context context;
+    private final NexalertDatabase database;
+    private final SharedPreferences preferences;
+    private final Handler handler;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Only touched on the queue thread
+    private long nextSendAt;
+    private boolean pumpScheduled;
+
+    private final Runnable pumpRunnable = this::pump;
+
+    public static synchronized SmsSendQueue getInstance(Context context) {
+        if (instance == null) {
+            instance = new SmsSendQueue(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private SmsSendQueue(Context context) {
+        this.context = context;
+        this.database = NexalertDatabase.getInstance(context);
+        this.preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        HandlerThread thread = new HandlerThread("SmsSendQueue");
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+        handler.post(() -> {
+            recoverStaleSends();
+            pump();
+        });
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public void setMessagesPerMinute(int messagesPerMinute) {
+        preferences.edit().putInt(PREF_MESSAGES_PER_MINUTE, Math.max(1, messagesPerMinute)).apply();
+    }
+
+    public int getMessagesPerMinute() {
+        return preferences.getInt(PREF_MESSAGES_PER_MINUTE, DEFAULT_MESSAGES_PER_MINUTE);
+    }
+
+    // Messages waiting for their turn or for the radio to report back
+    public int getPendingCount() {
+        Cursor cursor = database.getReadableDatabase().rawQuery("SELECT COUNT(*) FROM outbox WHERE state IN (?, ?)",
+                new String[]{String.valueOf(STATE_QUEUED), String.valueOf(STATE_SENDING)});
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public long enqueue(String address, String body) {
+        List<String> addresses = new ArrayList<>(1);
+        addresses.add(address);
+        return enqueueAll(addresses, body).get(0);
+    }
+
+    // Writes every message to both outboxes before returning; dispatch happens on the queue thread
+    public List<Long> enqueueAll(List<String> addresses, String body) {
+        long now = System.currentTimeMillis();
+        ThreadIdCache threadIdCache = ThreadIdCache.getInstance(context);
+
+        long[] threadIds = new long[addresses.size()];
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(addresses.size());
+        for (int i = 0; i < addresses.size(); i++) {
+            threadIds[i] = threadIdCache.getOrCreateThreadId(addresses.get(i));
+            ContentValues values = new ContentValues();
+            values.put(Telephony.Sms.ADDRESS, addresses.get(i));
+            values.put(Telephony.Sms.BODY, body);
+            values.put(Telephony.Sms.DATE, now);
+            values.put(Telephony.Sms.READ, 1);
+            values.put(Telephony.Sms.TYPE, Telephony.Sms.MESSAGE_TYPE_OUTBOX);
+            values.put(Telephony.Sms.STATUS, Telephony.Sms.STATUS_NONE);
+            if (threadIds[i] > 0) {
+                values.put(Telephony.Sms.THREAD_ID, threadIds[i]);
+            }
+            operations.add(ContentProviderOperation.newInsert(Telephony.Sms.CONTENT_URI).withValues(values).build());
+        }
+
+        long[] providerIds = new long[addresses.size()];
+        try {
+            ContentProviderResult[] results = context.getContentResolver().applyBatch(Telephony.Sms.CONTENT_URI.getAuthority(), operations);
+            for (int i = 0; i < results.length && i < providerIds.length; i++) {
+                providerIds[i] = results[i].uri != null ? ContentUris.parseId(results[i].uri) : 0;
+            }
+        } catch (Exception e) {
+            // The queue row is what drives sending; the provider mirror is best effort
+            android.util.Log.e("SmsSendQueue", "Error writing provider outbox rows", e);
+        }
+
+        List<Long> queueIds = new ArrayList<>(addresses.size());
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < addresses.size(); i++) {
+                ContentValues values = new ContentValues();
+                values.put("address", addresses.get(i));
+                values.put("body", body);
+                values.put("provider_id", providerIds[i]);
+                values.put("thread_id", threadIds[i]);
+                values.put("state", STATE_QUEUED);
+                values.put("created_at", now);
+                values.put("updated_at", now);
+                queueIds.add(db.insert("outbox", null, values));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        SmsSearchIndex searchIndex = SmsSearchIndex.getInstance(context);
+        for (int i = 0; i < addresses.size(); i++) {
+            if (providerIds[i] > 0) {
+                searchIndex.indexAsync(providerIds[i], threadIds[i], addresses.get(i), body, now);
+            }
+        }
+
+        handler.post(() -> schedulePump(0));
+        return queueIds;
+    }
+
+    public void onSent(long queueId, int part, long dispatchToken, int resultCode) {
+        handler.post(() -> handleSent(queueId, part, dispatchToken, resultCode));
+    }
+
+    public void onDelivered(long queueId, int status) {
+        handler.post(() -> handleDelivered(queueId, status));
+    }
+
+    // Runs on the queue thread. Sends at most one message per call and reschedules itself for the
+    // next pacing slot or the earliest retry.
+    private void pump() {
+        pumpScheduled = false;
+        long now = System.currentTimeMillis();
+        if (now < nextSendAt) {
+            schedulePump(nextSendAt - now);
+            return;
+        }
+
+        Cursor cursor = database.getReadableDatabase().rawQuery("SELECT _id, address, body, next_attempt_at FROM outbox "
+                + "WHERE state = ? ORDER BY next_attempt_at, _id LIMIT 1",
+                new String[]{String.valueOf(STATE_QUEUED)});
+        long queueId;
+        String address;
+        String body;
+        long readyAt;
+        try {
+            if (!cursor.moveToFirst()) {
+                return;
+            }
+            queueId = cursor.getLong(0);
+            address = cursor.getString(1);
+            body = cursor.getString(2);
+            readyAt = cursor.getLong(3);
+        } finally {
+            cursor.close();
+        }
+
+        if (readyAt > now) {
+            schedulePump(readyAt - now);
+            return;
+        }
+
+        dispatch(queueId, address, body);
+        nextSendAt = System.currentTimeMillis() + 60000L / getMessagesPerMinute();
+        schedulePump(nextSendAt - System.currentTimeMillis());
+    }
+
+    private void dispatch(long queueId, String address, String body) {
+        OutboxRow row = loadRow(queueId);
+        if (row == null) {
+            return;
+        }
+        SmsManager smsManager = SmsManager.getDefault();
+        ArrayList<String> parts = smsManager.divideMessage(body);
+
+        // divideMessage is deterministic, so the parts of an earlier attempt line up with these
+        long sentMask = row.partsSentMask;
+        int partsDelivered = row.partsDelivered;
+        if (row.partsTotal != parts.size() || parts.size() > MAX_TRACKED_PARTS) {
+            sentMask = 0;
+            partsDelivered = 0;
+        }
+        long dispatchToken = row.dispatchToken + 1;
+
+        // The platform gives each call its own concatenation reference, so resent parts arrive as
+        // a message of their own
+        ArrayList<String> pendingParts = new ArrayList<>(parts.size());
+        ArrayList<PendingIntent> sentIntents = new ArrayList<>(parts.size());
+        ArrayList<PendingIntent> deliveryIntents = new ArrayList<>(parts.size());
+        for (int i = 0; i < parts.size(); i++) {
+            if ((sentMask & (1L << i)) != 0) {
+                continue;
+            }
+            pendingParts.add(parts.get(i));
+            sentIntents.add(statusIntent(ACTION_SMS_SENT, queueId, i, dispatchToken));
+            deliveryIntents.add(statusIntent(ACTION_SMS_DELIVERED, queueId, i, dispatchToken));
+        }
+
+        ContentValues values = new ContentValues();
+        values.put("state", STATE_SENDING);
+        values.put("parts_total", parts.size());
+        values.put("parts_sent_mask", sentMask);
+        values.put("parts_sent", Long.bitCount(sentMask));
+        values.put("parts_delivered", partsDelivered);
+        values.put("dispatch_token", dispatchToken);
+        values.put("updated_at", System.currentTimeMillis());
+        database.getWritableDatabase().update("outbox", values, "_id = ?", new String[]{String.valueOf(queueId)});
+
+        if (pendingParts.isEmpty()) {
+            // Every part was accepted after the attempt that failed had already been rescheduled
+            row.state = STATE_SENDING;
+            markSent(row, new ContentValues());
+            return;
+        }
+        try {
+            smsManager.sendMultipartTextMessage(address, null, pendingParts, sentIntents, deliveryIntents);
+        } catch (Exception e) {
+            android.util.Log.e("SmsSendQueue", "sendMultipartTextMessage rejected message " + queueId, e);
+            handleSent(queueId, -1, dispatchToken, SmsManager.RESULT_ERROR_GENERIC_FAILURE);
+        }
+    }
+
+    private PendingIntent statusIntent(String action, long queueId, int part, long dispatchToken) {
+        Intent intent = new Intent(action, Uri.parse("nexalert://outbox/" + queueId + "/" + dispatchToken + "/" + part));
+        // Always explicit, to the unexported receiver: the fill-in below can add extras but can
+        // never redirect the broadcast to another component
+        intent.setClass(context, SmsStatusReceiver.class);
+        intent.putExtra(EXTRA_QUEUE_ID, queueId);
+        intent.putExtra(EXTRA_PART, part);
+        intent.putExtra(EXTRA_DISPATCH_TOKEN, dispatchToken);
+        // The platform attaches the status report to a delivery intent as the "pdu" and "format"
+        // fill-in extras, which an immutable PendingIntent would silently drop; sent intents carry
+        // everything they need and stay immutable
+        int flags = PendingIntent.FLAG_UPDATE_CURRENT;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            flags |= ACTION_SMS_DELIVERED.equals(action) ? PendingIntent.FLAG_MUTABLE : PendingIntent.FLAG_IMMUTABLE;
+        }
+        return PendingIntent.getBroadcast(context, 0, intent, flags);
+    }
+
+    private void handleSent(long queueId, int part, long dispatchToken, int resultCode) {
+        OutboxRow row = loadRow(queueId);
+        if (row == null || row.dispatchToken != dispatchToken) {
+            return; // a late callback from an earlier attempt
+        }
+
+        long now = System.currentTimeMillis();
+        ContentValues values = new ContentValues();
+        values.put("updated_at", now);
+
+        if (resultCode == Activity.RESULT_OK) {
+            // Still recorded after a sibling part failed the attempt, so the retry skips this part
+            long bit = part >= 0 && part < MAX_TRACKED_PARTS ? 1L << part : 0;
+            if (part < 0 || (row.partsSentMask & bit) != 0) {
+                return;
+            }
+            int partsSent = row.partsSent + 1;
+            values.put("parts_sent_mask", row.partsSentMask | bit);
+            values.put("parts_sent", partsSent);
+            if (row.state == STATE_SENDING && partsSent >= row.partsTotal) {
+                markSent(row, values);
+            } else {
+                database.getWritableDatabase().update("outbox", values, "_id = ?", new String[]{String.valueOf(queueId)});
+            }
+            return;
+        }
+        if (row.state != STATE_SENDING) {
+            return; // a sibling part already failed the message, or it was finished earlier
+        }
+
+        int attempts = row.attempts + 1;
+        values.put("attempts", attempts);
+        values.put("error_code", resultCode);
+        if (attempts < MAX_ATTEMPTS && resultCode != SmsManager.RESULT_ERROR_NULL_PDU) {
+            long backoff = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << (attempts - 1));
+            values.put("state", STATE_QUEUED);
+            values.put("next_attempt_at", now + backoff);
+            row.state = STATE_QUEUED;
+            schedulePump(backoff);
+        } else {
+            values.put("state", STATE_FAILED);
+            updateProvider(row.providerId, Telephony.Sms.MESSAGE_TYPE_FAILED, Telephony.Sms.STATUS_FAILED);
+            row.state = STATE_FAILED;
+            SmsPerfStats.increment(SmsPerfStats.COUNTER_SEND_FAILED, 1);
+        }
+        row.errorCode = resultCode;
+
+        database.getWritableDatabase().update("outbox", values, "_id = ?", new String[]{String.valueOf(queueId)});
+        notifyListeners(row);
+    }
+
+    private void markSent(OutboxRow row, ContentValues values) {
+        values.put("state", STATE_SENT);
+        values.put("updated_at", System.currentTimeMillis());
+        database.getWritableDatabase().update("outbox", values, "_id = ?", new String[]{String.valueOf(row.id)});
+        updateProvider(row.providerId, Telephony.Sms.MESSAGE_TYPE_SENT, Telephony.Sms.STATUS_PENDING);
+        row.state = STATE_SENT;
+        SmsPerfStats.increment(SmsPerfStats.COUNTER_SENT, 1);
+        notifyListeners(row);
+    }
+
+    private void handleDelivered(long queueId, int status) {
+        OutboxRow row = loadRow(queueId);
+        if (row == null || (row.state != STATE_SENT && row.state != STATE_SENDING)) {
+            return;
+        }
+
+        ContentValues values = new ContentValues();
+        values.put("updated_at", System.currentTimeMillis());
+        if (status >= Telephony.Sms.STATUS_FAILED) {
+            values.put("state", STATE_FAILED);
+            values.put("error_code", status);
+            updateProvider(row.providerId, Telephony.Sms.MESSAGE_TYPE_SENT, Telephony.Sms.STATUS_FAILED);
+            row.state = STATE_FAILED;
+            SmsPerfStats.increment(SmsPerfStats.COUNTER_SEND_FAILED, 1);
+            row.errorCode = status;
+        } else if (status < Telephony.Sms.STATUS_PENDING) {
+            // TP-Status 0x00-0x1F: short message transaction completed
+            int partsDelivered = row.partsDelivered + 1;
+            values.put("parts_delivered", partsDelivered);
+            if (partsDelivered >= row.partsTotal) {
+                values.put("state", STATE_DELIVERED);
+                updateProvider(row.providerId, Telephony.Sms.MESSAGE_TYPE_SENT, Telephony.Sms.STATUS_COMPLETE);
+                row.state = STATE_DELIVERED;
+                SmsPerfStats.increment(SmsPerfStats.COUNTER_DELIVERED, 1);
+            }
+        } else {
+            return; // still pending at the SMSC
+        }
+
+        database.getWritableDatabase().update("outbox", values, "_id = ?", new String[]{String.valueOf(queueId)});
+        if (row.state == STATE_DELIVERED || row.state == STATE_FAILED) {
+            notifyListeners(row);
+        }
+    }
+
+    private void recoverStaleSends() {
+        ContentValues values = new ContentValues();
+        values.put("state", STATE_QUEUED);
+        values.put("next_attempt_at", 0);
+        int recovered = database.getWritableDatabase().update("outbox", values, "state = ? AND updated_at < ?",
+                new String[]{String.valueOf(STATE_SENDING), String.valueOf(System.currentTimeMillis() - STALE_SENDING_MS)});
+        if (recovered > 0) {
+            android.util.Log.w("SmsSendQueue", "Requeued " + recovered + " interrupted sends");
+        }
+    }
+
+    private void updateProvider(long providerId, int type, int status) {
+        if (providerId <= 0) {
+            return;
+        }
+        try {
+            ContentValues values = new ContentValues();
+            values.put(Telephony.Sms.TYPE, type);
+            values.put(Telephony.Sms.STATUS, status);
+            context.getContentResolver().update(ContentUris.withAppendedId(Telephony.Sms.CONTENT_URI, providerId), values, null, null);
+        } catch (Exception e) {
+            android.util.Log.e("SmsSendQueue", "Error updating provider row " + providerId, e);
+        }
+    }
+
+    private void notifyListeners(OutboxRow row) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onStatusChanged(row.id, row.address, row.state, row.providerId, row.errorCode);
+            } catch (Exception e) {
+                android.util.Log.e("SmsSendQueue", "Send status listener failed", e);
+            }
+        }
+    }
+
+    private void schedulePump(long delayMs) {
+        if (pumpScheduled) {
+            handler.removeCallbacks(pumpRunnable);
+        }
+        pumpScheduled = true;
+        handler.postDelayed(pumpRunnable, Math.max(0, delayMs));
+    }
+
+    private static class OutboxRow {
+        long id;
+        String address;
+        long providerId;
+        int state;
+        int attempts;
+        int partsTotal;
+        int partsSent;
+        int partsDelivered;
+        int errorCode;
+        long partsSentMask;
+        long dispatchToken;
+    }
+
+    private OutboxRow loadRow(long queueId) {
+        Cursor cursor = database.getReadableDatabase().rawQuery("SELECT _id, address, provider_id, state, attempts, "
+                + "parts_total, parts_sent, parts_delivered, error_code, parts_sent_mask, dispatch_token FROM outbox WHERE _id = ?",
+                new String[]{String.valueOf(queueId)});
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            OutboxRow row = new OutboxRow();
+            row.id = cursor.getLong(0);
+            row.address = cursor.getString(1);
+            row.providerId = cursor.getLong(2);
+            row.state = cursor.getInt(3);
+            row.attempts = cursor.getInt(4);
+            row.partsTotal = cursor.getInt(5);
+            row.partsSent = cursor.getInt(6);
+            row.partsDelivered = cursor.getInt(7);
+            row.errorCode = cursor.getInt(8);
+            row.partsSentMask = cursor.getLong(9);
+            row.dispatchToken = cursor.getLong(10);
+            return row;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.frontend;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.telephony.SmsMessage;
+
+// Receives the sent and delivery PendingIntents of messages dispatched by SmsSendQueue
+public class SmsStatusReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        long queueId = intent.getLongExtra(SmsSendQueue.EXTRA_QUEUE_ID, -1);
+        if (queueId < 0) {
+            return;
+        }
+
+        String action = intent.getAction();
+        if (SmsSendQueue.ACTION_SMS_SENT.equals(action)) {
+            int part = intent.getIntExtra(SmsSendQueue.EXTRA_PART, -1);
+            long dispatchToken = intent.getLongExtra(SmsSendQueue.EXTRA_DISPATCH_TOKEN, -1);
+            SmsSendQueue.getInstance(context).onSent(queueId, part, dispatchToken, getResultCode());
+        } else if (SmsSendQueue.ACTION_SMS_DELIVERED.equals(action)) {
+            byte[] pdu = intent.getByteArrayExtra("pdu");
+            String format = intent.getStringExtra("format");
+            SmsMessage report = pdu != null ? SmsMessage.createFromPdu(pdu, format) : null;
+            if (report != null) {
+                SmsSendQueue.getInstance(context).onDelivered(queueId, report.getStatus());
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.frontend;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.provider.Telephony;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Bounded LRU from normalized address to thread id shared by the receive and send paths, so repeat
+// senders skip the Telephony.Threads.getOrCreateThreadId IPC. Provider changes trigger one debounced
+// query that drops entries whose thread no longer exists.
+public class ThreadIdCache {
+
+    private static final int MAX_ENTRIES = 512;
+    private static final long REVALIDATE_DELAY_MS = 500;
+    private static final Uri CONVERSATIONS_URI = Uri.parse("content://mms-sms/conversations");
+
+    private static ThreadIdCache instance;
+
+    private final Context context;
+    private final Handler handler;
+    private final Map<String, Long> threadIds = new LinkedHashMap<String, Long>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            if (size() > MAX_ENTRIES) {
+                evictions++;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+    private boolean revalidateScheduled;
+
+    public static synchronized ThreadIdCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new ThreadIdCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ThreadIdCache(Context context) {
+        this.context = context;
+        HandlerThread thread = new HandlerThread("ThreadIdCache");
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+        context.getContentResolver().registerContentObserver(CONVERSATIONS_URI, true, new ContentObserver(handler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                scheduleRevalidate();
+            }
+        });
+    }
+
+    public static class Stats {
+        public int size;
+        public long hits;
+        public long misses;
+        public long evictions;
+        public long invalidations;
+    }
+
+    public long getOrCreateThreadId(String address) {
+        long started = SmsPerfStats.start();
+        String key = AddressNormalizer.normalize(context, address);
+        synchronized (this) {
+            Long cached = threadIds.get(key);
+            if (cached != null) {
+                hits++;
+                SmsPerfStats.record(SmsPerfStats.OP_THREAD_LOOKUP, started);
+                return cached;
+            }
+            misses++;
+        }
+
+        long threadId;
+        try {
+            threadId = Telephony.Threads.getOrCreateThreadId(context, address);
+        } catch (Exception e) {
+            android.util.Log.e("ThreadIdCache", "Error getting thread ID", e);
+            return 0;
+        } finally {
+            SmsPerfStats.record(SmsPerfStats.OP_THREAD_LOOKUP, started);
+        }
+
+        if (threadId > 0) {
+            synchronized (this) {
+                threadIds.put(key, threadId);
+            }
+        }
+        return threadId;
+    }
+
+    // Like getOrCreateThreadId, but never creates a thread: an address with no stored messages
+    // resolves to 0
+    public long findThreadId(String address) {
+        String key = AddressNormalizer.normalize(context, address);
+        synchronized (this) {
+            Long cached = threadIds.get(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+
+        long threadId = 0;
+        try {
+            Cursor cursor = context.getContentResolver().query(Telephony.Sms.CONTENT_URI, new String[]{Telephony.Sms.THREAD_ID},
+                    Telephony.Sms.ADDRESS + " = ?", new String[]{address}, Telephony.Sms.DATE + " DESC LIMIT 1");
+            if (cursor != null) {
+                try {
+                    if (cursor.moveToFirst()) {
+                        threadId = cursor.getLong(0);
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+        } catch (Exception e) {
+            android.util.Log.e("ThreadIdCache", "Error finding thread ID", e);
+            return 0;
+        }
+
+        if (threadId > 0) {
+            synchronized (this) {
+                threadIds.put(key, threadId);
+            }
+        }
+        return threadId;
+    }
+
+    public synchronized void invalidateThread(long threadId) {
+        Iterator<Long> iterator = threadIds.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() == threadId) {
+                iterator.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        invalidations += threadIds.size();
+        threadIds.clear();
+    }
+
+    public synchronized Stats getStats() {
+        Stats stats = new Stats();
+        stats.size = threadIds.size();
+        stats.hits = hits;
+        stats.misses = misses;
+        stats.evictions = evictions;
+        stats.invalidations = invalidations;
+        return stats;
+    }
+
+    private void scheduleRevalidate() {
+        if (!revalidateScheduled) {
+            revalidateScheduled = true;
+            handler.postDelayed(this::revalidate, REVALIDATE_DELAY_MS);
+        }
+    }
+
+    // Runs on the cache thread: one query for every cached thread id, removing the ones that vanished
+    private void revalidate() {
+        revalidateScheduled = false;
+        List<String> ids = new ArrayList<>();
+        synchronized (this) {
+            for (Long threadId : new HashSet<>(threadIds.values())) {
+                ids.add(String.valueOf(threadId));
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        Set<Long> alive = new HashSet<>();
+        try {
+            Cursor cursor = context.getContentResolver().query(SmsRepository.THREADS_URI, new String[]{"_id"},
+                    "_id IN (" + SmsRepository.placeholders(ids.size()) + ")", ids.toArray(new String[0]), null);
+            if (cursor == null) {
+                return;
+            }
+            try {
+                while (cursor.moveToNext()) {
+                    alive.add(cursor.getLong(0));
+                }
+            } finally {
+                cursor.close();
+            }
+        } catch (Exception e) {
+            android.util.Log.e("ThreadIdCache", "Error revalidating thread IDs", e);
+            clear();
+            return;
+        }
+
+        synchronized (this) {
+            Iterator<Long> iterator = threadIds.values().iterator();
+            while (iterator.hasNext()) {
+                if (!alive.contains(iterator.next())) {
+                    iterator.remove();
+                    invalidations++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.frontend;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+// LRU of thread pages returned by SmsRepository.queryThreadPage, bounded by an estimate of the
+// memory its rows hold rather than by entry count, since page sizes vary widely. Provider deltas
+// drop the pages they could have changed; a generation counter keeps a query that raced with a
+// change from caching what it read. Prefetching runs on a background-priority thread.
+public class ThreadPageCache {
+
+    private static final long MAX_BYTES = 2 * 1024 * 1024;
+    // Object headers, boxed fields and list slots per row, on top of its strings
+    private static final int ROW_OVERHEAD_BYTES = 96;
+
+    private static ThreadPageCache instance;
+
+    private static class Entry {
+        final long threadId;
+        final boolean firstPage;
+        final SmsRepository.Page page;
+        final long bytes;
+
+        Entry(long threadId, boolean firstPage, SmsRepository.Page page, long bytes) {
+            this.threadId = threadId;
+            this.firstPage = firstPage;
+            this.page = page;
+            this.bytes = bytes;
+        }
+    }
+
+    private final SmsRepository repository;
+    private final Handler prefetchHandler;
+    // Access-ordered; evicted by hand in put() because removeEldestEntry can only drop one entry
+    private final LinkedHashMap<String, Entry> pages = new LinkedHashMap<>(32, 0.75f, true);
+
+    private long bytes;
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+    private long prefetched;
+
+    public static synchronized ThreadPageCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new ThreadPageCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ThreadPageCache(Context context) {
+        this.repository = new SmsRepository(context);
+        HandlerThread thread = new HandlerThread("ThreadPagePrefetch", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        this.prefetchHandler = new Handler(thread.getLooper());
+    }
+
+    public static class Stats {
+        public int pages;
+        public long bytes;
+        public long maxBytes;
+        public long hits;
+        public long misses;
+        public long evictions;
+        public long invalidations;
+        public long prefetched;
+    }
+
+    public SmsRepository.Page getPage(long threadId, long beforeDate, long beforeId, int limit) {
+        String key = keyOf(threadId, beforeDate, beforeId, limit);
+        long loadGeneration;
+        synchronized (this) {
+            Entry entry = pages.get(key);
+            if (entry != null) {
+                hits++;
+                return entry.page;
+            }
+            misses++;
+            loadGeneration = generation;
+        }
+        return load(key, threadId, beforeDate, beforeId, limit, loadGeneration);
+    }
+
+    // Warms the first page of each thread that isn't cached yet, one at a time in the background
+    public void prefetchAsync(List<Long> threadIds, int limit) {
+        List<Long> copy = new ArrayList<>(threadIds);
+        prefetchHandler.post(() -> {
+            for (Long threadId : copy) {
+                String key = keyOf(threadId, 0, 0, limit);
+                long loadGeneration;
+                synchronized (this) {
+                    if (pages.containsKey(key)) {
+                        continue;
+                    }
+                    loadGeneration = generation;
+                }
+                try {
+                    load(key, threadId, 0, 0, limit, loadGeneration);
+                    synchronized (this) {
+                        prefetched++;
+                    }
+                } catch (Exception e) {
+                    android.util.Log.e("ThreadPageCache", "Error prefetching thread " + threadId, e);
+                }
+            }
+        });
+    }
+
+    public synchronized void onDelta(SmsDelta delta) {
+        if (delta.invalidated) {
+            clear();
+            return;
+        }
+        // New rows only change a thread's first page; edits and deletes can touch any of them
+        Set<Long> insertedThreads = new HashSet<>();
+        for (SmsRow row : delta.inserted) {
+            insertedThreads.add(row.threadId);
+        }
+        Set<Long> changedThreads = new HashSet<>();
+        for (SmsRow row : delta.updated) {
+            if (!patchRow(row)) {
+                changedThreads.add(row.threadId);
+            }
+        }
+        if (!delta.deletedIds.isEmpty()) {
+            Set<Long> deleted = new HashSet<>(delta.deletedIds);
+            for (Entry entry : pages.values()) {
+                for (SmsRow row : entry.page.rows) {
+                    if (deleted.contains(row.id)) {
+                        changedThreads.add(entry.threadId);
+                        break;
+                    }
+                }
+            }
+        }
+        if (insertedThreads.isEmpty() && changedThreads.isEmpty()) {
+            return;
+        }
+
+        generation++;
+        Iterator<Entry> iterator = pages.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (changedThreads.contains(entry.threadId) || (entry.firstPage && insertedThreads.contains(entry.threadId))) {
+                iterator.remove();
+                bytes -= entry.bytes;
+                invalidations++;
+            }
+        }
+    }
+
+    // Copies the type, read and status of an updated row over its cached copies, so status and
+    // read-state changes keep the pages; false when the row is not cached or changed in a way that
+    // can move it or alter the page's size estimate, and its thread has to be reloaded
+    private boolean patchRow(SmsRow updated) {
+        boolean found = false;
+        for (Entry entry : pages.values()) {
+            for (SmsRow row : entry.page.rows) {
+                if (row.id != updated.id) {
+                    continue;
+                }
+                if (row.threadId != updated.threadId || row.date != updated.date
+                        || !Objects.equals(row.body, updated.body) || !Objects.equals(row.address, updated.address)) {
+                    return false;
+                }
+                found = true;
+            }
+        }
+        if (!found) {
+            return false;
+        }
+        generation++;
+        for (Entry entry : pages.values()) {
+            for (SmsRow row : entry.page.rows) {
+                if (row.id == updated.id) {
+                    row.type = updated.type;
+                    row.read = updated.read;
+                    row.status = updated.status;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Applies one of our own mark-read writes to the cached rows instead of dropping the pages;
+    // upToId is the newest message marked, or Long.MAX_VALUE for the whole thread
+    public synchronized void onMarkedRead(long threadId, long upToId) {
+        generation++;
+        for (Entry entry : pages.values()) {
+            if (entry.threadId != threadId) {
+                continue;
+            }
+            for (SmsRow row : entry.page.rows) {
+                if (row.type == 1 && row.id <= upToId) {
+                    row.read = 1;
+                }
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        invalidations += pages.size();
+        pages.clear();
+        bytes = 0;
+    }
+
+    public synchronized Stats getStats() {
+        Stats stats = new Stats();
+        stats.pages = pages.size();
+        stats.bytes = bytes;
+        stats.maxBytes = MAX_BYTES;
+        stats.hits = hits;
+        stats.misses = misses;
+        stats.evictions = evictions;
+        stats.invalidations = invalidations;
+        stats.prefetched = prefetched;
+        return stats;
+    }
+
+    private SmsRepository.Page load(String key, long threadId, long beforeDate, long beforeId, int limit, long loadGeneration) {
+        SmsRepository.Page page = repository.queryThreadPage(threadId, null, beforeDate, beforeId, limit);
+        long pageBytes = estimateBytes(page);
+        synchronized (this) {
+            if (loadGeneration != generation || pageBytes > MAX_BYTES) {
+                return page;
+            }
+            Entry previous = pages.put(key, new Entry(threadId, beforeDate <= 0, page, pageBytes));
+            if (previous != null) {
+                bytes -= previous.bytes;
+            }
+            bytes += pageBytes;
+            Iterator<Entry> iterator = pages.values().iterator();
+            while (bytes > MAX_BYTES && iterator.hasNext()) {
+                Entry eldest = iterator.next();
+                iterator.remove();
+                bytes -= eldest.bytes;
+                evictions++;
+            }
+        }
+        return page;
+    }
+
+    private static long estimateBytes(SmsRepository.Page page) {
+        long total = 0;
+        for (SmsRow row : page.rows) {
+            total += ROW_OVERHEAD_BYTES;
+            total += 2L * (row.body != null ? row.body.length() : 0);
+            total += 2L * (row.address != null ? row.address.length() : 0);
+        }
+        return total;
+    }
+
+    private static String keyOf(long threadId, long beforeDate, long beforeId, int limit) {
+        return threadId + ":" + beforeDate + ":" + beforeId + ":" + limit;
+    }
+}
@@ -0,0 +1,235 @@
+package com.frontend;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.provider.Telephony;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Total and per-thread unread counts, loaded with one query and then maintained incrementally: the
+// ingest path and the SMS observer report new rows, mark-as-read calls report how many rows they
+// changed. Changes made elsewhere that can't be attributed to rows trigger a lazy reload.
+public class UnreadCounter {
+
+    private static UnreadCounter instance;
+
+    private final Context context;
+    private final Handler handler;
+    private final Map<Long, Integer> counts = new HashMap<>();
+    private int total;
+    private boolean loaded;
+    // Last known total, readable without the lock while a reload holds it
+    private volatile int publishedTotal;
+    private volatile boolean stale = true;
+    private boolean reloadPending;
+    // Highest provider _id when the counts were loaded; rows above it are counted as they are
+    // reported, once each, whichever of the ingest path and the observer reports them first
+    private long loadedMaxId;
+    private final Set<Long> countedIds = new HashSet<>();
+
+    public static synchronized UnreadCounter getInstance(Context context) {
+        if (instance == null) {
+            instance = new UnreadCounter(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private UnreadCounter(Context context) {
+        this.context = context;
+        HandlerThread thread = new HandlerThread("UnreadCounter");
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+    }
+
+    public synchronized int getTotal() {
+        ensureLoaded();
+        return total;
+    }
+
+    // For synchronous JS reads: never touches the provider or waits on the lock. Returns the last
+    // known total and, when the counts are stale, reloads them on the counter's own thread.
+    public int getCachedTotal() {
+        if (stale) {
+            reloadAsync();
+        }
+        return publishedTotal;
+    }
+
+    private void reloadAsync() {
+        synchronized (handler) {
+            if (reloadPending) {
+                return;
+            }
+            reloadPending = true;
+        }
+        handler.post(() -> {
+            synchronized (handler) {
+                reloadPending = false;
+            }
+            getTotal();
+        });
+    }
+
+    public synchronized int getCount(long threadId) {
+        ensureLoaded();
+        Integer count = counts.get(threadId);
+        return count != null ? count : 0;
+    }
+
+    public synchronized Map<Long, Integer> getCounts() {
+        ensureLoaded();
+        return new HashMap<>(counts);
+    }
+
+    public synchronized void onInserted(long id, long threadId, int type, int read) {
+        if (!loaded || id <= loadedMaxId || !countedIds.add(id)) {
+            return;
+        }
+        if (type == Telephony.Sms.MESSAGE_TYPE_INBOX && read == 0) {
+            adjust(threadId, 1);
+        }
+    }
+
+    public synchronized void onDelta(SmsDelta delta) {
+        for (SmsRow row : delta.inserted) {
+            onInserted(row.id, row.threadId, row.type, row.read);
+        }
+        // Only received messages are counted, so edits to sent and outbox rows (such as the send
+        // queue's status updates) leave the counts alone
+        boolean rowsChanged = !delta.deletedIds.isEmpty();
+        for (SmsRow row : delta.updated) {
+            if (row.type == Telephony.Sms.MESSAGE_TYPE_INBOX) {
+                rowsChanged = true;
+                break;
+            }
+        }
+        // Our own mark-read writes are announced to the observer and never show up as invalidated
+        if (rowsChanged || delta.invalidated) {
+            markStale();
+        }
+    }
+
+    // Forces a reload on the next read, for bulk changes that were not tracked row by row
+    public synchronized void invalidate() {
+        markStale();
+    }
+
+    private void markStale() {
+        loaded = false;
+        stale = true;
+    }
+
+    // Marks every unread message of the given threads as read with one applyBatch
+    public int markThreadsRead(List<Long> threadIds) throws Exception {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(threadIds.size());
+        for (Long threadId : threadIds) {
+            operations.add(ContentProviderOperation.newUpdate(SmsRepository.SMS_URI)
+                    .withValue(Telephony.Sms.READ, 1)
+                    .withSelection("thread_id = ? AND read = 0 AND type = 1", new String[]{String.valueOf(threadId)})
+                    .build());
+        }
+        return applyReadOperations(threadIds, Long.MAX_VALUE, operations);
+    }
+
+    // Marks received messages of one thread up to and including messageId as read
+    public int markReadUpTo(long threadId, long messageId) throws Exception {
+        List<Long> threadIds = new ArrayList<>(1);
+        threadIds.add(threadId);
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(1);
+        operations.add(ContentProviderOperation.newUpdate(SmsRepository.SMS_URI)
+                .withValue(Telephony.Sms.READ, 1)
+                .withSelection("thread_id = ? AND read = 0 AND type = 1 AND _id <= ?",
+                        new String[]{String.valueOf(threadId), String.valueOf(messageId)})
+                .build());
+        return applyReadOperations(threadIds, messageId, operations);
+    }
+
+    public synchronized void onRead(long threadId, int rowsMarked) {
+        if (loaded && rowsMarked > 0) {
+            adjust(threadId, -rowsMarked);
+        }
+    }
+
+    private int applyReadOperations(List<Long> threadIds, long upToId, ArrayList<ContentProviderOperation> operations) throws Exception {
+        if (operations.isEmpty()) {
+            return 0;
+        }
+        ContentProviderResult[] results = context.getContentResolver().applyBatch(Telephony.Sms.CONTENT_URI.getAuthority(), operations);
+
+        int marked = 0;
+        for (int i = 0; i < results.length && i < threadIds.size(); i++) {
+            int rows = results[i].count != null ? results[i].count : 0;
+            if (rows > 0) {
+                // The provider reports each update as a bare content://sms change
+                SmsChangeObserver.expectSelfReads(rows);
+                ThreadPageCache.getInstance(context).onMarkedRead(threadIds.get(i), upToId);
+            }
+            onRead(threadIds.get(i), rows);
+            marked += rows;
+        }
+
+        SmsNotifier notifier = SmsNotifier.getInstance(context);
+        for (Long threadId : threadIds) {
+            notifier.cancel(threadId);
+        }
+        return marked;
+    }
+
+    private void adjust(long threadId, int change) {
+        Integer current = counts.get(threadId);
+        int next = Math.max(0, (current != null ? current : 0) + change);
+        total = Math.max(0, total + (next - (current != null ? current : 0)));
+        if (loaded) {
+            publishedTotal = total;
+        }
+        if (next == 0) {
+            counts.remove(threadId);
+        } else {
+            counts.put(threadId, next);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        counts.clear();
+        total = 0;
+        countedIds.clear();
+
+        // Taken first so a row inserted during the scan is above the mark and counted when reported
+        loadedMaxId = 0;
+        Cursor maxCursor = context.getContentResolver().query(SmsRepository.SMS_URI, new String[]{"_id"}, null, null, "_id DESC LIMIT 1");
+        if (maxCursor != null) {
+            try {
+                loadedMaxId = maxCursor.moveToFirst() ? maxCursor.getLong(0) : 0;
+            } finally {
+                maxCursor.close();
+            }
+        }
+
+        Cursor cursor = context.getContentResolver().query(SmsRepository.INBOX_URI, new String[]{"_id", "thread_id"}, "read = 0 AND _id <= ?",
+                new String[]{String.valueOf(loadedMaxId)}, null);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    adjust(cursor.getLong(1), 1);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        loaded = true;
+        stale = false;
+        publishedTotal = total;
+    }
+}
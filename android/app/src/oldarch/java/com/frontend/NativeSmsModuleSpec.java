@@ -0,0 +1,196 @@
+package com.frontend;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.proguard.annotations.DoNotStrip;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.turbomodule.core.interfaces.TurboModule;
+
+// Old-architecture stand-in for the class codegen generates from src/specs/NativeSmsModule.ts,
+// which the React Native Gradle plugin only does for apps with newArchEnabled. Same methods,
+// annotated so the bridge exposes them; keep the two in step when the spec changes.
+public abstract class NativeSmsModuleSpec extends ReactContextBaseJavaModule implements TurboModule {
+
+    public static final String NAME = "SmsModule";
+
+    public NativeSmsModuleSpec(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void addListener(String eventName);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void removeListeners(double count);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void getSmsMessages(Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void getSmsMessagesColumnar(double limit, Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void getThreadMessages(double threadId, @Nullable String address, double beforeDate, double beforeId, double limit, Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void getConversationSummaries(double beforeDate, double beforeThreadId, double limit, String category, Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void getConversationSnapshot(Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void getLatestOtp(double maxAgeMinutes, Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void searchMessages(String query, double limit, double offset, Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void prefetchThreads(ReadableArray threadIds, double limit, Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void getMmsMessages(double threadId, double limit, Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void getMmsThumbnail(String partId, double maxSize, Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void retryMmsDownload(String messageId, Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void sendSms(String phoneNumber, String message, Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void sendBatch(ReadableArray recipients, String message, Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void setSendRate(double messagesPerMinute, Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void markAsRead(String address, Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void markThreadsRead(ReadableArray threadIds, Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void markReadUpTo(double threadId, String messageId, Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void deleteMessages(ReadableArray ids, Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void deleteThread(double threadId, Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void setRetentionPolicy(boolean enabled, double maxAgeDays, Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void getRetentionPolicy(Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void runRetention(Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void exportArchive(String path, Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void importArchive(String path, Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void getUnreadCount(Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void getUnreadCounts(Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void isDefaultSmsApp(Promise promise);
+
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    @DoNotStrip
+    public abstract double getUnreadCountSync();
+
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    @DoNotStrip
+    public abstract boolean isDefaultSmsAppSync();
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void requestDefaultSmsApp(Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void openSmsAppSettings(Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void getIngestStats(Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void getThreadCacheStats(Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void getPageCacheStats(Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void getContactCacheStats(Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void getPerfStats(Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void dumpPerfStats(Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void setPerfStatsEnabled(boolean enabled, Promise promise);
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void resetPerfStats();
+
+    @ReactMethod
+    @DoNotStrip
+    public abstract void recordFirstRender(String source, double elapsedMs);
+}
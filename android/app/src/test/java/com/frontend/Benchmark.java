@@ -0,0 +1,147 @@
+package com.frontend;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Locale;
+
+// Timing harness shared by the benchmarks. Each run does warm-up iterations, then times every
+// measured iteration on its own and reports throughput, p50/p99 latency and the bytes allocated
+// by all live threads. Results are printed and appended to build/reports/benchmarks/results.tsv,
+// one row per run, so runs on two revisions can be compared line by line.
+final class Benchmark {
+
+    interface Operation {
+        // Returns how many logical operations (messages, rows) the iteration covered
+        int run(int iteration) throws Exception;
+    }
+
+    static final class Result {
+        final String name;
+        final int iterations;
+        final long operations;
+        final double seconds;
+        final double p50Ms;
+        final double p99Ms;
+        final double maxMs;
+        final long allocatedBytes;
+
+        Result(String name, int iterations, long operations, double seconds, double p50Ms, double p99Ms, double maxMs,
+                long allocatedBytes) {
+            this.name = name;
+            this.iterations = iterations;
+            this.operations = operations;
+            this.seconds = seconds;
+            this.p50Ms = p50Ms;
+            this.p99Ms = p99Ms;
+            this.maxMs = maxMs;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        double opsPerSecond() {
+            return seconds > 0 ? operations / seconds : 0;
+        }
+
+        double allocatedMbPerSecond() {
+            return seconds > 0 ? allocatedBytes / 1048576.0 / seconds : 0;
+        }
+
+        double allocatedBytesPerOp() {
+            return operations > 0 ? (double) allocatedBytes / operations : 0;
+        }
+    }
+
+    private static final File RESULTS = new File("build/reports/benchmarks/results.tsv");
+
+    private Benchmark() {
+    }
+
+    static int intProperty(String name, int defaultValue) {
+        return Integer.getInteger(name, defaultValue);
+    }
+
+    static Result run(String name, int warmup, int iterations, Operation operation) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            operation.run(i);
+        }
+
+        long[] nanos = new long[iterations];
+        long operations = 0;
+        long allocatedBefore = allocatedBytes();
+        long started = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            long iterationStart = System.nanoTime();
+            operations += operation.run(warmup + i);
+            nanos[i] = System.nanoTime() - iterationStart;
+        }
+        long elapsed = System.nanoTime() - started;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        Arrays.sort(nanos);
+        Result result = new Result(name, iterations, operations, elapsed / 1e9, percentile(nanos, 0.50) / 1e6,
+                percentile(nanos, 0.99) / 1e6, nanos[nanos.length - 1] / 1e6, allocated);
+        report(result);
+        return result;
+    }
+
+    // For load tests that measure per-message latency themselves
+    static Result record(String name, long[] latencyNanos, long operations, double seconds, long allocatedBytes) {
+        long[] sorted = latencyNanos.clone();
+        Arrays.sort(sorted);
+        Result result = new Result(name, sorted.length, operations, seconds, percentile(sorted, 0.50) / 1e6,
+                percentile(sorted, 0.99) / 1e6, sorted.length > 0 ? sorted[sorted.length - 1] / 1e6 : 0, allocatedBytes);
+        report(result);
+        return result;
+    }
+
+    // Sum over live threads, so work handed to background threads is counted too
+    static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return 0;
+        }
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        long total = 0;
+        for (long bytes : sunBean.getThreadAllocatedBytes(bean.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static void report(Result result) {
+        String line = String.format(Locale.US, "%-28s %10.1f ops/s  p50 %8.3f ms  p99 %8.3f ms  max %8.3f ms  %10.1f B/op  %8.1f MB/s",
+                result.name, result.opsPerSecond(), result.p50Ms, result.p99Ms, result.maxMs, result.allocatedBytesPerOp(),
+                result.allocatedMbPerSecond());
+        System.out.println("[benchmark] " + line);
+
+        File directory = RESULTS.getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            return;
+        }
+        boolean header = !RESULTS.exists();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(RESULTS, true))) {
+            if (header) {
+                writer.println("timestamp\tname\titerations\toperations\tops_per_s\tp50_ms\tp99_ms\tmax_ms\tbytes_per_op\talloc_mb_per_s");
+            }
+            writer.println(String.format(Locale.US, "%d\t%s\t%d\t%d\t%.1f\t%.3f\t%.3f\t%.3f\t%.1f\t%.1f", System.currentTimeMillis(),
+                    result.name, result.iterations, result.operations, result.opsPerSecond(), result.p50Ms, result.p99Ms,
+                    result.maxMs, result.allocatedBytesPerOp(), result.allocatedMbPerSecond()));
+        } catch (IOException e) {
+            System.err.println("Could not write " + RESULTS + ": " + e.getMessage());
+        }
+    }
+}
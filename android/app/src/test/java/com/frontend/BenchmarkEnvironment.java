@@ -0,0 +1,39 @@
+package com.frontend;
+
+import java.lang.reflect.Field;
+
+// Robolectric gives every test a fresh Application, but the native layer's singletons keep the
+// first one they saw. Dropping them between tests makes each benchmark start cold against its own
+// database and provider.
+final class BenchmarkEnvironment {
+
+    private static final Class<?>[] SINGLETONS = {
+        ContactResolver.class,
+        ConversationSnapshot.class,
+        IngestDeduplicator.class,
+        MmsIngestor.class,
+        NexalertDatabase.class,
+        SmsCategoryStore.class,
+        SmsIngestPipeline.class,
+        SmsNotifier.class,
+        SmsPurger.class,
+        SmsSearchIndex.class,
+        SmsSendQueue.class,
+        ThreadIdCache.class,
+        ThreadPageCache.class,
+        UnreadCounter.class,
+    };
+
+    private BenchmarkEnvironment() {
+    }
+
+    static void resetSingletons() throws ReflectiveOperationException {
+        for (Class<?> type : SINGLETONS) {
+            Field field = type.getDeclaredField("instance");
+            field.setAccessible(true);
+            synchronized (type) {
+                field.set(null, null);
+            }
+        }
+    }
+}
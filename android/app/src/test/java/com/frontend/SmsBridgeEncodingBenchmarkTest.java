@@ -0,0 +1,91 @@
+package com.frontend;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.withSettings;
+
+import android.app.Application;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.BridgeReactContext;
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.MockedStatic;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+
+// The same full-table read sent over the bridge two ways: one map per row (getSmsMessages) and
+// parallel columns with interned strings (getSmsMessagesColumnar). Both run against the same
+// seeded provider with the same iteration counts, so their latency and allocation rows in
+// results.tsv compare directly. Size the data set with -Dbench.bridge.messages (default 50k).
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, application = Application.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class SmsBridgeEncodingBenchmarkTest {
+
+    private static final int MESSAGES = Benchmark.intProperty("bench.bridge.messages", 50_000);
+    private static final int THREADS = 1_000;
+
+    private SmsModule module;
+    private Promise promise;
+    private final AtomicReference<Object> resolved = new AtomicReference<>();
+    private MockedStatic<Arguments> arguments;
+
+    @Before
+    public void setUp() throws Exception {
+        BenchmarkEnvironment.resetSingletons();
+        SyntheticSmsProvider provider = SyntheticSmsProvider.register();
+        provider.seed(MESSAGES, THREADS, System.currentTimeMillis(), 42);
+        module = new SmsModule(new BridgeReactContext(RuntimeEnvironment.getApplication()));
+
+        promise = mock(Promise.class, withSettings().stubOnly());
+        doAnswer(invocation -> {
+            resolved.set(invocation.getArgument(0));
+            return null;
+        }).when(promise).resolve(any());
+
+        // WritableNativeMap needs the React Native JNI libraries; the Java-only maps stand in
+        arguments = mockStatic(Arguments.class);
+        arguments.when(Arguments::createMap).thenAnswer(invocation -> new JavaOnlyMap());
+        arguments.when(Arguments::createArray).thenAnswer(invocation -> new JavaOnlyArray());
+    }
+
+    @After
+    public void tearDown() {
+        arguments.close();
+    }
+
+    @Test
+    public void mapsVersusColumns() throws Exception {
+        Benchmark.Result maps = Benchmark.run("bridge.maps", 2, 10, iteration -> {
+            module.getSmsMessages(promise);
+            return ((ReadableArray) resolved.get()).size();
+        });
+        assertEquals(MESSAGES, ((ReadableArray) resolved.get()).size());
+
+        Benchmark.Result columns = Benchmark.run("bridge.columnar", 2, 10, iteration -> {
+            module.getSmsMessagesColumnar(0, promise);
+            return ((ReadableMap) resolved.get()).getInt("count");
+        });
+        assertEquals(MESSAGES, ((ReadableMap) resolved.get()).getInt("count"));
+
+        System.out.println(String.format(Locale.US, "[benchmark] bridge.columnar / bridge.maps: p50 %.2fx, allocation %.2fx",
+                columns.p50Ms / maps.p50Ms, columns.allocatedBytesPerOp() / maps.allocatedBytesPerOp()));
+    }
+}
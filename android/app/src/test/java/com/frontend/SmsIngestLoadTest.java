@@ -0,0 +1,179 @@
+package com.frontend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+import android.content.Context;
+import android.content.Intent;
+import android.provider.Telephony;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Drives SmsReceiver with SMS_DELIVER broadcasts at a fixed rate, each carrying a three-part
+// concatenated message as real 3GPP PDUs, and measures the time from broadcast to provider insert.
+// Rate and duration come from -Dbench.ingest.rate (messages/s, default 100) and
+// -Dbench.ingest.seconds (default 5); the provider is pre-seeded like the query benchmarks.
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, application = Application.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class SmsIngestLoadTest {
+
+    private static final int RATE = Benchmark.intProperty("bench.ingest.rate", 100);
+    private static final int SECONDS = Benchmark.intProperty("bench.ingest.seconds", 5);
+    private static final int PARTS = 3;
+    // UCS-2 user data is 140 bytes; the concatenation header takes 6 of them
+    private static final int CHARS_PER_PART = 67;
+    private static final int SENDERS = 200;
+
+    private Context context;
+    private SyntheticSmsProvider provider;
+
+    @Before
+    public void setUp() throws Exception {
+        BenchmarkEnvironment.resetSingletons();
+        context = RuntimeEnvironment.getApplication();
+        provider = SyntheticSmsProvider.register();
+        provider.seed(Benchmark.intProperty("bench.messages", 10_000), Benchmark.intProperty("bench.threads", 1_000),
+                System.currentTimeMillis(), 7);
+    }
+
+    @Test
+    public void multipartBurst() throws Exception {
+        int total = RATE * SECONDS;
+        Map<Integer, Long> submittedAt = new ConcurrentHashMap<>();
+        long[] latencies = new long[total];
+        AtomicInteger stored = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(total);
+        provider.setInsertListener((id, values) -> {
+            String body = values.getAsString("body");
+            Long at = body != null && body.startsWith("Load ") ? submittedAt.get(Integer.parseInt(body.substring(5, body.indexOf(':')))) : null;
+            if (at != null) {
+                int slot = stored.getAndIncrement();
+                if (slot < latencies.length) {
+                    latencies[slot] = System.nanoTime() - at;
+                }
+                done.countDown();
+            }
+        });
+
+        SmsReceiver receiver = new SmsReceiver();
+        AtomicInteger sent = new AtomicInteger();
+        ScheduledExecutorService sender = Executors.newSingleThreadScheduledExecutor();
+        long allocatedBefore = Benchmark.allocatedBytes();
+        long started = System.nanoTime();
+        sender.scheduleAtFixedRate(() -> {
+            int index = sent.getAndIncrement();
+            if (index >= total) {
+                return;
+            }
+            String address = SyntheticSmsProvider.addressFor(index % SENDERS * 10);
+            Intent intent = new Intent(Telephony.Sms.Intents.SMS_DELIVER_ACTION);
+            intent.putExtra("pdus", deliverPdus(address, bodyFor(index), System.currentTimeMillis(), index & 0xff));
+            intent.putExtra("format", "3gpp");
+            submittedAt.put(index, System.nanoTime());
+            receiver.onReceive(context, intent);
+        }, 0, 1_000_000 / RATE, TimeUnit.MICROSECONDS);
+
+        boolean completed = done.await(SECONDS + 30, TimeUnit.SECONDS);
+        double seconds = (System.nanoTime() - started) / 1e9;
+        sender.shutdownNow();
+        long allocated = Benchmark.allocatedBytes() - allocatedBefore;
+
+        long[] measured = new long[Math.min(stored.get(), total)];
+        System.arraycopy(latencies, 0, measured, 0, measured.length);
+        Benchmark.record("ingest.multipart@" + RATE + "/s", measured, measured.length, seconds, allocated);
+
+        SmsIngestPipeline.Stats stats = SmsIngestPipeline.getInstance(context).getStats();
+        System.out.println("[benchmark] ingest batches=" + stats.batchesIngested + " providerWrites=" + stats.providerWrites
+                + " backpressure=" + stats.backpressureEvents + " maxQueueDepth=" + stats.maxQueueDepth);
+        assertTrue("only " + stored.get() + " of " + total + " messages stored", completed);
+        assertEquals(total, stored.get());
+        assertEquals(0, stats.duplicatesSuppressed);
+    }
+
+    private static String bodyFor(int index) {
+        StringBuilder body = new StringBuilder("Load " + index + ": ");
+        while (body.length() < CHARS_PER_PART * PARTS) {
+            body.append("synthetic multipart payload ");
+        }
+        body.setLength(CHARS_PER_PART * PARTS);
+        return body.toString();
+    }
+
+    // SMS-DELIVER PDUs in UCS-2, one per part, each with an 8-bit concatenation header
+    static Object[] deliverPdus(String address, String body, long timestamp, int reference) {
+        int parts = (body.length() + CHARS_PER_PART - 1) / CHARS_PER_PART;
+        Object[] pdus = new Object[parts];
+        for (int part = 0; part < parts; part++) {
+            String text = body.substring(part * CHARS_PER_PART, Math.min(body.length(), (part + 1) * CHARS_PER_PART));
+            byte[] userData = text.getBytes(StandardCharsets.UTF_16BE);
+
+            ByteArrayOutputStream pdu = new ByteArrayOutputStream(160);
+            pdu.write(0x00);                    // no SMSC address
+            pdu.write(0x44);                    // SMS-DELIVER, user data header present, no more messages
+            writeAddress(pdu, address);
+            pdu.write(0x00);                    // PID
+            pdu.write(0x08);                    // DCS: UCS-2
+            writeTimestamp(pdu, timestamp);
+            pdu.write(6 + userData.length);     // UDL in octets
+            pdu.write(0x05);                    // UDHL
+            pdu.write(0x00);                    // IEI: concatenation, 8-bit reference
+            pdu.write(0x03);
+            pdu.write(reference);
+            pdu.write(parts);
+            pdu.write(part + 1);
+            pdu.write(userData, 0, userData.length);
+            pdus[part] = pdu.toByteArray();
+        }
+        return pdus;
+    }
+
+    private static void writeAddress(ByteArrayOutputStream pdu, String address) {
+        boolean international = address.startsWith("+");
+        String digits = international ? address.substring(1) : address;
+        pdu.write(digits.length());
+        pdu.write(international ? 0x91 : 0x81);
+        for (int i = 0; i < digits.length(); i += 2) {
+            int low = digits.charAt(i) - '0';
+            int high = i + 1 < digits.length() ? digits.charAt(i + 1) - '0' : 0x0f;
+            pdu.write((high << 4) | low);
+        }
+    }
+
+    // Service centre timestamp: swapped-nibble BCD in UTC
+    private static void writeTimestamp(ByteArrayOutputStream pdu, long timestamp) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.setTimeInMillis(timestamp);
+        int[] fields = {
+            calendar.get(Calendar.YEAR) % 100,
+            calendar.get(Calendar.MONTH) + 1,
+            calendar.get(Calendar.DAY_OF_MONTH),
+            calendar.get(Calendar.HOUR_OF_DAY),
+            calendar.get(Calendar.MINUTE),
+            calendar.get(Calendar.SECOND),
+            0,
+        };
+        for (int value : fields) {
+            pdu.write(((value % 10) << 4) | (value / 10));
+        }
+    }
+}
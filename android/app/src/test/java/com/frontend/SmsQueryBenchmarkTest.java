@@ -0,0 +1,164 @@
+package com.frontend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.withSettings;
+
+import android.app.Application;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.BridgeReactContext;
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.MockedStatic;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Read-path benchmarks against a seeded synthetic provider. Size the data set with
+// -Dbench.messages (default 10k, tested up to 200k) and -Dbench.threads (default 1k).
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, application = Application.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class SmsQueryBenchmarkTest {
+
+    private static final int MESSAGES = Benchmark.intProperty("bench.messages", 10_000);
+    private static final int THREADS = Benchmark.intProperty("bench.threads", 1_000);
+    private static final int PAGE_SIZE = 50;
+
+    private Context context;
+    private SyntheticSmsProvider provider;
+    private List<Long> threadIds;
+
+    @Before
+    public void setUp() throws Exception {
+        BenchmarkEnvironment.resetSingletons();
+        context = RuntimeEnvironment.getApplication();
+        provider = SyntheticSmsProvider.register();
+        threadIds = provider.seed(MESSAGES, THREADS, System.currentTimeMillis(), 42);
+    }
+
+    // The full-table bridge read: provider cursor to one WritableMap per row
+    @Test
+    public void getSmsMessages() throws Exception {
+        SmsModule module = new SmsModule(new BridgeReactContext(context));
+        AtomicReference<Object> resolved = new AtomicReference<>();
+        Promise promise = mock(Promise.class, withSettings().stubOnly());
+        doAnswer(invocation -> {
+            resolved.set(invocation.getArgument(0));
+            return null;
+        }).when(promise).resolve(any());
+
+        try (MockedStatic<Arguments> arguments = mockStatic(Arguments.class)) {
+            // WritableNativeMap needs the React Native JNI libraries; the Java-only maps stand in
+            arguments.when(Arguments::createMap).thenAnswer(invocation -> new JavaOnlyMap());
+            arguments.when(Arguments::createArray).thenAnswer(invocation -> new JavaOnlyArray());
+
+            Benchmark.run("getSmsMessages", 2, 10, iteration -> {
+                module.getSmsMessages(promise);
+                return ((ReadableArray) resolved.get()).size();
+            });
+        }
+        assertEquals(MESSAGES, ((ReadableArray) resolved.get()).size());
+    }
+
+    // Builds the whole conversation list the way the inbox does: summary pages until hasMore is false
+    @Test
+    public void conversationList() throws Exception {
+        SmsRepository repository = new SmsRepository(context);
+        int[] conversations = new int[1];
+        Benchmark.run("conversationList", 2, 10, iteration -> {
+            int count = 0;
+            SmsRepository.SummaryPage page = repository.queryConversationSummaries(0, 0, PAGE_SIZE, -1);
+            count += page.summaries.size();
+            while (page.hasMore) {
+                ConversationSummary last = page.last();
+                page = repository.queryConversationSummaries(last.date, last.threadId, PAGE_SIZE, -1);
+                count += page.summaries.size();
+            }
+            conversations[0] = count;
+            return count;
+        });
+        assertEquals(threadIds.size(), conversations[0]);
+    }
+
+    @Test
+    public void conversationFirstPage() throws Exception {
+        SmsRepository repository = new SmsRepository(context);
+        Benchmark.run("conversationFirstPage", 20, 200, iteration ->
+                repository.queryConversationSummaries(0, 0, PAGE_SIZE, -1).summaries.size());
+    }
+
+    @Test
+    public void threadFirstPage() throws Exception {
+        SmsRepository repository = new SmsRepository(context);
+        Benchmark.run("threadFirstPage", 50, 1_000, iteration ->
+                repository.queryThreadPage(threadIds.get(iteration % threadIds.size()), null, 0, 0, PAGE_SIZE).rows.size());
+    }
+
+    // One applyBatch per call, each on a different thread
+    @Test
+    public void markAsRead() throws Exception {
+        UnreadCounter counter = UnreadCounter.getInstance(context);
+        int before = counter.getTotal();
+        int iterations = Math.min(500, threadIds.size() - 20);
+        Benchmark.run("markAsRead", 20, iterations, iteration -> {
+            counter.markThreadsRead(Collections.singletonList(threadIds.get(iteration)));
+            return 1;
+        });
+
+        int marked = iterations + 20;
+        assertTrue(counter.getTotal() <= before);
+        for (int i = 0; i < marked; i++) {
+            assertEquals(0, unreadInThread(threadIds.get(i)));
+        }
+    }
+
+    // Cold: the single unread query after an invalidation. Warm: the in-memory total.
+    @Test
+    public void getUnreadCount() throws Exception {
+        UnreadCounter counter = UnreadCounter.getInstance(context);
+        int expected = unreadTotal();
+        Benchmark.run("getUnreadCount.cold", 5, 50, iteration -> {
+            counter.invalidate();
+            return counter.getTotal() >= 0 ? 1 : 0;
+        });
+        Benchmark.run("getUnreadCount.warm", 1_000, 100_000, iteration -> counter.getTotal() >= 0 ? 1 : 0);
+        assertEquals(expected, counter.getTotal());
+    }
+
+    private int unreadTotal() {
+        return count("type = 1 AND read = 0", null);
+    }
+
+    private int unreadInThread(long threadId) {
+        return count("type = 1 AND read = 0 AND thread_id = ?", new String[]{String.valueOf(threadId)});
+    }
+
+    private int count(String selection, String[] args) {
+        Cursor cursor = context.getContentResolver().query(Uri.parse("content://sms"), new String[]{"_id"}, selection, args, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
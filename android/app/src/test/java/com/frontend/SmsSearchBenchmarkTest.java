@@ -0,0 +1,72 @@
+package com.frontend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.List;
+
+// Full-text search over a backfilled index. The default of 100k messages puts about 25k rows
+// behind a term like "otp", so a page that ran snippet() over every match would show up here.
+// Size the data set with -Dbench.search.messages.
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, application = Application.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class SmsSearchBenchmarkTest {
+
+    private static final int MESSAGES = Benchmark.intProperty("bench.search.messages", 100_000);
+    private static final int THREADS = 1_000;
+    private static final int PAGE_SIZE = 20;
+
+    private SmsSearchIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        BenchmarkEnvironment.resetSingletons();
+        Context context = RuntimeEnvironment.getApplication();
+        SyntheticSmsProvider provider = SyntheticSmsProvider.register();
+        provider.seed(MESSAGES, THREADS, System.currentTimeMillis(), 42);
+
+        index = SmsSearchIndex.getInstance(context);
+        index.backfillAsync();
+        // Provider ids start at 1, so the backfill is done once its mark reaches MESSAGES
+        NexalertDatabase database = NexalertDatabase.getInstance(context);
+        long deadline = System.currentTimeMillis() + 300_000;
+        while (database.getState(SmsSearchIndex.STATE_BACKFILL_MARK, 0) < MESSAGES) {
+            assertTrue("search backfill did not finish", System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    // A term in a quarter of all messages: the first page, and one 25 pages in
+    @Test
+    public void commonTerm() throws Exception {
+        Benchmark.run("search.commonTerm.first", 5, 100, iteration -> index.search("otp", PAGE_SIZE, 0).size());
+        Benchmark.run("search.commonTerm.deep", 5, 100, iteration -> index.search("otp", PAGE_SIZE, 25 * PAGE_SIZE).size());
+        assertEquals(PAGE_SIZE, index.search("otp", PAGE_SIZE, 25 * PAGE_SIZE).size());
+    }
+
+    // Two prefix terms ANDed together
+    @Test
+    public void twoTerms() throws Exception {
+        Benchmark.run("search.twoTerms", 5, 100, iteration -> index.search("debited bal", PAGE_SIZE, 0).size());
+        List<SmsSearchIndex.Hit> hits = index.search("debited bal", PAGE_SIZE, 0);
+        assertEquals(PAGE_SIZE, hits.size());
+        for (int i = 1; i < hits.size(); i++) {
+            SmsSearchIndex.Hit previous = hits.get(i - 1);
+            SmsSearchIndex.Hit hit = hits.get(i);
+            assertTrue(previous.matches > hit.matches || (previous.matches == hit.matches && previous.date >= hit.date));
+            assertTrue(hit.snippet != null && !hit.snippet.isEmpty());
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.frontend;
+
+import android.content.ContentProvider;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import org.robolectric.shadows.ShadowContentResolver;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+// Stands in for the telephony provider on the JVM. Registered for both "sms" and "mms-sms", it
+// keeps sms, threads and canonical_addresses in an in-memory SQLite database and maintains each
+// thread's date, snippet and message count with triggers, as the platform provider does. Only the
+// URIs the native layer uses are served, with the platform's quirks where the native layer has to
+// cope with them.
+class SyntheticSmsProvider extends ContentProvider {
+
+    static final int SENDERS_PER_SHORT_CODE = 20;
+
+    private SQLiteDatabase db;
+    private volatile InsertListener insertListener;
+
+    interface InsertListener {
+        void onInserted(long id, ContentValues values);
+    }
+
+    static SyntheticSmsProvider register() {
+        SyntheticSmsProvider provider = new SyntheticSmsProvider();
+        provider.onCreate();
+        ShadowContentResolver.registerProviderInternal("sms", provider);
+        ShadowContentResolver.registerProviderInternal("mms-sms", provider);
+        return provider;
+    }
+
+    @Override
+    public boolean onCreate() {
+        db = SQLiteDatabase.create(null);
+        db.execSQL("CREATE TABLE sms (_id INTEGER PRIMARY KEY AUTOINCREMENT, thread_id INTEGER, address TEXT, person INTEGER, "
+                + "date INTEGER, date_sent INTEGER DEFAULT 0, protocol INTEGER, read INTEGER DEFAULT 0, status INTEGER DEFAULT -1, "
+                + "type INTEGER, reply_path_present INTEGER, subject TEXT, body TEXT, service_center TEXT, locked INTEGER DEFAULT 0, "
+                + "sub_id INTEGER DEFAULT -1, error_code INTEGER DEFAULT 0, creator TEXT, seen INTEGER DEFAULT 0)");
+        db.execSQL("CREATE INDEX sms_thread_date ON sms (thread_id, date)");
+        db.execSQL("CREATE INDEX sms_date ON sms (date)");
+        db.execSQL("CREATE TABLE threads (_id INTEGER PRIMARY KEY AUTOINCREMENT, date INTEGER DEFAULT 0, "
+                + "message_count INTEGER DEFAULT 0, recipient_ids TEXT, snippet TEXT, read INTEGER DEFAULT 1)");
+        db.execSQL("CREATE TABLE canonical_addresses (_id INTEGER PRIMARY KEY AUTOINCREMENT, address TEXT UNIQUE)");
+        db.execSQL("CREATE TRIGGER sms_insert AFTER INSERT ON sms BEGIN "
+                + "UPDATE threads SET date = new.date, snippet = new.body, message_count = message_count + 1 "
+                + "WHERE _id = new.thread_id AND date <= new.date; "
+                + "UPDATE threads SET message_count = message_count + 1 WHERE _id = new.thread_id AND date > new.date; END");
+        db.execSQL("CREATE TRIGGER sms_delete AFTER DELETE ON sms BEGIN "
+                + "UPDATE threads SET message_count = message_count - 1 WHERE _id = old.thread_id; END");
+        return true;
+    }
+
+    void setInsertListener(InsertListener listener) {
+        insertListener = listener;
+    }
+
+    // Spreads `messages` over `threads` conversations, newest at `now`. Every tenth thread is a
+    // short-code sender so category and retention paths see non-phone addresses; those share
+    // SENDERS_PER_SHORT_CODE addresses, so fewer than `threads` conversations exist. About 5% of
+    // inbox rows are unread. Returns each conversation's thread id once.
+    List<Long> seed(int messages, int threads, long now, long seed) {
+        Random random = new Random(seed);
+        List<Long> threadIds = new ArrayList<>(threads);
+        db.beginTransaction();
+        try {
+            for (int t = 0; t < threads; t++) {
+                threadIds.add(getOrCreateThread(addressFor(t)));
+            }
+            ContentValues values = new ContentValues();
+            for (int i = 0; i < messages; i++) {
+                int t = random.nextInt(threads);
+                int type = random.nextInt(3) == 0 ? 2 : 1;
+                values.clear();
+                values.put("thread_id", threadIds.get(t));
+                values.put("address", addressFor(t));
+                values.put("body", bodyFor(t, i, random));
+                values.put("date", now - (long) (messages - i) * 30_000L);
+                values.put("type", type);
+                values.put("read", type == 1 && random.nextInt(20) == 0 ? 0 : 1);
+                db.insert("sms", null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return new ArrayList<>(new LinkedHashSet<>(threadIds));
+    }
+
+    static String addressFor(int thread) {
+        if (thread % 10 == 9) {
+            return "VM-BANK" + (thread / 10 % SENDERS_PER_SHORT_CODE);
+        }
+        return String.format("+9198%08d", thread);
+    }
+
+    private static String bodyFor(int thread, int index, Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return "Your OTP is " + (100000 + random.nextInt(900000)) + ". Do not share it with anyone.";
+            case 1:
+                return "Rs. " + random.nextInt(50000) + " debited from A/c XX" + (1000 + thread % 9000) + " on 12-Oct. Avl bal Rs. "
+                        + random.nextInt(900000);
+            case 2:
+                return "Flat 50% off this weekend only! Shop now at example.com/sale " + index;
+            default:
+                return "Hey, are we still on for later? Message " + index + " in thread " + thread;
+        }
+    }
+
+    synchronized long getOrCreateThread(String address) {
+        Cursor cursor = db.rawQuery("SELECT _id FROM canonical_addresses WHERE address = ?", new String[]{address});
+        long recipientId;
+        try {
+            if (cursor.moveToFirst()) {
+                recipientId = cursor.getLong(0);
+            } else {
+                ContentValues values = new ContentValues();
+                values.put("address", address);
+                recipientId = db.insert("canonical_addresses", null, values);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        cursor = db.rawQuery("SELECT _id FROM threads WHERE recipient_ids = ?", new String[]{String.valueOf(recipientId)});
+        try {
+            if (cursor.moveToFirst()) {
+                return cursor.getLong(0);
+            }
+        } finally {
+            cursor.close();
+        }
+        ContentValues values = new ContentValues();
+        values.put("recipient_ids", String.valueOf(recipientId));
+        return db.insert("threads", null, values);
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        List<String> segments = uri.getPathSegments();
+        if ("mms-sms".equals(uri.getAuthority())) {
+            String path = segments.isEmpty() ? "" : segments.get(0);
+            switch (path) {
+                case "conversations":
+                    // Like the platform's simple=true listing: the selection is applied, but the
+                    // caller's sort order (and any LIMIT appended to it) is ignored
+                    if ("true".equals(uri.getQueryParameter("simple"))) {
+                        return db.query("threads", projection, selection, selectionArgs, null, null, "date DESC");
+                    }
+                    return db.query("threads", projection, selection, selectionArgs, null, null, sortOrder);
+                case "canonical-addresses":
+                    return db.query("canonical_addresses", projection, selection, selectionArgs, null, null, sortOrder);
+                case "threadID": {
+                    long threadId = getOrCreateThread(uri.getQueryParameter("recipient"));
+                    return db.rawQuery("SELECT " + threadId + " AS _id", null);
+                }
+                default:
+                    throw new IllegalArgumentException("Unsupported uri " + uri);
+            }
+        }
+        return db.query("sms", projection, withSmsPath(segments, selection), selectionArgs, null, null, sortOrder);
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        ContentValues row = new ContentValues(values);
+        if (!row.containsKey("thread_id") || row.getAsLong("thread_id") == null || row.getAsLong("thread_id") <= 0) {
+            row.put("thread_id", getOrCreateThread(row.getAsString("address")));
+        }
+        long id = db.insert("sms", null, row);
+        InsertListener listener = insertListener;
+        if (listener != null) {
+            listener.onInserted(id, row);
+        }
+        return ContentUris.withAppendedId(Uri.parse("content://sms"), id);
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        return db.update("sms", values, withSmsPath(uri.getPathSegments(), selection), selectionArgs);
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        return db.delete("sms", withSmsPath(uri.getPathSegments(), selection), selectionArgs);
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    // content://sms/inbox, content://sms/sent and content://sms/<id>
+    private static String withSmsPath(List<String> segments, String selection) {
+        if (segments.isEmpty()) {
+            return selection;
+        }
+        String path = segments.get(0);
+        String clause;
+        if ("inbox".equals(path)) {
+            clause = "type = 1";
+        } else if ("sent".equals(path)) {
+            clause = "type = 2";
+        } else {
+            clause = "_id = " + Long.parseLong(path);
+        }
+        return selection == null || selection.isEmpty() ? clause : clause + " AND (" + selection + ")";
+    }
+}
@@ -1 +1,5 @@
-export const BaseURL = 'http://192.168.1.10:8000/api' // Replace with your computer's local IP address 
\ No newline at end of file
+export const BaseURL = 'http://192.168.1.10:8000/api' // Replace with your computer's local IP address 
+
+// Sender IDs the verification SMS is sent from, without the operator prefix (e.g. 'NEXALT' for
+// 'VM-NEXALT'). EnterOtp only autofills codes from these senders.
+export const OtpSenderIds = [];
@@ -1,5 +1,5 @@
 // screens/ChatsList.js
-import React, { useState, useEffect, useMemo } from "react";
+import React, { useState, useEffect, useMemo, useRef } from "react";
 import {
   View,
   Text,
@@ -14,7 +14,9 @@ import {
   Modal,
   TouchableWithoutFeedback,
   TextInput,
-  ActivityIndicator
+  ActivityIndicator,
+  Image,
+  InteractionManager
 } from "react-native";
 import { useNavigation } from "@react-navigation/native";
 import SmsController from '../../Controller/SmsController';
@@ -26,7 +28,44 @@ const getAvatarColor = (address) => {
   return colors[index];
 };
 
-const CATEGORIES = ['All', 'Family', 'Official', 'Important'];
+// Conversations whose first page is prefetched once the inbox has settled
+const PREFETCH_THREADS = 5;
+
+// Labels for the categories assigned natively at ingest time
+const CATEGORIES = [
+  { key: 'all', label: 'All' },
+  { key: 'personal', label: 'Personal' },
+  { key: 'otp', label: 'OTP' },
+  { key: 'transactional', label: 'Transactional' },
+  { key: 'promotional', label: 'Promotional' },
+];
+
+// Fold newly inserted rows into the conversation list, moving touched threads to the top
+const applyInsertedMessages = (contacts, rows) => {
+  let next = contacts;
+  rows.forEach(row => {
+    const index = next.findIndex(c => c.threadId === row.threadId);
+    const existing = index >= 0 ? next[index] : null;
+    const updated = {
+      id: existing ? existing.id : row.address,
+      threadId: row.threadId,
+      name: existing ? existing.name : row.address,
+      photoUri: existing ? existing.photoUri : undefined,
+      avatar: existing ? existing.avatar : row.address.charAt(0).toUpperCase(),
+      avatarColor: existing ? existing.avatarColor : '#2563eb',
+      lastMessage: row.body,
+      time: new Date(row.date).toLocaleTimeString([], { hour: '2-digit', minute: '2-digit' }),
+      date: row.date,
+      unread: (existing ? existing.unread : 0) + (row.type === 1 && row.read === 0 ? 1 : 0),
+      messageCount: (existing ? existing.messageCount : 0) + 1,
+      // New threads get their category on the next page load
+      category: existing ? existing.category : undefined
+    };
+    const rest = index >= 0 ? [...next.slice(0, index), ...next.slice(index + 1)] : next;
+    next = [updated, ...rest];
+  });
+  return next;
+};
 
 export default function ChatsList() {
   const navigation = useNavigation();
@@ -39,14 +78,15 @@ export default function ChatsList() {
   const [page, setPage] = useState(1);
   const [hasMore, setHasMore] = useState(true);
   const [loadingMore, setLoadingMore] = useState(false);
+  const cursorRef = useRef(null);
+  const selectedCategoryRef = useRef('all');
 
   // UI States
-  const [selectedCategory, setSelectedCategory] = useState('All');
+  const [selectedCategory, setSelectedCategory] = useState('all');
   const [isProfileMenuVisible, setIsProfileMenuVisible] = useState(false);
   const [isSearchVisible, setIsSearchVisible] = useState(false);
   const [searchText, setSearchText] = useState('');
-  // Mock Category Map (In a real app, this would be persisted)
-  const [categoryMap, setCategoryMap] = useState({});
+  const [searchHits, setSearchHits] = useState([]);
 
   const requestSmsPermissions = async () => {
     try {
@@ -81,16 +121,22 @@ export default function ChatsList() {
       }
 
       console.log('Loading conversations page:', nextPage);
-      const result = await SmsController.getConversations(nextPage);
+      const cursor = nextPage > 1 ? cursorRef.current : null;
+      const result = await SmsController.getConversations(cursor, 50, selectedCategoryRef.current);
 
       if (nextPage === 1) {
         setContacts(result.conversations);
+        recordFirstRender('provider', result.conversations.length);
+        InteractionManager.runAfterInteractions(() => {
+          SmsController.prefetchThreads(result.conversations.slice(0, PREFETCH_THREADS).map(c => c.threadId));
+        });
       } else {
         setContacts(prev => [...prev, ...result.conversations]);
       }
 
       setHasMore(result.hasMore);
-      setPage(result.page);
+      setPage(nextPage);
+      cursorRef.current = result.cursor;
       setSmsLoaded(true);
 
     } catch (error) {
@@ -102,11 +148,75 @@ export default function ChatsList() {
     }
   };
 
+  // Time-to-first-render, from mount to the first conversations shown by each source
+  const mountedAtRef = useRef(Date.now());
+  const firstRenderRef = useRef({ snapshot: null, provider: null });
+
+  const recordFirstRender = (source, count) => {
+    if (firstRenderRef.current[source] !== null || count === 0) {
+      return;
+    }
+    firstRenderRef.current[source] = Date.now() - mountedAtRef.current;
+    SmsController.recordFirstRender(source, firstRenderRef.current[source]);
+  };
+
   useEffect(() => {
     checkDefaultSmsApp();
+    // Show the last synced page straight away; loadSmsMessages reconciles it with the provider
+    SmsController.getConversationSnapshot().then(snapshot => {
+      if (snapshot) {
+        setContacts(current => (current.length === 0 ? snapshot.conversations : current));
+        recordFirstRender('snapshot', snapshot.conversations.length);
+      }
+    });
     loadSmsMessages();
   }, []);
 
+  // Re-reads everything already scrolled in as one page, so a refresh keeps the list's length
+  // and scroll position. Our own mark-read writes never get here; they are filtered natively.
+  const contactsRef = useRef(contacts);
+  contactsRef.current = contacts;
+
+  const reloadLoadedConversations = async () => {
+    try {
+      const loaded = Math.max(50, contactsRef.current.length);
+      const result = await SmsController.getConversations(null, loaded, selectedCategoryRef.current);
+      setContacts(result.conversations);
+      setHasMore(result.hasMore);
+      cursorRef.current = result.cursor;
+    } catch (error) {
+      console.error('SMS refresh error:', error);
+    }
+  };
+
+  // Apply provider deltas in place; only changes that can't be attributed to a thread reload
+  useEffect(() => {
+    let reloadTimer = null;
+    const subscription = SmsController.subscribeToChanges(delta => {
+      if (delta.inserted.length > 0) {
+        setContacts(prev => applyInsertedMessages(prev, delta.inserted));
+      }
+      if (delta.updated.length > 0 || delta.deleted.length > 0 || delta.invalidated) {
+        clearTimeout(reloadTimer);
+        reloadTimer = setTimeout(reloadLoadedConversations, 300);
+      }
+    });
+    return () => {
+      clearTimeout(reloadTimer);
+      subscription.remove();
+    };
+  }, []);
+
+  // Category pages come from the native index, so switching category restarts paging
+  useEffect(() => {
+    if (selectedCategoryRef.current === selectedCategory) {
+      return;
+    }
+    selectedCategoryRef.current = selectedCategory;
+    cursorRef.current = null;
+    loadSmsMessages(true, 1);
+  }, [selectedCategory]);
+
   const refreshSmsData = async () => {
     setSmsLoaded(false);
     await loadSmsMessages(true, 1);
@@ -123,7 +233,7 @@ export default function ChatsList() {
     }
   };
 
-  const markAsRead = async (contactId) => {
+  const markAsRead = async (contactId, threadId) => {
     try {
       console.log('Marking as read:', contactId);
 
@@ -137,7 +247,9 @@ export default function ChatsList() {
 
       // Try to mark as read in database (but don't depend on it)
       try {
-        const result = await SmsController.markAsRead(contactId);
+        const result = threadId
+          ? await SmsController.markThreadsRead([threadId])
+          : await SmsController.markAsRead(contactId);
         console.log('Database mark as read result:', result);
       } catch (dbError) {
         console.warn('Database mark as read failed:', dbError);
@@ -148,37 +260,83 @@ export default function ChatsList() {
     }
   };
 
+  // Query the native search index as the user types, debounced per keystroke burst
+  useEffect(() => {
+    if (!searchText.trim()) {
+      setSearchHits([]);
+      return;
+    }
+    let cancelled = false;
+    const timer = setTimeout(async () => {
+      const result = await SmsController.searchMessages(searchText);
+      if (!cancelled) {
+        setSearchHits(result.hits);
+      }
+    }, 150);
+    return () => {
+      cancelled = true;
+      clearTimeout(timer);
+    };
+  }, [searchText]);
+
   // Filter Logic
   const filteredContacts = useMemo(() => {
     let result = contacts;
 
-    // Category Filter
-    if (selectedCategory !== 'All') {
-      result = result.filter(c => categoryMap[c.id] === selectedCategory);
+    // Category Filter: pages are already restricted natively; this drops rows folded in from deltas
+    if (selectedCategory !== 'all') {
+      result = result.filter(c => c.category === selectedCategory);
     }
 
-    // Search Filter
+    // Search Filter: name matches first, then one entry per thread with a body hit
     if (searchText) {
       const lower = searchText.toLowerCase();
-      result = result.filter(c =>
-        (c.name && c.name.toLowerCase().includes(lower)) ||
-        (c.lastMessage && c.lastMessage.toLowerCase().includes(lower))
-      );
+      const nameMatches = result.filter(c => c.name && c.name.toLowerCase().includes(lower));
+      const seen = new Set(nameMatches.map(c => c.threadId));
+      const byThread = new Map(result.map(c => [c.threadId, c]));
+      const bodyMatches = [];
+      searchHits.forEach(hit => {
+        if (seen.has(hit.threadId)) {
+          return;
+        }
+        seen.add(hit.threadId);
+        const contact = byThread.get(hit.threadId);
+        if (!contact && selectedCategory !== 'all') {
+          return;
+        }
+        bodyMatches.push({
+          ...(contact || {
+            id: hit.address,
+            threadId: hit.threadId,
+            name: hit.address,
+            avatar: hit.address.charAt(0).toUpperCase(),
+            avatarColor: '#2563eb',
+            unread: 0
+          }),
+          lastMessage: hit.snippet,
+          time: new Date(hit.date).toLocaleTimeString([], { hour: '2-digit', minute: '2-digit' })
+        });
+      });
+      result = [...nameMatches, ...bodyMatches];
     }
 
     return result;
-  }, [contacts, selectedCategory, categoryMap, searchText]);
+  }, [contacts, selectedCategory, searchText, searchHits]);
 
   const renderItem = ({ item }) => (
     <TouchableOpacity
       style={styles.chatItem}
       onPress={() => {
-        markAsRead(item.id);
-        navigation.navigate("Chat", { contactId: item.id, name: item.name });
+        markAsRead(item.id, item.threadId);
+        navigation.navigate("Chat", { contactId: item.id, threadId: item.threadId, name: item.name });
       }}
     >
       <View style={[styles.avatar, { backgroundColor: item.avatarColor }]}>
-        <Text style={styles.avatarText}>{item.avatar}</Text>
+        {item.photoUri ? (
+          <Image source={{ uri: item.photoUri }} style={styles.avatarImage} />
+        ) : (
+          <Text style={styles.avatarText}>{item.avatar}</Text>
+        )}
       </View>
 
       <View style={styles.chatContent}>
@@ -199,6 +357,10 @@ export default function ChatsList() {
     </TouchableOpacity>
   );
 
+  // Read synchronously from native memory on every render; it catches up once a delta has been
+  // folded in and the list re-renders
+  const unreadTotal = SmsController.getUnreadCountSync();
+
   return (
     <View style={styles.container}>
       <StatusBar barStyle="dark-content" backgroundColor="#ffffff" />
@@ -215,7 +377,9 @@ export default function ChatsList() {
             onBlur={() => !searchText && setIsSearchVisible(false)}
           />
         ) : (
-          <Text style={styles.headerTitle}>Messages</Text>
+          <Text style={styles.headerTitle}>
+            Messages{unreadTotal > 0 ? ` (${unreadTotal})` : ''}
+          </Text>
         )}
 
         <View style={styles.headerActions}>
@@ -245,11 +409,11 @@ export default function ChatsList() {
         <ScrollView horizontal showsHorizontalScrollIndicator={false} contentContainerStyle={styles.categoryScrollView}>
           {CATEGORIES.map(cat => (
             <TouchableOpacity
-              key={cat}
-              style={[styles.categoryPill, selectedCategory === cat && styles.categoryPillActive]}
-              onPress={() => setSelectedCategory(cat)}
+              key={cat.key}
+              style={[styles.categoryPill, selectedCategory === cat.key && styles.categoryPillActive]}
+              onPress={() => setSelectedCategory(cat.key)}
             >
-              <Text style={[styles.categoryText, selectedCategory === cat && styles.categoryTextActive]}>{cat}</Text>
+              <Text style={[styles.categoryText, selectedCategory === cat.key && styles.categoryTextActive]}>{cat.label}</Text>
             </TouchableOpacity>
           ))}
           <TouchableOpacity style={styles.addCategoryButton}>
@@ -260,13 +424,13 @@ export default function ChatsList() {
 
       <FlatList
         data={filteredContacts}
-        keyExtractor={(item) => item.id}
+        keyExtractor={(item) => String(item.threadId || item.id)}
         renderItem={renderItem}
         showsVerticalScrollIndicator={true}
         style={styles.flatList}
         contentContainerStyle={{ paddingBottom: 100 }}
         onEndReached={() => {
-          if (hasMore && !loadingMore && !searchText && selectedCategory === 'All') {
+          if (hasMore && !loadingMore && !searchText) {
             loadSmsMessages(false, page + 1);
           }
         }}
@@ -446,6 +610,11 @@ const styles = StyleSheet.create({
     alignItems: 'center',
     marginRight: 16,
   },
+  avatarImage: {
+    width: 52,
+    height: 52,
+    borderRadius: 26,
+  },
   avatarText: {
     fontSize: 22,
     fontWeight: '600',
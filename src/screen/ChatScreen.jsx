@@ -16,6 +16,7 @@ import {
   Modal,
   TouchableWithoutFeedback,
   ActivityIndicator,
+  Image,
   Share,
   Clipboard // If available, or use a package. Since react-native core clipboard is deprecated, we might need to check packages.
   // Wait, React Native Clipboard is deprecated in newer versions. 
@@ -31,15 +32,13 @@ import { useNavigation, useRoute } from '@react-navigation/native';
 import Icon from 'react-native-vector-icons/MaterialCommunityIcons';
 import SmsController from '../../Controller/SmsController';
 
-// In-memory cache for chat messages
-const chatCache = {};
-
 export default function ChatScreen() {
   const navigation = useNavigation();
   const route = useRoute();
-  const { contactId, name } = route.params || {};
+  const { contactId, threadId, name } = route.params || {};
 
   const [messages, setMessages] = useState([]);
+  const [mmsMessages, setMmsMessages] = useState([]);
   const [input, setInput] = useState("");
   const [sending, setSending] = useState(false);
   const [keyboardHeight, setKeyboardHeight] = useState(0);
@@ -59,23 +58,19 @@ export default function ChatScreen() {
   const [page, setPage] = useState(1);
   const [hasMore, setHasMore] = useState(true);
   const [loadingMore, setLoadingMore] = useState(false);
+  const cursorRef = useRef(null);
 
 
   const loadSmsMessages = React.useCallback(async (refresh = false, nextPage = 1) => {
     if (!contactId) return;
 
-    // Check cache first if not refreshing and page 1
-    if (!refresh && nextPage === 1 && chatCache[contactId]) {
-      setMessages(chatCache[contactId].messages);
-      // We proceed to background refresh starred status or just rely on cache
-    }
-
     if (nextPage > 1) {
       setLoadingMore(true);
     }
 
     try {
-      const result = await SmsController.getChatMessages(contactId, nextPage);
+      const cursor = nextPage > 1 ? cursorRef.current : null;
+      const result = await SmsController.getChatMessages(threadId || contactId, cursor);
       const starredIds = await SmsController.getStarredMessages();
 
       const processMessages = (msgs) => msgs.map(m => ({
@@ -94,11 +89,20 @@ export default function ChatScreen() {
       }
 
       setHasMore(result.hasMore);
-      setPage(result.page);
+      setPage(nextPage);
+      cursorRef.current = result.cursor;
 
       if (nextPage === 1) {
-        chatCache[contactId] = { messages: processedNew };
         messagesLoaded.current = true;
+
+        // Mark what is on screen as read; anything that arrives after this page stays unread
+        const newest = processedNew[processedNew.length - 1];
+        const markRead = threadId && newest
+          ? SmsController.markReadUpTo(threadId, newest.id)
+          : SmsController.markAsRead(contactId);
+        markRead.catch(error => {
+          console.error('Error marking as read:', error);
+        });
       }
 
     } catch (error) {
@@ -107,20 +111,69 @@ export default function ChatScreen() {
     } finally {
       setLoadingMore(false);
     }
-  }, [contactId]);
+  }, [contactId, threadId]);
 
   useEffect(() => {
     if (!messagesLoaded.current) {
       loadSmsMessages();
+    }
+  }, [loadSmsMessages]);
 
-      // Mark messages as read
-      if (contactId) {
-        SmsController.markAsRead(contactId).catch(error => {
-          console.error('Error marking as read:', error);
-        });
+  // Apply provider deltas for this thread without refetching the page
+  useEffect(() => {
+    const subscription = SmsController.subscribeToChanges(delta => {
+      const belongsHere = row => (threadId ? row.threadId === threadId : row.address === contactId);
+      const inserted = delta.inserted.filter(belongsHere).map(SmsController.formatChatMessage);
+      const updated = delta.updated.filter(belongsHere).map(SmsController.formatChatMessage);
+      if (inserted.length === 0 && updated.length === 0 && delta.deleted.length === 0) {
+        return;
+      }
+      setMessages(prev => {
+        const deleted = new Set(delta.deleted);
+        const updatedById = new Map(updated.map(m => [m.id, m]));
+        const known = new Set(prev.map(m => m.id));
+        const merged = prev
+          .filter(m => !deleted.has(m.id))
+          .map(m => (updatedById.has(m.id) ? { ...updatedById.get(m.id), starred: m.starred, reaction: m.reaction } : m));
+        return [...merged, ...inserted.filter(m => !known.has(m.id))];
+      });
+    });
+    return () => subscription.remove();
+  }, [contactId, threadId]);
+
+  const loadMmsMessages = React.useCallback(async () => {
+    if (!threadId) return;
+    const mms = await SmsController.getMmsMessages(threadId);
+    setMmsMessages(mms.map(SmsController.formatMmsMessage));
+  }, [threadId]);
+
+  // MMS live in their own store and are refetched whenever one for this thread is stored
+  useEffect(() => {
+    loadMmsMessages();
+    const subscription = SmsController.subscribeToMms(event => {
+      if (event.threadId === threadId) {
+        loadMmsMessages();
       }
+    });
+    return () => subscription.remove();
+  }, [loadMmsMessages, threadId]);
+
+  // SMS pages interleaved with MMS by date. While older SMS pages remain, MMS older than the
+  // loaded range are held back so they do not jump ahead of messages not yet shown.
+  const chatItems = React.useMemo(() => {
+    if (mmsMessages.length === 0) {
+      return messages;
+    }
+    const oldest = hasMore && messages.length > 0 ? messages[0].date : 0;
+    const visibleMms = mmsMessages.filter(m => m.date >= oldest);
+    return [...messages, ...visibleMms].sort((a, b) => a.date - b.date);
+  }, [messages, mmsMessages, hasMore]);
+
+  const retryMms = async (item) => {
+    if (await SmsController.retryMmsDownload(item.mmsId)) {
+      setMmsMessages(prev => prev.map(m => (m.id === item.id ? { ...m, mmsState: 'downloading' } : m)));
     }
-  }, [loadSmsMessages, contactId]);
+  };
 
   const animateButton = () => {
     Animated.sequence([
@@ -144,8 +197,7 @@ export default function ChatScreen() {
       try {
         await SmsController.sendSms(contactId, input.trim());
         setInput("");
-        // Force refresh to get new message
-        await loadSmsMessages(true, 1);
+        // The sent row arrives through the SmsDelta subscription
       } catch (error) {
         Alert.alert('Error', 'Failed to send SMS: ' + error.message);
       } finally {
@@ -185,10 +237,6 @@ export default function ChatScreen() {
       case 'star':
         const isStarred = await SmsController.toggleStarMessage(selectedMessage.id);
         setMessages(prev => prev.map(m => m.id === selectedMessage.id ? { ...m, starred: isStarred } : m));
-        // Update cache
-        if (chatCache[contactId]) {
-          chatCache[contactId].messages = chatCache[contactId].messages.map(m => m.id === selectedMessage.id ? { ...m, starred: isStarred } : m);
-        }
         break;
       case 'delete':
         Alert.alert('Delete Message', 'Are you sure?', [
@@ -200,10 +248,6 @@ export default function ChatScreen() {
               try {
                 await SmsController.deleteMessage(selectedMessage.id);
                 setMessages(prev => prev.filter(m => m.id !== selectedMessage.id));
-                // Update cache
-                if (chatCache[contactId]) {
-                  chatCache[contactId].messages = chatCache[contactId].messages.filter(m => m.id !== selectedMessage.id);
-                }
               } catch (e) {
                 Alert.alert('Error', 'Could not delete message');
               }
@@ -216,22 +260,34 @@ export default function ChatScreen() {
 
   const renderMessage = React.useCallback(({ item }) => (
     <TouchableOpacity
-      onLongPress={() => {
+      onLongPress={item.mmsId ? undefined : () => {
         setSelectedMessage(item);
         setMessageMenuVisible(true);
       }}
+      onPress={item.mmsState === 'failed' ? () => retryMms(item) : undefined}
       activeOpacity={0.7}
     >
       <View style={[
         styles.messageContainer,
         item.sender === "me" ? styles.myMessage : styles.otherMessage
       ]}>
-        <Text style={[
-          styles.messageText,
-          item.sender === "me" ? styles.myMessageText : styles.otherMessageText
-        ]}>
-          {item.text}
-        </Text>
+        {item.imageUri && (
+          <Image source={{ uri: item.imageUri }} style={styles.mmsImage} resizeMode="cover" />
+        )}
+        {!!item.text && (
+          <Text style={[
+            styles.messageText,
+            item.sender === "me" ? styles.myMessageText : styles.otherMessageText
+          ]}>
+            {item.text}
+          </Text>
+        )}
+        {item.mmsState === 'downloading' && (
+          <ActivityIndicator size="small" color="#5f6368" style={styles.mmsStatus} />
+        )}
+        {item.mmsState === 'failed' && (
+          <Text style={[styles.mmsStatus, styles.mmsFailedText]}>Download failed. Tap to retry</Text>
+        )}
         <View style={styles.timeContainer}>
           <Text style={[
             styles.timeText,
@@ -241,16 +297,15 @@ export default function ChatScreen() {
           </Text>
           {item.sender === "me" && (
             <View style={styles.statusIconContainer}>
-              {item.status === 'seen' ? (
+              {item.status === 'delivered' ? (
                 <View style={styles.doubleCheck}>
                   <Text style={[styles.statusIcon, styles.checkSeen]}>✓</Text>
                   <Text style={[styles.statusIcon, styles.checkSeen, styles.checkOverlap]}>✓</Text>
                 </View>
               ) : item.status === 'sent' ? (
-                <View style={styles.doubleCheck}>
-                  <Text style={[styles.statusIcon, styles.checkSent]}>✓</Text>
-                  <Text style={[styles.statusIcon, styles.checkSent, styles.checkOverlap]}>✓</Text>
-                </View>
+                <Text style={[styles.statusIcon, styles.checkSent]}>✓</Text>
+              ) : item.status === 'failed' ? (
+                <Text style={[styles.statusIcon, styles.failedIcon]}>!</Text>
               ) : (
                 <Text style={styles.clockIcon}>🕐</Text>
               )}
@@ -337,7 +392,7 @@ export default function ChatScreen() {
 
         <FlatList
           ref={flatListRef}
-          data={messages}
+          data={chatItems}
           keyExtractor={(item) => item.id.toString()}
           renderItem={renderMessage}
           style={styles.messagesList}
@@ -637,6 +692,23 @@ const styles = StyleSheet.create({
   clockIcon: {
     fontSize: 12,
   },
+  failedIcon: {
+    color: '#fca5a5',
+    fontWeight: 'bold',
+  },
+  mmsImage: {
+    width: 220,
+    height: 220,
+    borderRadius: 12,
+    marginBottom: 4,
+  },
+  mmsStatus: {
+    marginTop: 4,
+  },
+  mmsFailedText: {
+    fontSize: 13,
+    color: '#dc3545',
+  },
   inputContainer: {
     flexDirection: 'row',
     alignItems: 'flex-end',
@@ -20,9 +20,9 @@ export default function DefaultSmsPrompt({ visible, onClose, onSuccess }) {
       await SmsController.requestDefaultSmsApp();
       
       // Check after a delay to see if user accepted
-      setTimeout(async () => {
+      setTimeout(() => {
         try {
-          const isDefault = await SmsController.isDefaultSmsApp();
+          const isDefault = SmsController.isDefaultSmsAppSync();
           if (isDefault) {
             onSuccess();
           } else {
@@ -2,10 +2,17 @@ import React, { useEffect, useRef, useState } from 'react';
 import { View, Text, TextInput, TouchableOpacity, Image, StyleSheet, Alert } from 'react-native';
 import axios from "axios";
 import { useNavigation, useRoute } from '@react-navigation/native';
-import { BaseURL } from '../config/API';
+import { BaseURL, OtpSenderIds } from '../config/API';
+import SmsController from '../../Controller/SmsController';
 
 import OtpImage from '../assets/images/OTP.png'; // ✅ keep image import at the bottom of imports
 
+// 'VM-NEXALT', 'AD-NEXALT' and 'NEXALT' are the same sender behind different operator prefixes
+const isOtpSender = address => {
+  const header = (address || '').trim().toUpperCase().split('-').pop();
+  return OtpSenderIds.some(id => id.toUpperCase() === header);
+};
+
 export default function EnterOtp() {
   const [otp, setOtp] = useState(['', '', '', '', '', '']);
   const [loading, setLoading] = useState(false);
@@ -32,6 +39,21 @@ export default function EnterOtp() {
     return () => clearInterval(interval);
   }, [timer]);
 
+  // Autofill from an OTP our own sender delivered; codes are extracted natively when the SMS
+  // arrives, and new messages carry theirs in the change event itself
+  useEffect(() => {
+    const fill = message => {
+      if (message && message.otpCode?.length === 6 && isOtpSender(message.address)) {
+        setOtp(current => (current.some(digit => digit) ? current : message.otpCode.split('')));
+      }
+    };
+    SmsController.getLatestOtp(2).then(latest => latest && fill({ address: latest.address, otpCode: latest.code }));
+    const subscription = SmsController.subscribeToChanges(delta => {
+      delta.inserted.filter(row => row.category === 'otp').forEach(fill);
+    });
+    return () => subscription.remove();
+  }, []);
+
   // ✅ OTP input handler
   const handleChange = (text, index) => {
     if (text.length > 1) return;
@@ -0,0 +1,77 @@
+import type { TurboModule } from 'react-native';
+import { TurboModuleRegistry } from 'react-native';
+
+// Codegen spec for com.frontend.SmsModule. Message ids cross the boundary as strings and
+// thread ids as numbers. Maps are left as Object; SmsController documents their shape.
+export interface Spec extends TurboModule {
+  // Required by NativeEventEmitter
+  addListener(eventName: string): void;
+  removeListeners(count: number): void;
+
+  getSmsMessages(): Promise<Array<Object>>;
+  getSmsMessagesColumnar(limit: number): Promise<Object>;
+  getThreadMessages(
+    threadId: number,
+    address: string | null,
+    beforeDate: number,
+    beforeId: number,
+    limit: number,
+  ): Promise<Object>;
+  getConversationSummaries(
+    beforeDate: number,
+    beforeThreadId: number,
+    limit: number,
+    category: string,
+  ): Promise<Object>;
+  getConversationSnapshot(): Promise<Object | null>;
+  getLatestOtp(maxAgeMinutes: number): Promise<Object | null>;
+  searchMessages(query: string, limit: number, offset: number): Promise<Object>;
+
+  prefetchThreads(threadIds: Array<number>, limit: number): Promise<void>;
+  getMmsMessages(threadId: number, limit: number): Promise<Array<Object>>;
+  getMmsThumbnail(partId: string, maxSize: number): Promise<string | null>;
+  retryMmsDownload(messageId: string): Promise<void>;
+
+  sendSms(phoneNumber: string, message: string): Promise<number>;
+  sendBatch(recipients: Array<string>, message: string): Promise<Array<number>>;
+  setSendRate(messagesPerMinute: number): Promise<void>;
+
+  markAsRead(address: string): Promise<string>;
+  markThreadsRead(threadIds: Array<number>): Promise<number>;
+  markReadUpTo(threadId: number, messageId: string): Promise<number>;
+
+  deleteMessages(ids: Array<string>): Promise<number>;
+  deleteThread(threadId: number): Promise<number>;
+  setRetentionPolicy(enabled: boolean, maxAgeDays: number): Promise<void>;
+  getRetentionPolicy(): Promise<Object>;
+  runRetention(): Promise<number>;
+
+  // Both resolve to a job id matching the 'SmsArchiveProgress' events; rerunning with the same
+  // path resumes an interrupted job
+  exportArchive(path: string): Promise<number>;
+  importArchive(path: string): Promise<number>;
+
+  getUnreadCount(): Promise<number>;
+  getUnreadCounts(): Promise<Object>;
+  isDefaultSmsApp(): Promise<boolean>;
+  // Synchronous reads for render paths; the unread total stays in memory after its first load
+  getUnreadCountSync(): number;
+  isDefaultSmsAppSync(): boolean;
+  requestDefaultSmsApp(): Promise<string>;
+  openSmsAppSettings(): Promise<string>;
+
+  getIngestStats(): Promise<Object>;
+  getThreadCacheStats(): Promise<Object>;
+  getPageCacheStats(): Promise<Object>;
+  getContactCacheStats(): Promise<Object>;
+
+  // Latency histograms, counters and queue depths; recording is off until enabled
+  getPerfStats(): Promise<Object>;
+  dumpPerfStats(): Promise<string>;
+  setPerfStatsEnabled(enabled: boolean): Promise<void>;
+  resetPerfStats(): void;
+  // source is 'snapshot' or 'provider'
+  recordFirstRender(source: string, elapsedMs: number): void;
+}
+
+export default TurboModuleRegistry.getEnforcing<Spec>('SmsModule');